@@ -1,10 +1,23 @@
 package com.nayabjalal.calculator;
 
+import com.nayabjalal.calculator.cli.HeadlessCalculator;
+import com.nayabjalal.calculator.server.EvaluationServer;
 import com.nayabjalal.calculator.ui.CalculatorUI;
+import java.util.Arrays;
 
 public class App {
 
     public static void main(String[] args) {
+        if (args.length > 0 && "--headless".equals(args[0])) {
+            System.exit(HeadlessCalculator.run(Arrays.copyOfRange(args, 1, args.length)));
+        }
+        if (args.length > 0 && "--server".equals(args[0])) {
+            int status = EvaluationServer.run(Arrays.copyOfRange(args, 1, args.length));
+            if (status != 0) {
+                System.exit(status);
+            }
+            return;
+        }
         new CalculatorUI();
     }
 }
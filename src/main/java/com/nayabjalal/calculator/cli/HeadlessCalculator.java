@@ -0,0 +1,192 @@
+package com.nayabjalal.calculator.cli;
+
+import com.nayabjalal.calculator.config.AppConfig;
+import com.nayabjalal.calculator.expression.EvaluationResult;
+import com.nayabjalal.calculator.util.ExpressionEvaluator;
+import com.nayabjalal.calculator.util.InputValidator;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// Streams one expression per line from a file or stdin to one result per line, through fixed
+// size buffers, so memory use does not depend on the input size. A line longer than the
+// evaluator accepts is not kept: the rest of it is skipped and its result is Error.
+public class HeadlessCalculator {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final String STDIN = "-";
+
+    private final ByteBuffer in = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final ByteBuffer out = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final LineBuffer line = new LineBuffer();
+    private int maxLength;
+    private long lineNumber;
+    private final char[] formatted = new char[InputValidator.MAX_RESULT_LENGTH];
+
+    public static int run(String... args) {
+        if (args.length > 2) {
+            System.err.println("Usage: --headless [input-file|-] [output-file]");
+            return 2;
+        }
+        String input = args.length > 0 ? args[0] : STDIN;
+        try (ReadableByteChannel source = openInput(input);
+             WritableByteChannel sink = openOutput(args.length > 1 ? args[1] : null)) {
+            new HeadlessCalculator().process(source, sink);
+            return 0;
+        } catch (IOException e) {
+            System.err.println("Headless evaluation failed: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    private static ReadableByteChannel openInput(String input) throws IOException {
+        if (STDIN.equals(input)) {
+            return new FileInputStream(FileDescriptor.in).getChannel();
+        }
+        return FileChannel.open(Paths.get(input), StandardOpenOption.READ);
+    }
+
+    private static WritableByteChannel openOutput(String output) throws IOException {
+        if (output == null) {
+            return new FileOutputStream(FileDescriptor.out).getChannel();
+        }
+        return FileChannel.open(Paths.get(output), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    public void process(ReadableByteChannel source, WritableByteChannel sink) throws IOException {
+        maxLength = AppConfig.getInstance().snapshot().getEvaluationLimits().getMaxLength();
+        // One more for a trailing carriage return
+        line.setLimit(maxLength + 1);
+        line.clear();
+        lineNumber = 0;
+        out.clear();
+        while (source.read(in) != -1) {
+            in.flip();
+            while (in.hasRemaining()) {
+                byte b = in.get();
+                if (b == '\n') {
+                    evaluateLine(sink);
+                } else {
+                    // Expressions are ASCII; any other byte ends up as an unexpected character
+                    line.append((char) (b & 0xFF));
+                }
+            }
+            in.clear();
+        }
+        if (line.length() > 0 || line.isTruncated()) {
+            evaluateLine(sink);
+        }
+        flush(sink);
+    }
+
+    private void evaluateLine(WritableByteChannel sink) throws IOException {
+        lineNumber++;
+        line.trimCarriageReturn();
+        if (line.isTruncated() || line.length() > maxLength) {
+            System.err.println("Line " + lineNumber + " is longer than " + maxLength + " characters");
+            writeResult(sink, Double.NaN);
+        } else if (!line.isBlank()) {
+            EvaluationResult result = ExpressionEvaluator.tryEvaluate(line);
+            writeResult(sink, result.isSuccess() ? result.getValue() : Double.NaN);
+        }
+        write(sink, '\n');
+        line.clear();
+    }
+
+    private void writeResult(WritableByteChannel sink, double value) throws IOException {
+        int length = InputValidator.formatResult(value, formatted, 0);
+        for (int i = 0; i < length; i++) {
+            write(sink, formatted[i]);
+        }
+    }
+
+    private void write(WritableByteChannel sink, char c) throws IOException {
+        if (!out.hasRemaining()) {
+            flush(sink);
+        }
+        out.put((byte) c);
+    }
+
+    private void flush(WritableByteChannel sink) throws IOException {
+        out.flip();
+        while (out.hasRemaining()) {
+            sink.write(out);
+        }
+        out.clear();
+    }
+
+    // Reusable CharSequence view of the current line; characters past the limit are dropped
+    private static final class LineBuffer implements CharSequence {
+        private char[] chars = new char[256];
+        private int length;
+        private int limit = Integer.MAX_VALUE;
+        private boolean truncated;
+
+        void setLimit(int limit) {
+            this.limit = limit;
+        }
+
+        void append(char c) {
+            if (length == limit) {
+                truncated = true;
+                return;
+            }
+            if (length == chars.length) {
+                chars = Arrays.copyOf(chars, (int) Math.min(limit, length * 2L));
+            }
+            chars[length++] = c;
+        }
+
+        boolean isTruncated() {
+            return truncated;
+        }
+
+        void clear() {
+            length = 0;
+            truncated = false;
+        }
+
+        void trimCarriageReturn() {
+            if (length > 0 && chars[length - 1] == '\r') {
+                length--;
+            }
+        }
+
+        boolean isBlank() {
+            for (int i = 0; i < length; i++) {
+                if (chars[i] > ' ') {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return chars[index];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new String(chars, start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            return new String(chars, 0, length);
+        }
+    }
+}
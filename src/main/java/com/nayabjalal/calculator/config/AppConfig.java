@@ -1,39 +1,150 @@
 package com.nayabjalal.calculator.config;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import java.io.File;
+import com.nayabjalal.calculator.jfr.ConfigLoadEvent;
+import com.nayabjalal.calculator.jfr.ConfigSaveEvent;
+import com.nayabjalal.calculator.metrics.Metrics;
 import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 public class AppConfig {
     private static final String CONFIG_FILE = "src/main/resources/calculator-config.json";
-    private static AppConfig instance;
-    private Map<String, Object> config;
+    private static final long SAVE_DELAY_MILLIS = 250;
 
-    private AppConfig() {
+    private final Path file;
+    private final ObjectMapper mapper = new ObjectMapper();
+    // Swapped whole on set() and on reload; readers take no lock
+    private volatile ConfigSnapshot snapshot;
+
+    // set() only schedules a write; several set() calls within the delay share one write
+    private final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "config-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private boolean savePending; // guarded by this
+    private volatile byte[] lastWritten;
+    private WatchService watcher;
+
+    private static final class Holder {
+        static final AppConfig INSTANCE = createDefault();
+    }
+
+    AppConfig(Path file) {
+        this.file = file;
         loadConfig();
+        watch();
+    }
+
+    private static AppConfig createDefault() {
+        AppConfig config = new AppConfig(Paths.get(CONFIG_FILE));
+        Runtime.getRuntime().addShutdownHook(new Thread(config::savePendingChanges, "config-shutdown"));
+        return config;
     }
 
     public static AppConfig getInstance() {
-        if (instance == null) {
-            instance = new AppConfig();
-        }
-        return instance;
+        return Holder.INSTANCE;
     }
 
+    public ConfigSnapshot snapshot() {
+        Metrics.increment(Metrics.CONFIG_SNAPSHOT);
+        return snapshot;
+    }
+
+    @SuppressWarnings("unchecked")
     private void loadConfig() {
+        ConfigLoadEvent event = new ConfigLoadEvent();
+        event.begin();
         try {
-            ObjectMapper mapper = new ObjectMapper();
-            File configFile = new File(CONFIG_FILE);
-            if (configFile.exists()) {
-                config = mapper.readValue(configFile, Map.class);
+            if (Files.exists(file)) {
+                byte[] bytes = Files.readAllBytes(file);
+                snapshot = new ConfigSnapshot(mapper.readValue(bytes, Map.class));
+                loaded(event, bytes.length, false);
             } else {
-                config = getDefaultConfig();
+                snapshot = new ConfigSnapshot(getDefaultConfig());
                 saveConfig();
             }
         } catch (IOException e) {
-            config = getDefaultConfig();
+            snapshot = new ConfigSnapshot(getDefaultConfig());
+        }
+    }
+
+    // Hot reload: edits to the file replace the snapshot. Our own writes are recognised by their
+    // content and skipped, since a modification time can miss an edit made in the same tick as
+    // our save; nothing is reloaded while a set() is waiting to be saved.
+    private void watch() {
+        Path directory = file.toAbsolutePath().getParent();
+        try {
+            watcher = directory.getFileSystem().newWatchService();
+            directory.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            System.err.println("Config hot reload disabled: " + e.getMessage());
+            return;
+        }
+        Thread thread = new Thread(this::watchLoop, "config-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void watchLoop() {
+        Path name = file.getFileName();
+        try {
+            while (true) {
+                WatchKey key = watcher.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    changed |= name.equals(event.context());
+                }
+                key.reset();
+                if (changed) {
+                    reload();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // closed
+        }
+    }
+
+    // Synchronized with set() so a reload cannot overwrite a change that has not been saved yet
+    @SuppressWarnings("unchecked")
+    synchronized void reload() {
+        if (savePending) {
+            return;
+        }
+        try {
+            ConfigLoadEvent event = new ConfigLoadEvent();
+            event.begin();
+            byte[] bytes = Files.readAllBytes(file);
+            if (Arrays.equals(bytes, lastWritten)) {
+                return;
+            }
+            snapshot = new ConfigSnapshot(mapper.readValue(bytes, Map.class));
+            loaded(event, bytes.length, true);
+        } catch (IOException e) {
+            // Often a half-written file; the editor's next write triggers another reload
+            System.err.println("Failed to reload config: " + e.getMessage());
+        }
+    }
+
+    private void loaded(ConfigLoadEvent event, long bytes, boolean reload) {
+        if (event.shouldCommit()) {
+            event.path = file.toString();
+            event.bytes = bytes;
+            event.reload = reload;
+            event.commit();
         }
     }
 
@@ -42,8 +153,21 @@ public class AppConfig {
 
         // Calculator settings
         Map<String, Object> calculator = new HashMap<>();
-        calculator.put("maxHistorySize", 50);
-        calculator.put("defaultTheme", "Light");
+        calculator.put("maxHistorySize", ConfigSnapshot.DEFAULT_MAX_HISTORY_SIZE);
+        calculator.put("historyFormat", ConfigSnapshot.DEFAULT_HISTORY_FORMAT);
+        calculator.put("historyFlushIntervalMillis", ConfigSnapshot.DEFAULT_HISTORY_FLUSH_INTERVAL_MILLIS);
+        calculator.put("historyFlushBatchSize", ConfigSnapshot.DEFAULT_HISTORY_FLUSH_BATCH_SIZE);
+        calculator.put("historyCompactionThreshold", ConfigSnapshot.DEFAULT_HISTORY_COMPACTION_THRESHOLD);
+        calculator.put("expressionCacheSize", ConfigSnapshot.DEFAULT_EXPRESSION_CACHE_SIZE);
+        calculator.put("bytecodeCompilation", false);
+        calculator.put("adaptivePrecision", false);
+        calculator.put("displayDigits", ConfigSnapshot.DEFAULT_DISPLAY_DIGITS);
+        calculator.put("maxExpressionLength", ConfigSnapshot.DEFAULT_MAX_EXPRESSION_LENGTH);
+        calculator.put("maxNestingDepth", ConfigSnapshot.DEFAULT_MAX_NESTING_DEPTH);
+        calculator.put("maxTokens", ConfigSnapshot.DEFAULT_MAX_TOKENS);
+        calculator.put("maxOperations", ConfigSnapshot.DEFAULT_MAX_OPERATIONS);
+        calculator.put("evaluationTimeoutMillis", ConfigSnapshot.DEFAULT_EVALUATION_TIMEOUT_MILLIS);
+        calculator.put("defaultTheme", ConfigSnapshot.DEFAULT_THEME);
         calculator.put("soundEnabled", true);
         calculator.put("animationsEnabled", true);
         defaultConfig.put("calculator", calculator);
@@ -67,38 +191,71 @@ public class AppConfig {
         return defaultConfig;
     }
 
-    public void saveConfig() {
+    // Writes the current snapshot now
+    public synchronized void saveConfig() {
+        ConfigSaveEvent event = new ConfigSaveEvent();
+        event.begin();
         try {
-            ObjectMapper mapper = new ObjectMapper();
-            mapper.writerWithDefaultPrettyPrinter().writeValue(new File(CONFIG_FILE), config);
+            byte[] bytes = mapper.writerWithDefaultPrettyPrinter().writeValueAsBytes(snapshot.getTree());
+            Files.write(file, bytes);
+            lastWritten = bytes;
+            if (event.shouldCommit()) {
+                event.path = file.toString();
+                event.bytes = bytes.length;
+                event.commit();
+            }
         } catch (IOException e) {
             System.err.println("Failed to save config: " + e.getMessage());
         }
     }
 
-    @SuppressWarnings("unchecked")
-    public <T> T get(String path) {
-        String[] keys = path.split("\\.");
-        Object current = config;
-
-        for (String key : keys) {
-            if (current instanceof Map) {
-                current = ((Map<String, Object>) current).get(key);
-            } else {
-                return null;
-            }
+    private synchronized void savePendingChanges() {
+        if (savePending) {
+            saveConfig();
+            savePending = false;
         }
-        return (T) current;
     }
 
-    public void set(String path, Object value) {
+    // Generic lookup by dotted path; code that reads a setting often should use snapshot()
+    public <T> T get(String path) {
+        Metrics.increment(Metrics.CONFIG_GET);
+        return snapshot.get(path);
+    }
+
+    @SuppressWarnings("unchecked")
+    public synchronized void set(String path, Object value) {
         String[] keys = path.split("\\.");
-        Map<String, Object> current = config;
+        Map<String, Object> updated = new HashMap<>(snapshot.getTree());
+        Map<String, Object> current = updated;
 
+        // Copy each map along the path; everything else is shared with the old snapshot
         for (int i = 0; i < keys.length - 1; i++) {
-            current = (Map<String, Object>) current.computeIfAbsent(keys[i], k -> new HashMap<>());
+            Object child = current.get(keys[i]);
+            Map<String, Object> copy = child instanceof Map
+                    ? new HashMap<>((Map<String, Object>) child)
+                    : new HashMap<>();
+            current.put(keys[i], copy);
+            current = copy;
         }
         current.put(keys[keys.length - 1], value);
-        saveConfig();
+        snapshot = new ConfigSnapshot(updated);
+
+        if (!savePending) {
+            savePending = true;
+            writer.schedule(this::savePendingChanges, SAVE_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // Saves anything pending and stops the watcher; only for instances other than the shared one
+    void close() {
+        savePendingChanges();
+        writer.shutdown();
+        try {
+            if (watcher != null) {
+                watcher.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to close config watcher: " + e.getMessage());
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,165 @@
+package com.nayabjalal.calculator.config;
+
+import com.nayabjalal.calculator.exception.CalculatorException.ErrorType;
+import com.nayabjalal.calculator.expression.EvaluationLimits;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+// Immutable view of one version of the config file. Every setting the code reads is resolved
+// into a typed field when the snapshot is built, with the default substituted for missing or
+// invalid values, so reading a setting is a field load. The raw tree is kept (unmodifiable) for
+// AppConfig.get(path).
+public final class ConfigSnapshot {
+    static final int DEFAULT_MAX_HISTORY_SIZE = 50;
+    static final String DEFAULT_HISTORY_FORMAT = "binary";
+    static final int DEFAULT_HISTORY_FLUSH_INTERVAL_MILLIS = 200;
+    static final int DEFAULT_HISTORY_FLUSH_BATCH_SIZE = 256;
+    static final int DEFAULT_HISTORY_COMPACTION_THRESHOLD = 10_000;
+    static final int DEFAULT_EXPRESSION_CACHE_SIZE = 256;
+    static final int DEFAULT_DISPLAY_DIGITS = 12;
+    static final String DEFAULT_THEME = "Light";
+    static final int DEFAULT_MAX_EXPRESSION_LENGTH = 100_000;
+    static final int DEFAULT_MAX_NESTING_DEPTH = 1_000;
+    static final int DEFAULT_MAX_TOKENS = 50_000;
+    static final int DEFAULT_MAX_OPERATIONS = 25_000;
+    static final int DEFAULT_EVALUATION_TIMEOUT_MILLIS = 1_000;
+
+    private final Map<String, Object> tree;
+    private final int maxHistorySize;
+    private final String historyFormat;
+    private final int historyFlushIntervalMillis;
+    private final int historyFlushBatchSize;
+    private final int historyCompactionThreshold;
+    private final int expressionCacheSize;
+    private final boolean bytecodeCompilation;
+    private final boolean adaptivePrecision;
+    private final int displayDigits;
+    private final EvaluationLimits evaluationLimits;
+    private final String defaultTheme;
+    private final boolean soundEnabled;
+    private final boolean animationsEnabled;
+    private final Map<String, String> shortcuts;
+    private final EnumMap<ErrorType, String> errorMessages = new EnumMap<>(ErrorType.class);
+
+    ConfigSnapshot(Map<String, Object> tree) {
+        this.tree = freeze(tree);
+        Map<String, Object> calculator = section(this.tree, "calculator");
+        this.maxHistorySize = positiveInt(calculator, "maxHistorySize", DEFAULT_MAX_HISTORY_SIZE);
+        this.historyFormat = string(calculator, "historyFormat", DEFAULT_HISTORY_FORMAT);
+        this.historyFlushIntervalMillis = positiveInt(calculator, "historyFlushIntervalMillis",
+                DEFAULT_HISTORY_FLUSH_INTERVAL_MILLIS);
+        this.historyFlushBatchSize = positiveInt(calculator, "historyFlushBatchSize", DEFAULT_HISTORY_FLUSH_BATCH_SIZE);
+        this.historyCompactionThreshold = positiveInt(calculator, "historyCompactionThreshold",
+                DEFAULT_HISTORY_COMPACTION_THRESHOLD);
+        this.expressionCacheSize = positiveInt(calculator, "expressionCacheSize", DEFAULT_EXPRESSION_CACHE_SIZE);
+        this.bytecodeCompilation = bool(calculator, "bytecodeCompilation", false);
+        this.adaptivePrecision = bool(calculator, "adaptivePrecision", false);
+        this.displayDigits = positiveInt(calculator, "displayDigits", DEFAULT_DISPLAY_DIGITS);
+        this.evaluationLimits = new EvaluationLimits(
+                positiveInt(calculator, "maxExpressionLength", DEFAULT_MAX_EXPRESSION_LENGTH),
+                positiveInt(calculator, "maxNestingDepth", DEFAULT_MAX_NESTING_DEPTH),
+                positiveInt(calculator, "maxTokens", DEFAULT_MAX_TOKENS),
+                positiveInt(calculator, "maxOperations", DEFAULT_MAX_OPERATIONS),
+                // 0 turns the deadline off
+                nonNegativeInt(calculator, "evaluationTimeoutMillis", DEFAULT_EVALUATION_TIMEOUT_MILLIS));
+        this.defaultTheme = string(calculator, "defaultTheme", DEFAULT_THEME);
+        this.soundEnabled = bool(calculator, "soundEnabled", true);
+        this.animationsEnabled = bool(calculator, "animationsEnabled", true);
+
+        Map<String, String> keys = new HashMap<>();
+        section(this.tree, "shortcuts").forEach((name, key) -> {
+            if (key instanceof String) {
+                keys.put(name, (String) key);
+            }
+        });
+        this.shortcuts = Collections.unmodifiableMap(keys);
+
+        // "errors.divisionByZero" for DIVISION_BY_ZERO and so on; the key match is case-insensitive
+        Map<String, Object> errors = section(this.tree, "errors");
+        for (ErrorType type : ErrorType.values()) {
+            String key = type.name().toLowerCase().replace("_", "");
+            for (Map.Entry<String, Object> entry : errors.entrySet()) {
+                if (entry.getKey().equalsIgnoreCase(key) && entry.getValue() instanceof String) {
+                    errorMessages.put(type, (String) entry.getValue());
+                }
+            }
+        }
+    }
+
+    public int getMaxHistorySize() { return maxHistorySize; }
+    public String getHistoryFormat() { return historyFormat; }
+    public int getHistoryFlushIntervalMillis() { return historyFlushIntervalMillis; }
+    public int getHistoryFlushBatchSize() { return historyFlushBatchSize; }
+    public int getHistoryCompactionThreshold() { return historyCompactionThreshold; }
+    public int getExpressionCacheSize() { return expressionCacheSize; }
+    public boolean isBytecodeCompilation() { return bytecodeCompilation; }
+    public boolean isAdaptivePrecision() { return adaptivePrecision; }
+    public int getDisplayDigits() { return displayDigits; }
+    public EvaluationLimits getEvaluationLimits() { return evaluationLimits; }
+    public String getDefaultTheme() { return defaultTheme; }
+    public boolean isSoundEnabled() { return soundEnabled; }
+    public boolean isAnimationsEnabled() { return animationsEnabled; }
+    public Map<String, String> getShortcuts() { return shortcuts; }
+
+    // null when the config has no message for the type
+    public String getErrorMessage(ErrorType type) {
+        return errorMessages.get(type);
+    }
+
+    Map<String, Object> getTree() {
+        return tree;
+    }
+
+    @SuppressWarnings("unchecked")
+    <T> T get(String path) {
+        Object current = tree;
+        int start = 0;
+        while (start <= path.length()) {
+            int end = path.indexOf('.', start);
+            if (end < 0) {
+                end = path.length();
+            }
+            if (!(current instanceof Map)) {
+                return null;
+            }
+            current = ((Map<String, Object>) current).get(path.substring(start, end));
+            start = end + 1;
+        }
+        return (T) current;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> freeze(Map<String, Object> map) {
+        Map<String, Object> copy = new HashMap<>();
+        map.forEach((key, value) -> copy.put(key, value instanceof Map ? freeze((Map<String, Object>) value) : value));
+        return Collections.unmodifiableMap(copy);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> section(Map<String, Object> tree, String name) {
+        Object section = tree.get(name);
+        return section instanceof Map ? (Map<String, Object>) section : Collections.emptyMap();
+    }
+
+    private static int positiveInt(Map<String, Object> section, String key, int defaultValue) {
+        Object value = section.get(key);
+        return value instanceof Number && ((Number) value).intValue() > 0 ? ((Number) value).intValue() : defaultValue;
+    }
+
+    private static int nonNegativeInt(Map<String, Object> section, String key, int defaultValue) {
+        Object value = section.get(key);
+        return value instanceof Number && ((Number) value).intValue() >= 0 ? ((Number) value).intValue() : defaultValue;
+    }
+
+    private static boolean bool(Map<String, Object> section, String key, boolean defaultValue) {
+        Object value = section.get(key);
+        return value instanceof Boolean ? (Boolean) value : defaultValue;
+    }
+
+    private static String string(Map<String, Object> section, String key, String defaultValue) {
+        Object value = section.get(key);
+        return value instanceof String ? (String) value : defaultValue;
+    }
+}
@@ -11,16 +11,24 @@ public class CalculatorException extends Exception {
         OVERFLOW,
         UNDERFLOW,
         INVALID_OPERATION,
-        EXPRESSION_PARSE_ERROR
+        EXPRESSION_PARSE_ERROR,
+        // Resource limits on a single evaluation
+        INPUT_TOO_LONG,
+        NESTING_TOO_DEEP,
+        TOO_MANY_TOKENS,
+        OPERATION_LIMIT_EXCEEDED,
+        DEADLINE_EXCEEDED
     }
 
+    // Stackless: these report bad input, not bugs, and filling in a stack trace dominated the
+    // cost of rejecting an expression
     public CalculatorException(ErrorType errorType, String message) {
-        super(message);
+        super(message, null, false, false);
         this.errorType = errorType;
     }
 
     public CalculatorException(ErrorType errorType, String message, Throwable cause) {
-        super(message, cause);
+        super(message, cause, false, false);
         this.errorType = errorType;
     }
 
@@ -28,7 +36,9 @@ public class CalculatorException extends Exception {
         return errorType;
     }
 
+    // The configured message for the error type, or the detail message if there is none
     public String getLocalizedMessage() {
-        return AppConfig.getInstance().get("errors." + errorType.name().toLowerCase().replace("_", ""));
+        String message = AppConfig.getInstance().snapshot().getErrorMessage(errorType);
+        return message != null ? message : getMessage();
     }
 }
\ No newline at end of file
@@ -0,0 +1,389 @@
+package com.nayabjalal.calculator.expression;
+
+import com.nayabjalal.calculator.exception.CalculatorException;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Evaluates a compiled expression in double while carrying a bound on the absolute error of
+// every intermediate value, then rounds the result to the display precision. Only when the
+// bound leaves that rounding in doubt is the expression evaluated again in BigDecimal from the
+// literals as written, so 0.1 + 0.2 shows 0.3 at close to the cost of the plain interpreter.
+// Results the bound proves exact are returned unrounded.
+public final class AdaptiveEvaluator {
+    public static final int MAX_DIGITS = 15;
+
+    // Guard digits for the BigDecimal pass before its result is rounded to the display digits
+    private static final MathContext EXACT_CONTEXT = MathContext.DECIMAL128;
+    // Largest exact intermediate the BigDecimal pass computes; past it an operation is rounded to
+    // EXACT_CONTEXT, so no single step costs more than about a 1000-digit product
+    private static final int MAX_EXACT_DIGITS = 1_000;
+    // Exponents up to this are computed by repeated squaring, which keeps exact powers exact
+    private static final int MAX_SQUARING_EXPONENT = 64;
+    // Above this relative input error the first-order bound for a fractional power is not trusted
+    private static final double MAX_POWER_RELATIVE_ERROR = 1e-6;
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private static final AtomicLong evaluations = new AtomicLong();
+    private static final AtomicLong escalations = new AtomicLong();
+
+    private AdaptiveEvaluator() {
+        throw new AssertionError("Constructor is not allowed");
+    }
+
+    // digits is the display precision in significant digits, 1 to MAX_DIGITS
+    public static double evaluate(CompiledExpression program, int digits) throws CalculatorException {
+        return evaluate(program, digits, EvaluationLimits.NONE);
+    }
+
+    // The double pass is bounded by the program, which the limits bounded when it was compiled;
+    // the deadline applies to the BigDecimal pass, whose operands can grow with every product
+    public static double evaluate(CompiledExpression program, int digits, EvaluationLimits limits)
+            throws CalculatorException {
+        // Folding by the optimizer happened in double; start from the literals
+        program = program.getParsed();
+        if (program.getVariableCount() != 0) {
+            throw new CalculatorException(
+                    CalculatorException.ErrorType.INVALID_INPUT,
+                    "Adaptive precision needs an expression without variables"
+            );
+        }
+        digits = clampDigits(digits);
+        evaluations.incrementAndGet();
+
+        EvaluationStack stack = EvaluationStack.forCurrentThread();
+        double[] values = stack.operandArray(program.getMaxDepth());
+        double[] errors = stack.errorArray(program.getMaxDepth());
+        double[] constantErrors = program.getConstantErrors();
+        int top = 0;
+        int constant = 0;
+
+        for (char op : program.getCode()) {
+            if (op == CompiledExpression.PUSH_CONSTANT) {
+                values[top] = program.getConstant(constant);
+                errors[top++] = constantErrors[constant++];
+                continue;
+            }
+            double b = values[--top];
+            values[top - 1] = apply(op, values[top - 1], errors[top - 1], b, errors[top], errors, top - 1);
+        }
+
+        double value = values[0];
+        double shown = display(value, errors[0], digits);
+        if (!Double.isNaN(shown) || Double.isNaN(value)) {
+            return shown;
+        }
+        escalations.incrementAndGet();
+        return evaluateExact(program, digits, value, limits);
+    }
+
+    static int clampDigits(int digits) {
+        return Math.max(1, Math.min(MAX_DIGITS, digits));
+    }
+
+    // a op b for a within ea and b within eb; returns the value and stores a bound on its error
+    // in errors[slot]
+    static double apply(char op, double a, double ea, double b, double eb, double[] errors, int slot)
+            throws CalculatorException {
+        double result;
+        double error;
+        switch (op) {
+            case '+':
+            case '-':
+                if (op == '-') {
+                    b = -b;
+                }
+                // TwoSum: the rounding error of a + b, exactly
+                result = a + b;
+                double bVirtual = result - a;
+                error = ea + eb + Math.abs((a - (result - bVirtual)) + (b - bVirtual));
+                break;
+            case '*':
+                result = a * b;
+                error = productError(a, ea, b, eb, result);
+                break;
+            case '/':
+                if (b == 0) {
+                    throw divisionByZero();
+                }
+                result = a / b;
+                error = quotientError(a, ea, b, eb, result);
+                break;
+            case '%':
+                // The remainder itself is exact; input error moves it, and can move the
+                // quotient to the next integer, which the bound cannot describe
+                result = a % b;
+                error = 0;
+                if (ea != 0 || eb != 0) {
+                    error = ea + Math.abs((a - result) / b) * eb;
+                    if (!(error < Math.abs(result) && error + eb < Math.abs(b) - Math.abs(result))) {
+                        error = Double.POSITIVE_INFINITY;
+                    }
+                }
+                break;
+            default: // '^'
+                if (b == Math.rint(b) && Math.abs(b) <= MAX_SQUARING_EXPONENT) {
+                    return integerPower(a, ea, (int) b, errors, slot);
+                }
+                result = Math.pow(a, b);
+                error = powerError(a, ea, b, eb, result);
+                break;
+        }
+        errors[slot] = error;
+        return result;
+    }
+
+    // What evaluate shows for value within error of the true result: value itself when exact or
+    // not finite, else its rounding to digits, or NaN when only the BigDecimal pass can tell
+    static double display(double value, double error, int digits) {
+        if (error == 0 || Double.isNaN(value) || Double.isInfinite(value)) {
+            return value;
+        }
+        return roundToDigits(value, error, digits);
+    }
+
+    // |literal - value|, rounded up
+    static double conversionError(BigDecimal literal, double value) {
+        BigDecimal error = literal.subtract(new BigDecimal(value));
+        return error.signum() == 0 ? 0 : Math.nextUp(error.abs().doubleValue());
+    }
+
+    public static long getEvaluationCount() {
+        return evaluations.get();
+    }
+
+    // Evaluations that needed the BigDecimal pass
+    public static long getEscalationCount() {
+        return escalations.get();
+    }
+
+    private static double productError(double a, double ea, double b, double eb, double product) {
+        return ea * Math.abs(b) + eb * Math.abs(a) + ea * eb + Math.abs(Math.fma(a, b, -product));
+    }
+
+    private static double quotientError(double a, double ea, double b, double eb, double quotient) {
+        double divisor = Math.abs(b) - eb;
+        if (!(divisor > 0)) {
+            return Double.POSITIVE_INFINITY;
+        }
+        // fma gives the exact remainder of the rounded quotient
+        double rounding = Math.abs(Math.fma(-quotient, b, a) / b);
+        return (ea + Math.abs(quotient) * eb) / divisor + rounding;
+    }
+
+    // a^n by repeated squaring with the product bound at each step; stores the error in
+    // errors[slot] and returns the value
+    private static double integerPower(double a, double ea, int n, double[] errors, int slot) {
+        double result = 1;
+        double resultError = 0;
+        double base = a;
+        double baseError = ea;
+        for (int remaining = Math.abs(n); remaining != 0; remaining >>= 1) {
+            if ((remaining & 1) != 0) {
+                double product = result * base;
+                resultError = productError(result, resultError, base, baseError, product);
+                result = product;
+            }
+            if (remaining > 1) {
+                double square = base * base;
+                baseError = productError(base, baseError, base, baseError, square);
+                base = square;
+            }
+        }
+        if (n < 0) {
+            double reciprocal = 1 / result;
+            resultError = result == 0 ? Double.POSITIVE_INFINITY : quotientError(1, 0, result, resultError, reciprocal);
+            result = reciprocal;
+        }
+        errors[slot] = resultError;
+        return result;
+    }
+
+    // First-order bound for a^b plus the one ulp Math.pow may be off by
+    private static double powerError(double a, double ea, double b, double eb, double result) {
+        double error = Math.ulp(result);
+        if (ea != 0 || eb != 0) {
+            double relative = Math.abs(b) * ea / Math.abs(a) + Math.abs(Math.log(Math.abs(a))) * eb;
+            if (!(relative < MAX_POWER_RELATIVE_ERROR)) {
+                return Double.POSITIVE_INFINITY;
+            }
+            error += Math.abs(result) * relative * 2;
+        }
+        return error;
+    }
+
+    // value rounded to digits significant digits, or NaN if some value within error of it
+    // rounds differently
+    private static double roundToDigits(double value, double error, int digits) {
+        double magnitude = Math.abs(value);
+        if (!(error < magnitude)) {
+            return Double.NaN;
+        }
+        // floor(log10) from the binary exponent can be one low; the check below corrects it
+        int scale = digits - 1 - (int) Math.floor(Math.getExponent(magnitude) * 0.30102999566398120);
+        double scaled = scale(magnitude, scale);
+        if (scaled >= POWERS_OF_TEN[digits]) {
+            scaled = scale(magnitude, --scale);
+        }
+        double rounded = Math.rint(scaled);
+        // Distance of magnitude * 10^scale from the rounded digits. With one exact power of ten
+        // fma recovers what the scaling rounded off; otherwise allow two ulps. The margin on the
+        // error covers rounding in the bound itself.
+        double offset = scaled - rounded;
+        double slack = scale(error, scale) * (1 + 1e-9);
+        if (scale >= 0 && scale < POWERS_OF_TEN.length) {
+            offset += Math.fma(magnitude, POWERS_OF_TEN[scale], -scaled);
+        } else if (scale < 0 && -scale < POWERS_OF_TEN.length) {
+            offset += Math.fma(-scaled, POWERS_OF_TEN[-scale], magnitude) / POWERS_OF_TEN[-scale];
+        } else {
+            slack += 2 * Math.ulp(scaled);
+        }
+        if (!(Math.abs(offset) + slack < 0.5)) {
+            return Double.NaN;
+        }
+        double result = DecimalParser.toDouble((long) rounded, -scale);
+        return value < 0 ? -result : result;
+    }
+
+    // x * 10^scale with at most two roundings, or NaN beyond 10^44
+    private static double scale(double x, int scale) {
+        int magnitude = Math.abs(scale);
+        if (magnitude > 2 * (POWERS_OF_TEN.length - 1)) {
+            return Double.NaN;
+        }
+        double factor = POWERS_OF_TEN[Math.min(magnitude, POWERS_OF_TEN.length - 1)];
+        double rest = POWERS_OF_TEN[Math.max(0, magnitude - (POWERS_OF_TEN.length - 1))];
+        return scale >= 0 ? x * factor * rest : x / factor / rest;
+    }
+
+    // BigDecimal pass over the same program. + - * and % are exact up to MAX_EXACT_DIGITS, / and
+    // integer powers carry 34 digits, fractional powers go through Math.pow. Anything the double pass got as NaN or
+    // infinity, or that BigDecimal cannot represent, returns the double result.
+    private static double evaluateExact(CompiledExpression program, int digits, double fallback,
+                                        EvaluationLimits limits) throws CalculatorException {
+        long start = System.nanoTime();
+        BigDecimal[] literals = program.getExactConstants();
+        BigDecimal[] stack = new BigDecimal[program.getMaxDepth()];
+        int top = 0;
+        int constant = 0;
+        boolean approximate = false;
+        try {
+            for (char op : program.getCode()) {
+                if (op == CompiledExpression.PUSH_CONSTANT) {
+                    stack[top++] = literals[constant++];
+                    continue;
+                }
+                if (limits.isExpired(start)) {
+                    throw new CalculatorException(
+                            CalculatorException.ErrorType.DEADLINE_EXCEEDED,
+                            "Evaluation took too long"
+                    );
+                }
+                BigDecimal b = stack[--top];
+                BigDecimal a = stack[top - 1];
+                BigDecimal result;
+                switch (op) {
+                    case '+':
+                    case '-':
+                        if (op == '-') {
+                            b = b.negate();
+                        }
+                        if (digitSpan(a, b) <= MAX_EXACT_DIGITS) {
+                            result = a.add(b);
+                        } else {
+                            result = a.add(b, EXACT_CONTEXT);
+                            approximate = true;
+                        }
+                        break;
+                    case '*':
+                        if ((long) a.precision() + b.precision() <= MAX_EXACT_DIGITS) {
+                            result = a.multiply(b);
+                        } else {
+                            result = a.multiply(b, EXACT_CONTEXT);
+                            approximate = true;
+                        }
+                        break;
+                    case '/':
+                        // Exactly zero even if rounding made the double divisor nonzero
+                        if (b.signum() == 0) {
+                            throw divisionByZero();
+                        }
+                        result = a.divide(b, EXACT_CONTEXT);
+                        approximate = true;
+                        break;
+                    case '%':
+                        if (b.signum() == 0 || digitSpan(a, b) > MAX_EXACT_DIGITS) {
+                            return fallback;
+                        }
+                        // Sign of the dividend, like the double operator
+                        result = a.remainder(b);
+                        break;
+                    default: // '^'
+                        result = power(a, b);
+                        if (result == null) {
+                            return fallback;
+                        }
+                        approximate |= !isExactPower(a, b);
+                        break;
+                }
+                stack[top - 1] = result;
+            }
+        } catch (ArithmeticException e) {
+            return fallback;
+        }
+
+        BigDecimal exact = stack[0];
+        double value = exact.doubleValue();
+        if (Double.isInfinite(value) || (!approximate && new BigDecimal(value).compareTo(exact) == 0)) {
+            return value;
+        }
+        return exact.round(new MathContext(digits, RoundingMode.HALF_EVEN)).doubleValue();
+    }
+
+    // Digits from the most to the least significant position either operand has: what a sum or
+    // remainder of the two can take exactly
+    private static long digitSpan(BigDecimal a, BigDecimal b) {
+        long high = Math.max((long) a.precision() - a.scale(), (long) b.precision() - b.scale());
+        long low = Math.min(-(long) a.scale(), -(long) b.scale());
+        return high - low;
+    }
+
+    // Whether a^b is computed exactly: a small whole exponent and a result within MAX_EXACT_DIGITS
+    private static boolean isExactPower(BigDecimal a, BigDecimal b) {
+        if (b.signum() < 0 || b.compareTo(BigDecimal.valueOf(MAX_SQUARING_EXPONENT)) > 0
+                || b.stripTrailingZeros().scale() > 0) {
+            return false;
+        }
+        return (long) a.precision() * b.intValue() <= MAX_EXACT_DIGITS;
+    }
+
+    // null where the double semantics give NaN or infinity. Exponents BigDecimal cannot take
+    // (over 999999999) throw ArithmeticException, which falls back to the double result.
+    private static BigDecimal power(BigDecimal a, BigDecimal b) {
+        if (b.signum() == 0 || b.stripTrailingZeros().scale() <= 0) {
+            int n;
+            try {
+                n = b.intValueExact();
+            } catch (ArithmeticException e) {
+                return null;
+            }
+            if (a.signum() == 0 && n < 0) {
+                return null;
+            }
+            return isExactPower(a, b) ? a.pow(n) : a.pow(n, EXACT_CONTEXT);
+        }
+        double result = Math.pow(a.doubleValue(), b.doubleValue());
+        return Double.isNaN(result) || Double.isInfinite(result) ? null : new BigDecimal(result);
+    }
+
+    private static CalculatorException divisionByZero() {
+        return new CalculatorException(
+                CalculatorException.ErrorType.DIVISION_BY_ZERO,
+                "Cannot divide by zero"
+        );
+    }
+}
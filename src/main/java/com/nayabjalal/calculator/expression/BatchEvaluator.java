@@ -0,0 +1,130 @@
+package com.nayabjalal.calculator.expression;
+
+import com.nayabjalal.calculator.util.ExpressionEvaluator;
+import com.nayabjalal.calculator.util.VirtualThreads;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// Evaluates independent expressions in parallel. Items go through the direct, non-throwing
+// ExpressionEvaluator.tryEvaluate path, which shares no state between threads, and each failure
+// is recorded in its own result instead of aborting the batch.
+public class BatchEvaluator implements AutoCloseable {
+    private static final int CHUNK_SIZE = 512;
+
+    public enum Mode {
+        FORK_JOIN,
+        VIRTUAL_THREADS
+    }
+
+    private final Mode mode;
+    private final ForkJoinPool forkJoinPool;
+    private final ExecutorService executor;
+
+    public BatchEvaluator(Mode mode) {
+        this(mode, Runtime.getRuntime().availableProcessors());
+    }
+
+    public BatchEvaluator(Mode mode, int parallelism) {
+        this.mode = mode;
+        if (mode == Mode.FORK_JOIN) {
+            this.forkJoinPool = new ForkJoinPool(parallelism);
+            this.executor = null;
+        } else {
+            this.forkJoinPool = null;
+            this.executor = VirtualThreads.newPerTaskExecutor(parallelism, "batch-evaluator");
+        }
+    }
+
+    public List<EvaluationResult> evaluate(Stream<String> expressions) {
+        return evaluate(expressions.collect(Collectors.toList()));
+    }
+
+    public List<EvaluationResult> evaluate(List<String> expressions) {
+        String[] input = expressions.toArray(new String[0]);
+        EvaluationResult[] results = new EvaluationResult[input.length];
+
+        if (mode == Mode.FORK_JOIN) {
+            forkJoinPool.invoke(new EvaluateRange(input, results, 0, input.length));
+        } else {
+            List<Future<?>> chunks = new ArrayList<>(input.length / CHUNK_SIZE + 1);
+            for (int from = 0; from < input.length; from += CHUNK_SIZE) {
+                int start = from;
+                int end = Math.min(input.length, from + CHUNK_SIZE);
+                chunks.add(executor.submit(() -> evaluateRange(input, results, start, end)));
+            }
+            awaitAll(chunks);
+        }
+        return Arrays.asList(results);
+    }
+
+    public static EvaluationResult evaluateOne(String expression) {
+        return ExpressionEvaluator.tryEvaluate(expression);
+    }
+
+    private static void evaluateRange(String[] input, EvaluationResult[] results, int from, int to) {
+        for (int i = from; i < to; i++) {
+            results[i] = evaluateOne(input[i]);
+        }
+    }
+
+    private static void awaitAll(List<Future<?>> chunks) {
+        try {
+            for (Future<?> chunk : chunks) {
+                chunk.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            chunks.forEach(chunk -> chunk.cancel(true));
+            throw new IllegalStateException("Batch evaluation interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Batch evaluation failed", e.getCause());
+        }
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    @Override
+    public void close() {
+        if (forkJoinPool != null) {
+            forkJoinPool.shutdown();
+        }
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    private static final class EvaluateRange extends RecursiveAction {
+        private final String[] input;
+        private final EvaluationResult[] results;
+        private final int from;
+        private final int to;
+
+        EvaluateRange(String[] input, EvaluationResult[] results, int from, int to) {
+            this.input = input;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= CHUNK_SIZE) {
+                evaluateRange(input, results, from, to);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new EvaluateRange(input, results, from, middle),
+                    new EvaluateRange(input, results, middle, to));
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package com.nayabjalal.calculator.expression;
+
+import com.nayabjalal.calculator.util.ExpressionEvaluator;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Translates a postfix program into a class whose evaluate method is straight-line double
+// arithmetic. There are no branches, so the class file needs no stack map frames.
+final class BytecodeCompiler {
+    private static final String PACKAGE = "com/nayabjalal/calculator/expression/generated/";
+    private static final String FORMULA = "com/nayabjalal/calculator/expression/Formula";
+    private static final String EVALUATOR = "com/nayabjalal/calculator/util/ExpressionEvaluator";
+    private static final int MAX_CODE_LENGTH = 65535;
+    private static final int MAX_POOL_SIZE = 65535;
+    private static final AtomicLong COUNTER = new AtomicLong();
+
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_FINAL = 0x0010;
+    private static final int ACC_SUPER = 0x0020;
+
+    private static final int ICONST_0 = 0x03;
+    private static final int BIPUSH = 0x10;
+    private static final int SIPUSH = 0x11;
+    private static final int DCONST_0 = 0x0e;
+    private static final int DCONST_1 = 0x0f;
+    private static final int LDC2_W = 0x14;
+    private static final int ALOAD_0 = 0x2a;
+    private static final int ALOAD_1 = 0x2b;
+    private static final int DALOAD = 0x31;
+    private static final int DUP2 = 0x5c;
+    private static final int DADD = 0x63;
+    private static final int DSUB = 0x67;
+    private static final int DMUL = 0x6b;
+    private static final int DREM = 0x73;
+    private static final int DRETURN = 0xaf;
+    private static final int RETURN = 0xb1;
+    private static final int INVOKESPECIAL = 0xb7;
+    private static final int INVOKESTATIC = 0xb8;
+
+    private BytecodeCompiler() {
+        throw new AssertionError("Constructor is not allowed");
+    }
+
+    // Returns null when the program cannot be compiled, e.g. because it exceeds the method size limit
+    static Formula compile(CompiledExpression program) {
+        String className = PACKAGE + "Formula" + COUNTER.incrementAndGet();
+        try {
+            byte[] classFile = new ClassWriter(className).write(program);
+            if (classFile == null) {
+                return null;
+            }
+            Class<?> type = new FormulaLoader(BytecodeCompiler.class.getClassLoader())
+                    .define(className.replace('/', '.'), classFile);
+            return (Formula) type.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError | IOException e) {
+            System.err.println("Bytecode compilation failed, using interpreter: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // One loader per formula, so a generated class is unloaded as soon as its expression is unreachable
+    private static final class FormulaLoader extends ClassLoader {
+        FormulaLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        Class<?> define(String name, byte[] classFile) {
+            return defineClass(name, classFile, 0, classFile.length);
+        }
+    }
+
+    private static final class ClassWriter {
+        private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+        private final DataOutputStream pool = new DataOutputStream(poolBytes);
+        private final Map<String, Integer> entries = new HashMap<>();
+        private int poolSize = 1;
+
+        private final int thisClass;
+        private final int superClass;
+        private final int formulaInterface;
+        private final int objectInit;
+        private final int codeName;
+
+        ClassWriter(String className) throws IOException {
+            thisClass = classRef(className);
+            superClass = classRef("java/lang/Object");
+            formulaInterface = classRef(FORMULA);
+            objectInit = methodRef("java/lang/Object", "<init>", "()V");
+            codeName = utf8("Code");
+        }
+
+        byte[] write(CompiledExpression program) throws IOException {
+            byte[] evaluateCode = evaluateCode(program);
+            if (evaluateCode == null) {
+                return null;
+            }
+            byte[] constructorCode = {
+                    (byte) ALOAD_0, (byte) INVOKESPECIAL, (byte) (objectInit >> 8), (byte) objectInit,
+                    (byte) RETURN
+            };
+            int initName = utf8("<init>");
+            int initType = utf8("()V");
+            int evaluateName = utf8("evaluate");
+            int evaluateType = utf8("([D)D");
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(52);
+            out.writeShort(poolSize);
+            pool.flush();
+            poolBytes.writeTo(out);
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(1);
+            out.writeShort(formulaInterface);
+            out.writeShort(0); // fields
+            out.writeShort(2); // methods
+            writeMethod(out, initName, initType, 1, 1, constructorCode);
+            writeMethod(out, evaluateName, evaluateType, program.getMaxDepth() * 2 + 2, 2, evaluateCode);
+            out.writeShort(0); // class attributes
+            out.flush();
+            return bytes.toByteArray();
+        }
+
+        private byte[] evaluateCode(CompiledExpression program) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream code = new DataOutputStream(bytes);
+            int constant = 0;
+            int slot = 0;
+
+            for (char op : program.getCode()) {
+                switch (op) {
+                    case CompiledExpression.PUSH_CONSTANT:
+                        pushConstant(code, program.getConstant(constant++));
+                        break;
+                    case CompiledExpression.PUSH_VARIABLE:
+                        if (program.getSlot(slot) > Short.MAX_VALUE) {
+                            return null;
+                        }
+                        code.writeByte(ALOAD_1);
+                        pushInt(code, program.getSlot(slot++));
+                        code.writeByte(DALOAD);
+                        break;
+                    case CompiledExpression.DUPLICATE: code.writeByte(DUP2); break;
+                    case '+': code.writeByte(DADD); break;
+                    case '-': code.writeByte(DSUB); break;
+                    case '*': code.writeByte(DMUL); break;
+                    case '%': code.writeByte(DREM); break;
+                    case '/':
+                        code.writeByte(INVOKESTATIC);
+                        code.writeShort(methodRef(EVALUATOR, "divide", "(DD)D"));
+                        break;
+                    case '^':
+                        code.writeByte(INVOKESTATIC);
+                        code.writeShort(methodRef("java/lang/Math", "pow", "(DD)D"));
+                        break;
+                    default:
+                        return null;
+                }
+                if (bytes.size() > MAX_CODE_LENGTH - 1 || poolSize > MAX_POOL_SIZE) {
+                    return null;
+                }
+            }
+            code.writeByte(DRETURN);
+            code.flush();
+            return bytes.toByteArray();
+        }
+
+        private void pushConstant(DataOutputStream code, double value) throws IOException {
+            long bits = Double.doubleToRawLongBits(value);
+            if (bits == 0L) {
+                code.writeByte(DCONST_0);
+            } else if (bits == Double.doubleToRawLongBits(1.0)) {
+                code.writeByte(DCONST_1);
+            } else {
+                code.writeByte(LDC2_W);
+                code.writeShort(doubleConstant(value));
+            }
+        }
+
+        private static void pushInt(DataOutputStream code, int value) throws IOException {
+            if (value <= 5) {
+                code.writeByte(ICONST_0 + value);
+            } else if (value <= Byte.MAX_VALUE) {
+                code.writeByte(BIPUSH);
+                code.writeByte(value);
+            } else {
+                code.writeByte(SIPUSH);
+                code.writeShort(value);
+            }
+        }
+
+        private void writeMethod(DataOutputStream out, int name, int type, int maxStack, int maxLocals,
+                                 byte[] code) throws IOException {
+            out.writeShort(ACC_PUBLIC);
+            out.writeShort(name);
+            out.writeShort(type);
+            out.writeShort(1);
+            out.writeShort(codeName);
+            out.writeInt(12 + code.length);
+            out.writeShort(maxStack);
+            out.writeShort(maxLocals);
+            out.writeInt(code.length);
+            out.write(code);
+            out.writeShort(0); // exception table
+            out.writeShort(0); // code attributes
+        }
+
+        private int utf8(String value) throws IOException {
+            Integer index = entries.get("U" + value);
+            if (index == null) {
+                pool.writeByte(1);
+                pool.writeUTF(value);
+                index = poolSize++;
+                entries.put("U" + value, index);
+            }
+            return index;
+        }
+
+        private int classRef(String name) throws IOException {
+            Integer index = entries.get("C" + name);
+            if (index == null) {
+                int nameIndex = utf8(name);
+                pool.writeByte(7);
+                pool.writeShort(nameIndex);
+                index = poolSize++;
+                entries.put("C" + name, index);
+            }
+            return index;
+        }
+
+        private int methodRef(String owner, String name, String type) throws IOException {
+            String key = "M" + owner + "." + name + type;
+            Integer index = entries.get(key);
+            if (index == null) {
+                int ownerIndex = classRef(owner);
+                int nameIndex = utf8(name);
+                int typeIndex = utf8(type);
+                pool.writeByte(12);
+                pool.writeShort(nameIndex);
+                pool.writeShort(typeIndex);
+                int nameAndType = poolSize++;
+                pool.writeByte(10);
+                pool.writeShort(ownerIndex);
+                pool.writeShort(nameAndType);
+                index = poolSize++;
+                entries.put(key, index);
+            }
+            return index;
+        }
+
+        private int doubleConstant(double value) throws IOException {
+            String key = "D" + Double.doubleToRawLongBits(value);
+            Integer index = entries.get(key);
+            if (index == null) {
+                pool.writeByte(6);
+                pool.writeDouble(value);
+                index = poolSize;
+                poolSize += 2; // doubles take two constant pool slots
+                entries.put(key, index);
+            }
+            return index;
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package com.nayabjalal.calculator.expression;
+
+import com.nayabjalal.calculator.exception.CalculatorException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Several formulas over the same variables, compiled into one program. Their parsed trees are
+// hash-consed into a single DAG, so a subexpression that appears in many formulas (the same
+// denominator in dozens of ratios) is evaluated once per row. Evaluation is columnar, like
+// CompiledExpression.evaluate(double[][], double[]), and a register is reused as soon as the
+// last node reading it has run.
+public final class CompiledBatch {
+    // Node ids share a long key with the operator, so they must fit in 24 bits
+    private static final int MAX_NODES = 1 << 24;
+
+    private final String[] expressions;
+    private final String[] variables;
+    // One instruction per DAG node, in dependency order
+    private final char[] ops;
+    private final int[] targets;
+    private final int[] lefts; // register, or variable slot for PUSH_VARIABLE
+    private final int[] rights;
+    private final double[] constants;
+    // Formulas whose result instruction i computes: outputFormulas[outputStarts[i]..outputStarts[i + 1])
+    private final int[] outputStarts;
+    private final int[] outputFormulas;
+    private final int registerCount;
+    private final int treeNodeCount;
+
+    private CompiledBatch(String[] expressions, String[] variables, Dag dag, int treeNodeCount) {
+        this.expressions = expressions;
+        this.variables = variables;
+        this.treeNodeCount = treeNodeCount;
+
+        int size = dag.size;
+        ops = Arrays.copyOf(dag.ops, size);
+        constants = Arrays.copyOf(dag.values, size);
+        targets = new int[size];
+        lefts = new int[size];
+        rights = new int[size];
+
+        // Readers left for each node; a formula result counts as one more
+        int[] remaining = new int[size];
+        for (int i = 0; i < size; i++) {
+            if (isOperation(ops[i])) {
+                remaining[dag.lefts[i]]++;
+                remaining[dag.rights[i]]++;
+            }
+        }
+        outputStarts = new int[size + 1];
+        for (int root : dag.roots) {
+            outputStarts[root + 1]++;
+        }
+        for (int i = 0; i < size; i++) {
+            outputStarts[i + 1] += outputStarts[i];
+        }
+        outputFormulas = new int[dag.roots.length];
+        int[] filled = Arrays.copyOf(outputStarts, size);
+        for (int formula = 0; formula < dag.roots.length; formula++) {
+            outputFormulas[filled[dag.roots[formula]]++] = formula;
+        }
+
+        // Operands are released before the target is picked, so a node can overwrite the
+        // register of an operand it is the last reader of
+        int[] free = new int[size];
+        int freeCount = 0;
+        int registers = 0;
+        for (int i = 0; i < size; i++) {
+            if (ops[i] == CompiledExpression.PUSH_VARIABLE) {
+                lefts[i] = dag.slots[i];
+            } else if (isOperation(ops[i])) {
+                int left = dag.lefts[i];
+                int right = dag.rights[i];
+                lefts[i] = targets[left];
+                rights[i] = targets[right];
+                remaining[left]--;
+                remaining[right]--;
+                if (remaining[left] == 0) {
+                    free[freeCount++] = targets[left];
+                }
+                if (remaining[right] == 0 && right != left) {
+                    free[freeCount++] = targets[right];
+                }
+            }
+            targets[i] = freeCount > 0 ? free[--freeCount] : registers++;
+            if (remaining[i] == 0) {
+                // Only a formula result; copied out right after it is computed
+                free[freeCount++] = targets[i];
+            }
+        }
+        registerCount = registers;
+    }
+
+    static CompiledBatch build(String[] expressions, String[] variables, CompiledExpression[] programs)
+            throws CalculatorException {
+        Dag dag = new Dag(programs.length);
+        int treeNodeCount = 0;
+        for (int formula = 0; formula < programs.length; formula++) {
+            treeNodeCount += dag.add(programs[formula], formula);
+        }
+        return new CompiledBatch(expressions, variables, dag, treeNodeCount);
+    }
+
+    // columns[v][row] holds variable v; out[f][row] receives formula f for the first
+    // out[0].length rows
+    public void evaluate(double[][] columns, double[][] out) throws CalculatorException {
+        if (columns.length != variables.length) {
+            throw invalidInput("Expected " + variables.length + " variable columns but got " + columns.length);
+        }
+        if (out.length != expressions.length) {
+            throw invalidInput("Expected " + expressions.length + " output columns but got " + out.length);
+        }
+        int rows = out.length == 0 ? 0 : out[0].length;
+        for (double[] column : out) {
+            if (column.length != rows) {
+                throw invalidInput("Output columns differ in length: " + column.length + " and " + rows);
+            }
+        }
+        for (double[] column : columns) {
+            if (column.length < rows) {
+                throw invalidInput("Column has " + column.length + " rows, expected at least " + rows);
+            }
+        }
+
+        double[][] registers = EvaluationStack.forCurrentThread()
+                .registerBlock(registerCount, CompiledExpression.BLOCK_SIZE);
+        for (int from = 0; from < rows; from += CompiledExpression.BLOCK_SIZE) {
+            int count = Math.min(CompiledExpression.BLOCK_SIZE, rows - from);
+            for (int i = 0; i < ops.length; i++) {
+                double[] target = registers[targets[i]];
+                char op = ops[i];
+                if (op == CompiledExpression.PUSH_CONSTANT) {
+                    Arrays.fill(target, 0, count, constants[i]);
+                } else if (op == CompiledExpression.PUSH_VARIABLE) {
+                    System.arraycopy(columns[lefts[i]], from, target, 0, count);
+                } else {
+                    CompiledExpression.applyColumn(op, target, registers[lefts[i]], registers[rights[i]], count, from);
+                }
+                for (int k = outputStarts[i]; k < outputStarts[i + 1]; k++) {
+                    System.arraycopy(target, 0, out[outputFormulas[k]], from, count);
+                }
+            }
+        }
+    }
+
+    public int getFormulaCount() {
+        return expressions.length;
+    }
+
+    public String[] getExpressions() {
+        return expressions.clone();
+    }
+
+    public String[] getVariables() {
+        return variables.clone();
+    }
+
+    // Nodes in the shared DAG, i.e. operations and loads per row
+    public int getNodeCount() {
+        return ops.length;
+    }
+
+    // Nodes the formulas have on their own, after optimization, minus the shared DAG's
+    public int getRemovedNodeCount() {
+        return treeNodeCount - ops.length;
+    }
+
+    public int getRegisterCount() {
+        return registerCount;
+    }
+
+    private static boolean isOperation(char op) {
+        return op != CompiledExpression.PUSH_CONSTANT && op != CompiledExpression.PUSH_VARIABLE;
+    }
+
+    private static CalculatorException invalidInput(String message) {
+        return new CalculatorException(CalculatorException.ErrorType.INVALID_INPUT, message);
+    }
+
+    // Hash-consing table: one node per distinct constant, variable and (operator, left, right).
+    // Operands of + and * are ordered by id, since IEEE addition and multiplication commute.
+    private static final class Dag {
+        char[] ops = new char[64];
+        double[] values = new double[64];
+        int[] slots = new int[64];
+        int[] lefts = new int[64];
+        int[] rights = new int[64];
+        int size;
+        final int[] roots;
+        private final Map<Long, Integer> constantNodes = new HashMap<>();
+        private final Map<Integer, Integer> variableNodes = new HashMap<>();
+        private final Map<Long, Integer> operationNodes = new HashMap<>();
+
+        Dag(int formulas) {
+            roots = new int[formulas];
+        }
+
+        // Returns the number of tree nodes in the program
+        int add(CompiledExpression program, int formula) throws CalculatorException {
+            List<Integer> stack = new ArrayList<>();
+            int constant = 0;
+            int slot = 0;
+            int treeNodes = 0;
+            for (char op : program.getCode()) {
+                if (op == CompiledExpression.PUSH_CONSTANT) {
+                    stack.add(constant(program.getConstant(constant++)));
+                } else if (op == CompiledExpression.PUSH_VARIABLE) {
+                    stack.add(variable(program.getSlot(slot++)));
+                } else if (op == CompiledExpression.DUPLICATE) {
+                    stack.add(stack.get(stack.size() - 1));
+                    continue;
+                } else {
+                    int right = stack.remove(stack.size() - 1);
+                    int left = stack.remove(stack.size() - 1);
+                    stack.add(operation(op, left, right));
+                }
+                treeNodes++;
+            }
+            roots[formula] = stack.get(0);
+            return treeNodes;
+        }
+
+        private int constant(double value) throws CalculatorException {
+            Integer node = constantNodes.get(Double.doubleToRawLongBits(value));
+            if (node == null) {
+                node = newNode(CompiledExpression.PUSH_CONSTANT);
+                values[node] = value;
+                constantNodes.put(Double.doubleToRawLongBits(value), node);
+            }
+            return node;
+        }
+
+        private int variable(int slot) throws CalculatorException {
+            Integer node = variableNodes.get(slot);
+            if (node == null) {
+                node = newNode(CompiledExpression.PUSH_VARIABLE);
+                slots[node] = slot;
+                variableNodes.put(slot, node);
+            }
+            return node;
+        }
+
+        private int operation(char op, int left, int right) throws CalculatorException {
+            if ((op == '+' || op == '*') && left > right) {
+                int swap = left;
+                left = right;
+                right = swap;
+            }
+            long key = (long) op << 48 | (long) left << 24 | right;
+            Integer node = operationNodes.get(key);
+            if (node == null) {
+                node = newNode(op);
+                lefts[node] = left;
+                rights[node] = right;
+                operationNodes.put(key, node);
+            }
+            return node;
+        }
+
+        private int newNode(char op) throws CalculatorException {
+            if (size == MAX_NODES) {
+                throw invalidInput("Batch has more than " + MAX_NODES + " distinct subexpressions");
+            }
+            if (size == ops.length) {
+                int length = size * 2;
+                ops = Arrays.copyOf(ops, length);
+                values = Arrays.copyOf(values, length);
+                slots = Arrays.copyOf(slots, length);
+                lefts = Arrays.copyOf(lefts, length);
+                rights = Arrays.copyOf(rights, length);
+            }
+            ops[size] = op;
+            return size++;
+        }
+    }
+}
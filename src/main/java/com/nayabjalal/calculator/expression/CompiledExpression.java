@@ -0,0 +1,252 @@
+package com.nayabjalal.calculator.expression;
+
+import com.nayabjalal.calculator.exception.CalculatorException;
+import com.nayabjalal.calculator.util.ExpressionEvaluator;
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+public final class CompiledExpression {
+    static final char PUSH_CONSTANT = '#';
+    static final char PUSH_VARIABLE = '$';
+    static final char DUPLICATE = 'd';
+
+    // Rows evaluated per pass in the columnar loop; keeps the register block inside L1/L2
+    static final int BLOCK_SIZE = 256;
+    private static final double[] NO_VALUES = new double[0];
+
+    private final String expression;
+    private final String[] variables;
+    private final char[] code;
+    private final double[] constants;
+    private final int[] slots;
+    private final int maxDepth;
+    private final Formula formula;
+    // The program as parsed, when this one was rewritten by ExpressionOptimizer
+    private final CompiledExpression parsed;
+    // Built on first use by AdaptiveEvaluator; racing threads build equal arrays
+    private volatile BigDecimal[] exactConstants;
+    private volatile double[] constantErrors;
+
+    CompiledExpression(String expression, String[] variables, char[] code, double[] constants, int[] slots,
+                       int maxDepth) {
+        this(expression, variables, code, constants, slots, maxDepth, null, null);
+    }
+
+    private CompiledExpression(String expression, String[] variables, char[] code, double[] constants,
+                               int[] slots, int maxDepth, Formula formula, CompiledExpression parsed) {
+        this.expression = expression;
+        this.variables = variables;
+        this.code = code;
+        this.constants = constants;
+        this.slots = slots;
+        this.maxDepth = maxDepth;
+        this.formula = formula;
+        this.parsed = parsed;
+    }
+
+    CompiledExpression withFormula(Formula formula) {
+        return new CompiledExpression(expression, variables, code, constants, slots, maxDepth, formula, parsed);
+    }
+
+    CompiledExpression withProgram(char[] code, double[] constants, int[] slots, int maxDepth) {
+        return new CompiledExpression(expression, variables, code, constants, slots, maxDepth, null, getParsed());
+    }
+
+    public double evaluate() throws CalculatorException {
+        return evaluate(NO_VALUES);
+    }
+
+    public double evaluate(double... values) throws CalculatorException {
+        checkArity(values.length);
+        if (formula != null) {
+            return formula.evaluate(values);
+        }
+        return interpret(values);
+    }
+
+    private double interpret(double[] values) throws CalculatorException {
+        double[] stack = EvaluationStack.forCurrentThread().operandArray(maxDepth);
+        int top = 0;
+        int constant = 0;
+        int slot = 0;
+
+        for (char op : code) {
+            if (op == PUSH_CONSTANT) {
+                stack[top++] = constants[constant++];
+            } else if (op == PUSH_VARIABLE) {
+                stack[top++] = values[slots[slot++]];
+            } else if (op == DUPLICATE) {
+                stack[top] = stack[top - 1];
+                top++;
+            } else {
+                double b = stack[--top];
+                double a = stack[--top];
+                stack[top++] = ExpressionEvaluator.applyOperation(op, b, a);
+            }
+        }
+        return stack[0];
+    }
+
+    // Columnar batch: columns[v][row] holds the value of variable v for each row, and out.length
+    // rows are evaluated. Each instruction runs as a flat loop over a block of rows so the JIT
+    // can unroll and vectorize it.
+    public void evaluate(double[][] columns, double[] out) throws CalculatorException {
+        checkArity(columns.length);
+        int rows = out.length;
+        for (double[] column : columns) {
+            if (column.length < rows) {
+                throw new CalculatorException(
+                        CalculatorException.ErrorType.INVALID_INPUT,
+                        "Column has " + column.length + " rows, expected at least " + rows
+                );
+            }
+        }
+
+        double[][] registers = EvaluationStack.forCurrentThread().registerBlock(maxDepth, BLOCK_SIZE);
+        for (int from = 0; from < rows; from += BLOCK_SIZE) {
+            int count = Math.min(BLOCK_SIZE, rows - from);
+            evaluateBlock(columns, registers, from, count);
+            System.arraycopy(registers[0], 0, out, from, count);
+        }
+    }
+
+    private void evaluateBlock(double[][] columns, double[][] registers, int from, int count)
+            throws CalculatorException {
+        int top = 0;
+        int constant = 0;
+        int slot = 0;
+
+        for (char op : code) {
+            if (op == PUSH_CONSTANT) {
+                Arrays.fill(registers[top++], 0, count, constants[constant++]);
+            } else if (op == PUSH_VARIABLE) {
+                System.arraycopy(columns[slots[slot++]], from, registers[top++], 0, count);
+            } else if (op == DUPLICATE) {
+                System.arraycopy(registers[top - 1], 0, registers[top++], 0, count);
+            } else {
+                double[] b = registers[--top];
+                double[] a = registers[top - 1];
+                applyColumn(op, a, a, b, count, from);
+            }
+        }
+    }
+
+    // target[i] = a[i] op b[i]; target may be a or b
+    static void applyColumn(char op, double[] target, double[] a, double[] b, int count, int from)
+            throws CalculatorException {
+        switch (op) {
+            case '+':
+                for (int i = 0; i < count; i++) target[i] = a[i] + b[i];
+                break;
+            case '-':
+                for (int i = 0; i < count; i++) target[i] = a[i] - b[i];
+                break;
+            case '*':
+                for (int i = 0; i < count; i++) target[i] = a[i] * b[i];
+                break;
+            case '/':
+                for (int i = 0; i < count; i++) {
+                    if (b[i] == 0) {
+                        throw new CalculatorException(
+                                CalculatorException.ErrorType.DIVISION_BY_ZERO,
+                                "Cannot divide by zero (row " + (from + i) + ")"
+                        );
+                    }
+                }
+                for (int i = 0; i < count; i++) target[i] = a[i] / b[i];
+                break;
+            case '%':
+                for (int i = 0; i < count; i++) target[i] = a[i] % b[i];
+                break;
+            case '^':
+                for (int i = 0; i < count; i++) target[i] = Math.pow(a[i], b[i]);
+                break;
+            default:
+                throw new CalculatorException(
+                        CalculatorException.ErrorType.INVALID_OPERATION,
+                        "Invalid operator: " + op
+                );
+        }
+    }
+
+    private void checkArity(int count) throws CalculatorException {
+        if (count != variables.length) {
+            throw new CalculatorException(
+                    CalculatorException.ErrorType.INVALID_INPUT,
+                    "Expected " + variables.length + " variable values but got " + count
+            );
+        }
+    }
+
+    public String getExpression() {
+        return expression;
+    }
+
+    public String[] getVariables() {
+        return variables.clone();
+    }
+
+    public boolean isBytecodeCompiled() {
+        return formula != null;
+    }
+
+    char[] getCode() { return code; }
+    double getConstant(int index) { return constants[index]; }
+    int getSlot(int index) { return slots[index]; }
+    int getMaxDepth() { return maxDepth; }
+    int getVariableCount() { return variables.length; }
+
+    // The program before optimization, whose constants are the literals in order
+    CompiledExpression getParsed() {
+        return parsed != null ? parsed : this;
+    }
+
+    // The literals as written, in the order of the constants
+    BigDecimal[] getExactConstants() {
+        BigDecimal[] exact = exactConstants;
+        if (exact == null) {
+            exact = new BigDecimal[constants.length];
+            int count = 0;
+            int length = expression.length();
+            for (int i = 0; i < length; i++) {
+                char c = expression.charAt(i);
+                if (ExpressionCompiler.isIdentifierStart(c)) {
+                    while (i + 1 < length && ExpressionCompiler.isIdentifierPart(expression.charAt(i + 1))) {
+                        i++;
+                    }
+                } else if (DecimalParser.isDigit(c) || c == '.') {
+                    int end = DecimalParser.scanNumber(expression, i, length);
+                    StringBuilder digits = new StringBuilder(end - i);
+                    for (int j = i; j < end; j++) {
+                        if (!DecimalParser.isWhitespace(expression.charAt(j))) {
+                            digits.append(expression.charAt(j));
+                        }
+                    }
+                    exact[count++] = new BigDecimal(digits.toString());
+                    i = end - 1;
+                }
+            }
+            exactConstants = exact;
+        }
+        return exact;
+    }
+
+    // |literal - constant| for each constant, rounded up
+    double[] getConstantErrors() {
+        double[] errors = constantErrors;
+        if (errors == null) {
+            BigDecimal[] exact = getExactConstants();
+            errors = new double[constants.length];
+            for (int i = 0; i < errors.length; i++) {
+                errors[i] = AdaptiveEvaluator.conversionError(exact[i], constants[i]);
+            }
+            constantErrors = errors;
+        }
+        return errors;
+    }
+
+    @Override
+    public String toString() {
+        return expression;
+    }
+}
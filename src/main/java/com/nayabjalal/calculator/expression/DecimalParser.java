@@ -0,0 +1,261 @@
+package com.nayabjalal.calculator.expression;
+
+import com.nayabjalal.calculator.exception.CalculatorException;
+import java.math.BigInteger;
+
+public class DecimalParser {
+
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    private static final int MAX_DIGITS = 19;
+    private static final int SMALLEST_POWER_OF_TEN = -342;
+    private static final int LARGEST_POWER_OF_TEN = 308;
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final long[] POWERS_OF_FIVE = powersOfFive();
+
+    private DecimalParser() {
+        throw new AssertionError("Constructor is not allowed");
+    }
+
+    public static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    public static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    // End of the number starting at start; whitespace between digits belongs to the number,
+    // matching the old behaviour of stripping all whitespace before tokenizing
+    public static int scanNumber(CharSequence input, int start, int limit) {
+        int end = start;
+        for (int i = start; i < limit; i++) {
+            char c = input.charAt(i);
+            if (isDigit(c) || c == '.') {
+                end = i + 1;
+            } else if (!isWhitespace(c)) {
+                break;
+            }
+        }
+        return end;
+    }
+
+    // Parses digits and at most one '.' in [start, end), ignoring whitespace, with correct
+    // rounding. Up to 19 significant digits are read into a long: exact small values take one
+    // double division (Clinger), the rest the Eisel-Lemire 128-bit product. Longer inputs and
+    // the rare products Eisel-Lemire cannot decide go through Double.parseDouble.
+    public static double parse(CharSequence input, int start, int end) throws CalculatorException {
+        double value = parseOrNaN(input, start, end);
+        if (Double.isNaN(value)) {
+            throw invalidNumber(start);
+        }
+        return value;
+    }
+
+    // Same as parse, but reports a malformed number as NaN, which digits alone can never produce
+    public static double parseOrNaN(CharSequence input, int start, int end) {
+        long mantissa = 0; // unsigned; 19 digits can exceed Long.MAX_VALUE
+        int digits = 0;
+        int exponent = 0;
+        boolean seenDigit = false;
+        boolean seenPoint = false;
+        boolean truncated = false;
+
+        for (int i = start; i < end; i++) {
+            char c = input.charAt(i);
+            if (isDigit(c)) {
+                seenDigit = true;
+                if (digits < MAX_DIGITS) {
+                    if (mantissa != 0 || c != '0') {
+                        mantissa = mantissa * 10 + (c - '0');
+                        digits++;
+                    }
+                    if (seenPoint) {
+                        exponent--;
+                    }
+                } else {
+                    truncated |= c != '0';
+                    if (!seenPoint) {
+                        exponent++;
+                    }
+                }
+            } else if (c == '.') {
+                if (seenPoint) {
+                    return Double.NaN;
+                }
+                seenPoint = true;
+            } else if (!isWhitespace(c)) {
+                return Double.NaN;
+            }
+        }
+
+        if (!seenDigit) {
+            return Double.NaN;
+        }
+        if (!truncated) {
+            return toDouble(mantissa, exponent);
+        }
+        // The dropped digits put the exact value between mantissa and mantissa + 1
+        double value = eiselLemire(mantissa, exponent);
+        return value == value && value == eiselLemire(mantissa + 1, exponent) ? value : slowParse(input, start, end);
+    }
+
+    // Nearest double to mantissa * 10^exponent, mantissa read as unsigned
+    static double toDouble(long mantissa, int exponent) {
+        if (Long.compareUnsigned(mantissa, MAX_EXACT_MANTISSA) <= 0 && exponent >= -22 && exponent <= 22) {
+            return exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+        }
+        double value = eiselLemire(mantissa, exponent);
+        return value == value ? value : Double.parseDouble(Long.toUnsignedString(mantissa) + "E" + exponent);
+    }
+
+    // Correctly rounded mantissa * 10^exponent for an unsigned mantissa, or NaN when the
+    // truncated power of five leaves the rounding undecided. Follows fast_float's compute_float.
+    private static double eiselLemire(long mantissa, int exponent) {
+        if (mantissa == 0 || exponent < SMALLEST_POWER_OF_TEN) {
+            return 0.0;
+        }
+        if (exponent > LARGEST_POWER_OF_TEN) {
+            return Double.POSITIVE_INFINITY;
+        }
+        int leadingZeros = Long.numberOfLeadingZeros(mantissa);
+        long normalized = mantissa << leadingZeros;
+
+        int index = 2 * (exponent - SMALLEST_POWER_OF_TEN);
+        long high = unsignedMultiplyHigh(normalized, POWERS_OF_FIVE[index]);
+        long low = normalized * POWERS_OF_FIVE[index];
+        if ((high & 0x1FF) == 0x1FF) {
+            // Not enough bits to round from the upper product; bring in the next 64 bits of 5^q
+            long carry = unsignedMultiplyHigh(normalized, POWERS_OF_FIVE[index + 1]);
+            low += carry;
+            if (Long.compareUnsigned(carry, low) > 0) {
+                high++;
+            }
+        }
+        if (low == -1L && (exponent < -27 || exponent > 55)) {
+            return Double.NaN;
+        }
+
+        int upperBit = (int) (high >>> 63);
+        long bits = high >>> (upperBit + 9);
+        int power2 = (int) (((152170L + 65536L) * exponent) >> 16) + 63 + upperBit - leadingZeros + 1023;
+        if (power2 <= 0) {
+            // Subnormal
+            if (-power2 + 1 >= 64) {
+                return 0.0;
+            }
+            bits >>>= -power2 + 1;
+            bits += bits & 1;
+            bits >>>= 1;
+            // Rounding up into 2^52 sets the lowest exponent bit, giving the smallest normal
+            return Double.longBitsToDouble(bits);
+        }
+        // Halfway between two doubles: round to even instead of up. Only exponents in [-4, 23]
+        // can land exactly halfway.
+        if (Long.compareUnsigned(low, 1) <= 0 && exponent >= -4 && exponent <= 23 && (bits & 3) == 1
+                && bits << (upperBit + 9) == high) {
+            bits &= ~1L;
+        }
+        bits += bits & 1;
+        bits >>>= 1;
+        if (bits >= (2L << 52)) {
+            bits = 1L << 52;
+            power2++;
+        }
+        bits &= ~(1L << 52);
+        if (power2 >= 0x7FF) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return Double.longBitsToDouble(bits | (long) power2 << 52);
+    }
+
+    private static long unsignedMultiplyHigh(long x, long y) {
+        return Math.multiplyHigh(x, y) + ((x >> 63) & y) + ((y >> 63) & x);
+    }
+
+    // 128-bit approximations of 5^q for q in [-342, 308], high word first, normalised so the
+    // top bit is set; negative powers are rounded up. Same table as fast_float generates.
+    private static long[] powersOfFive() {
+        long[] table = new long[2 * (LARGEST_POWER_OF_TEN - SMALLEST_POWER_OF_TEN + 1)];
+        BigInteger twoTo128 = BigInteger.ONE.shiftLeft(128);
+        BigInteger mask = twoTo128.subtract(BigInteger.ONE);
+        BigInteger five = BigInteger.valueOf(5);
+        BigInteger power = BigInteger.ONE;
+        for (int q = 0; q <= LARGEST_POWER_OF_TEN; q++) {
+            int shift = power.bitLength() - 128;
+            store(table, q, shift > 0 ? power.shiftRight(shift) : power.shiftLeft(-shift));
+            power = power.multiply(five);
+        }
+        power = five;
+        for (int q = -1; q >= SMALLEST_POWER_OF_TEN; q--) {
+            int z = power.subtract(BigInteger.ONE).bitLength();
+            BigInteger c;
+            if (q >= -27) {
+                c = BigInteger.ONE.shiftLeft(z + 127).divide(power).add(BigInteger.ONE);
+            } else {
+                c = BigInteger.ONE.shiftLeft(2 * z + 128).divide(power).add(BigInteger.ONE);
+                while (c.compareTo(twoTo128) >= 0) {
+                    c = c.shiftRight(1);
+                }
+            }
+            store(table, q, c.and(mask));
+            power = power.multiply(five);
+        }
+        return table;
+    }
+
+    private static void store(long[] table, int q, BigInteger value) {
+        int index = 2 * (q - SMALLEST_POWER_OF_TEN);
+        table[index] = value.shiftRight(64).longValue();
+        table[index + 1] = value.longValue();
+    }
+
+    private static double slowParse(CharSequence input, int start, int end) {
+        StringBuilder digits = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            char c = input.charAt(i);
+            if (!isWhitespace(c)) {
+                digits.append(c);
+            }
+        }
+        return Double.parseDouble(digits.toString());
+    }
+
+    // Text of a plain decimal with an optional leading '-' and surrounding whitespace, as
+    // accepted by InputValidator.isValidNumber
+    public static double parseSigned(CharSequence text) {
+        int start = 0;
+        int end = text.length();
+        while (start < end && text.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && text.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        boolean negative = start < end && text.charAt(start) == '-';
+        double value = parseOrNaN(text, negative ? start + 1 : start, end);
+        if (Double.isNaN(value) || !isPlain(text, start, end)) {
+            throw new NumberFormatException("For input string: \"" + text + "\"");
+        }
+        return negative ? -value : value;
+    }
+
+    // parseOrNaN lets whitespace through between digits; the text from the display may not
+    private static boolean isPlain(CharSequence text, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (isWhitespace(text.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static CalculatorException invalidNumber(int position) {
+        return new CalculatorException(
+                CalculatorException.ErrorType.EXPRESSION_PARSE_ERROR,
+                "Invalid number at position " + position
+        );
+    }
+}
@@ -0,0 +1,56 @@
+package com.nayabjalal.calculator.expression;
+
+import com.nayabjalal.calculator.exception.CalculatorException;
+import com.nayabjalal.calculator.exception.CalculatorException.ErrorType;
+
+// Why an evaluation failed. The non-throwing path records one of these with a position and
+// the offending character; the message text is only built when somebody asks for it.
+public enum EvaluationError {
+    EMPTY(ErrorType.INVALID_INPUT),
+    INVALID_NUMBER(ErrorType.EXPRESSION_PARSE_ERROR),
+    UNEXPECTED_CHARACTER(ErrorType.EXPRESSION_PARSE_ERROR),
+    UNMATCHED_CLOSE(ErrorType.EXPRESSION_PARSE_ERROR),
+    UNMATCHED_OPEN(ErrorType.EXPRESSION_PARSE_ERROR),
+    MISSING_OPERAND(ErrorType.EXPRESSION_PARSE_ERROR),
+    MALFORMED(ErrorType.EXPRESSION_PARSE_ERROR),
+    DIVISION_BY_ZERO(ErrorType.DIVISION_BY_ZERO),
+    // EvaluationLimits; INPUT_TOO_LONG is reported at the first position past the limit
+    INPUT_TOO_LONG(ErrorType.INPUT_TOO_LONG),
+    NESTING_TOO_DEEP(ErrorType.NESTING_TOO_DEEP),
+    TOO_MANY_TOKENS(ErrorType.TOO_MANY_TOKENS),
+    OPERATION_LIMIT_EXCEEDED(ErrorType.OPERATION_LIMIT_EXCEEDED),
+    DEADLINE_EXCEEDED(ErrorType.DEADLINE_EXCEEDED);
+
+    private final ErrorType errorType;
+
+    EvaluationError(ErrorType errorType) {
+        this.errorType = errorType;
+    }
+
+    public ErrorType getErrorType() {
+        return errorType;
+    }
+
+    // Same wording as the exceptions thrown by ExpressionEvaluator.evaluate
+    public String message(int position, char symbol) {
+        switch (this) {
+            case EMPTY: return "Expression cannot be empty";
+            case INVALID_NUMBER: return "Invalid number at position " + position;
+            case UNEXPECTED_CHARACTER: return "Unexpected character '" + symbol + "' at position " + position;
+            case UNMATCHED_CLOSE: return "Unmatched ')' at position " + position;
+            case UNMATCHED_OPEN: return "Unmatched '('";
+            case MISSING_OPERAND: return "Missing operand for '" + symbol + "' near position " + position;
+            case MALFORMED: return "Malformed expression";
+            case INPUT_TOO_LONG: return "Expression is longer than " + position + " characters";
+            case NESTING_TOO_DEEP: return "Parentheses nested too deeply at position " + position;
+            case TOO_MANY_TOKENS: return "Too many tokens at position " + position;
+            case OPERATION_LIMIT_EXCEEDED: return "Too many operations at position " + position;
+            case DEADLINE_EXCEEDED: return "Evaluation took too long, stopped at position " + position;
+            default: return "Cannot divide by zero";
+        }
+    }
+
+    public CalculatorException exception(int position, char symbol) {
+        return new CalculatorException(errorType, message(position, symbol));
+    }
+}
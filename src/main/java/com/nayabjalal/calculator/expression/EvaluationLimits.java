@@ -0,0 +1,72 @@
+package com.nayabjalal.calculator.expression;
+
+import java.util.Objects;
+
+// Bounds on the work one evaluation may do, so that a single pathological input cannot pin a
+// thread or grow the evaluation stacks without end. The checks are counter comparisons made as
+// the input is read. The deadline runs from when the evaluation begins; after that the clock is
+// only read every DEADLINE_CHECK_INTERVAL tokens, and never when there is no deadline.
+public final class EvaluationLimits {
+    public static final EvaluationLimits NONE =
+            new EvaluationLimits(Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, 0);
+
+    // Power of two; token counts are masked with it minus one
+    public static final int DEADLINE_CHECK_INTERVAL = 1024;
+
+    private final int maxLength;
+    private final int maxDepth;
+    private final int maxTokens;
+    private final int maxOperations;
+    private final long timeoutNanos; // 0 for no deadline
+
+    // maxOperations counts binary operators; timeoutMillis of 0 means no deadline
+    public EvaluationLimits(int maxLength, int maxDepth, int maxTokens, int maxOperations, long timeoutMillis) {
+        this.maxLength = maxLength;
+        this.maxDepth = maxDepth;
+        this.maxTokens = maxTokens;
+        this.maxOperations = maxOperations;
+        this.timeoutNanos = timeoutMillis * 1_000_000;
+    }
+
+    public int getMaxLength() { return maxLength; }
+    public int getMaxDepth() { return maxDepth; }
+    public int getMaxTokens() { return maxTokens; }
+    public int getMaxOperations() { return maxOperations; }
+    public long getTimeoutMillis() { return timeoutNanos / 1_000_000; }
+
+    // Taken when an evaluation begins and passed to isPastDeadline
+    public long startClock() {
+        return timeoutNanos == 0 ? 0 : System.nanoTime();
+    }
+
+    // Called with the token count after each token; true once the deadline has passed
+    public boolean isPastDeadline(int tokens, long startNanos) {
+        return (tokens & (DEADLINE_CHECK_INTERVAL - 1)) == 0 && isExpired(startNanos);
+    }
+
+    // For slow paths that read the clock on every step
+    public boolean isExpired(long startNanos) {
+        return timeoutNanos != 0 && System.nanoTime() - startNanos > timeoutNanos;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof EvaluationLimits)) {
+            return false;
+        }
+        EvaluationLimits limits = (EvaluationLimits) other;
+        return maxLength == limits.maxLength && maxDepth == limits.maxDepth && maxTokens == limits.maxTokens
+                && maxOperations == limits.maxOperations && timeoutNanos == limits.timeoutNanos;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(maxLength, maxDepth, maxTokens, maxOperations, timeoutNanos);
+    }
+
+    @Override
+    public String toString() {
+        return "EvaluationLimits[length=" + maxLength + ", depth=" + maxDepth + ", tokens=" + maxTokens
+                + ", operations=" + maxOperations + ", timeout=" + getTimeoutMillis() + " ms]";
+    }
+}
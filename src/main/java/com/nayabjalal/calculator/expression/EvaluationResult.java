@@ -0,0 +1,62 @@
+package com.nayabjalal.calculator.expression;
+
+import com.nayabjalal.calculator.exception.CalculatorException;
+
+// Value-or-error outcome of evaluating one expression. Failures carry the error type and,
+// when known, the position in the input; the message is formatted on first use.
+public final class EvaluationResult {
+    private final double value;
+    private final CalculatorException.ErrorType errorType;
+    private final EvaluationError error;
+    private final int position;
+    private final char symbol;
+    private String message;
+
+    private EvaluationResult(double value, CalculatorException.ErrorType errorType, EvaluationError error,
+                             int position, char symbol, String message) {
+        this.value = value;
+        this.errorType = errorType;
+        this.error = error;
+        this.position = position;
+        this.symbol = symbol;
+        this.message = message;
+    }
+
+    public static EvaluationResult success(double value) {
+        return new EvaluationResult(value, null, null, -1, '\0', null);
+    }
+
+    public static EvaluationResult failure(CalculatorException.ErrorType errorType, String message) {
+        return new EvaluationResult(Double.NaN, errorType, null, -1, '\0', message);
+    }
+
+    public static EvaluationResult failure(EvaluationError error, int position, char symbol) {
+        return new EvaluationResult(Double.NaN, error.getErrorType(), error, position, symbol, null);
+    }
+
+    public boolean isSuccess() { return errorType == null; }
+    public double getValue() { return value; }
+    public CalculatorException.ErrorType getErrorType() { return errorType; }
+
+    // null when the failure did not come from the evaluator itself
+    public EvaluationError getError() { return error; }
+
+    // Index into the input where the error was detected, or -1
+    public int getPosition() { return position; }
+
+    public String getMessage() {
+        if (message == null && error != null) {
+            message = error.message(position, symbol);
+        }
+        return message;
+    }
+
+    public CalculatorException toException() {
+        return new CalculatorException(errorType, getMessage());
+    }
+
+    @Override
+    public String toString() {
+        return isSuccess() ? String.valueOf(value) : errorType + ": " + getMessage();
+    }
+}
@@ -0,0 +1,121 @@
+package com.nayabjalal.calculator.expression;
+
+import java.util.Arrays;
+
+// Growable primitive operand/operator stacks, reused by every evaluation on the owning thread
+public final class EvaluationStack {
+    private static final int INITIAL_CAPACITY = 32;
+    private static final ThreadLocal<EvaluationStack> CURRENT = ThreadLocal.withInitial(EvaluationStack::new);
+
+    private double[] operands = new double[INITIAL_CAPACITY];
+    private char[] operators = new char[INITIAL_CAPACITY];
+    private int[] operatorPositions = new int[INITIAL_CAPACITY];
+    private double[] errors = new double[INITIAL_CAPACITY];
+    private double[][] registers = new double[0][];
+    private int operandCount;
+    private int operatorCount;
+
+    // Set by fail(); only meaningful after an evaluation reported failure
+    private EvaluationError error;
+    private int errorPosition;
+    private char errorSymbol;
+
+    private EvaluationStack() {}
+
+    public static EvaluationStack forCurrentThread() {
+        EvaluationStack stack = CURRENT.get();
+        stack.operandCount = 0;
+        stack.operatorCount = 0;
+        return stack;
+    }
+
+    public void pushOperand(double value) {
+        if (operandCount == operands.length) {
+            operands = Arrays.copyOf(operands, operandCount * 2);
+        }
+        operands[operandCount++] = value;
+    }
+
+    public double popOperand() {
+        return operands[--operandCount];
+    }
+
+    public int operandCount() {
+        return operandCount;
+    }
+
+    public void pushOperator(char op) {
+        pushOperator(op, -1);
+    }
+
+    public void pushOperator(char op, int position) {
+        if (operatorCount == operators.length) {
+            operators = Arrays.copyOf(operators, operatorCount * 2);
+            operatorPositions = Arrays.copyOf(operatorPositions, operatorCount * 2);
+        }
+        operatorPositions[operatorCount] = position;
+        operators[operatorCount++] = op;
+    }
+
+    public char popOperator() {
+        return operators[--operatorCount];
+    }
+
+    public char peekOperator() {
+        return operators[operatorCount - 1];
+    }
+
+    // Input position of the top operator, or -1 if it was pushed without one
+    public int peekOperatorPosition() {
+        return operatorPositions[operatorCount - 1];
+    }
+
+    public boolean hasOperators() {
+        return operatorCount > 0;
+    }
+
+    // Records why the current evaluation failed; always returns false so callers can
+    // "return stack.fail(...)"
+    public boolean fail(EvaluationError error, int position, char symbol) {
+        this.error = error;
+        this.errorPosition = position;
+        this.errorSymbol = symbol;
+        return false;
+    }
+
+    public EvaluationError getError() {
+        return error;
+    }
+
+    public int getErrorPosition() {
+        return errorPosition;
+    }
+
+    public char getErrorSymbol() {
+        return errorSymbol;
+    }
+
+    // Raw operand array for interpreters that manage the top index themselves
+    double[] operandArray(int capacity) {
+        if (operands.length < capacity) {
+            operands = new double[Math.max(capacity, operands.length * 2)];
+        }
+        return operands;
+    }
+
+    // Error bounds alongside operandArray, for AdaptiveEvaluator
+    double[] errorArray(int capacity) {
+        if (errors.length < capacity) {
+            errors = new double[Math.max(capacity, errors.length * 2)];
+        }
+        return errors;
+    }
+
+    // depth x width scratch block for the columnar interpreter
+    double[][] registerBlock(int depth, int width) {
+        if (registers.length < depth || (depth > 0 && registers[0].length < width)) {
+            registers = new double[Math.max(depth, registers.length)][width];
+        }
+        return registers;
+    }
+}
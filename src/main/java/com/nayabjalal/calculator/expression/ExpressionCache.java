@@ -0,0 +1,154 @@
+package com.nayabjalal.calculator.expression;
+
+import com.nayabjalal.calculator.config.AppConfig;
+import com.nayabjalal.calculator.exception.CalculatorException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// One entry per whitespace-normalized expression. Spellings that normalize to something else
+// are remembered in a separate, equally bounded alias map from the raw text to its key, so that
+// repeated lookups of the same string skip normalization too; aliases do not count towards the
+// size or capacity. A program is only reused under the limits it was compiled with; after a
+// reload changes them, the next lookup compiles it again so the new limits are checked.
+public class ExpressionCache {
+    private final int capacity;
+    private final Map<String, Entry> entries;
+    private final Map<String, String> aliases; // guarded by entries' lock
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public ExpressionCache(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Cache capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > ExpressionCache.this.capacity) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+        this.aliases = new LinkedHashMap<String, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > ExpressionCache.this.capacity;
+            }
+        };
+    }
+
+    public CompiledExpression get(String expression) throws CalculatorException {
+        EvaluationLimits limits = AppConfig.getInstance().snapshot().getEvaluationLimits();
+        String key;
+        Entry entry;
+        synchronized (entries) {
+            key = aliases.get(expression);
+            entry = entries.get(key != null ? key : expression);
+        }
+        boolean aliased = key != null;
+        if (entry == null && !aliased) {
+            // Raw text missed; an equivalent spelling may already be cached under the normalized key
+            key = normalize(expression);
+            if (key != expression) {
+                entry = lookup(key);
+            }
+        }
+        if (entry != null && entry.limits.equals(limits)) {
+            hits.incrementAndGet();
+            if (key != null && key != expression && !aliased) {
+                alias(expression, key);
+            }
+            return entry.program;
+        }
+        if (key == null) {
+            key = expression;
+        }
+
+        // Compile outside the lock; a concurrent miss on the same key just compiles twice
+        misses.incrementAndGet();
+        CompiledExpression compiled = ExpressionCompiler.compile(key);
+        store(key, new Entry(compiled, limits));
+        if (key != expression && !aliased) {
+            alias(expression, key);
+        }
+        return compiled;
+    }
+
+    private Entry lookup(String key) {
+        synchronized (entries) {
+            return entries.get(key);
+        }
+    }
+
+    private void store(String key, Entry entry) {
+        synchronized (entries) {
+            entries.put(key, entry);
+        }
+    }
+
+    private void alias(String expression, String key) {
+        synchronized (entries) {
+            aliases.put(expression, key);
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+            aliases.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public int getCapacity() { return capacity; }
+    public long getHitCount() { return hits.get(); }
+    public long getMissCount() { return misses.get(); }
+    public long getEvictionCount() { return evictions.get(); }
+
+    @Override
+    public String toString() {
+        return "ExpressionCache[size=" + size() + ", capacity=" + capacity + ", hits=" + hits.get()
+                + ", misses=" + misses.get() + ", evictions=" + evictions.get() + "]";
+    }
+
+    private static final class Entry {
+        final CompiledExpression program;
+        final EvaluationLimits limits;
+
+        Entry(CompiledExpression program, EvaluationLimits limits) {
+            this.program = program;
+            this.limits = limits;
+        }
+    }
+
+    // Same effect as replaceAll("\\s+", ""), but returns the input itself when there is nothing to strip
+    static String normalize(String expression) {
+        int length = expression.length();
+        int first = 0;
+        while (first < length && !DecimalParser.isWhitespace(expression.charAt(first))) {
+            first++;
+        }
+        if (first == length) {
+            return expression;
+        }
+
+        StringBuilder normalized = new StringBuilder(length).append(expression, 0, first);
+        for (int i = first + 1; i < length; i++) {
+            char c = expression.charAt(i);
+            if (!DecimalParser.isWhitespace(c)) {
+                normalized.append(c);
+            }
+        }
+        return normalized.toString();
+    }
+}
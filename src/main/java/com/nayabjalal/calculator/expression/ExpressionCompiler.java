@@ -0,0 +1,227 @@
+package com.nayabjalal.calculator.expression;
+
+import com.nayabjalal.calculator.config.AppConfig;
+import com.nayabjalal.calculator.exception.CalculatorException;
+import com.nayabjalal.calculator.metrics.Metrics;
+import com.nayabjalal.calculator.util.ExpressionEvaluator;
+import java.util.Arrays;
+import java.util.List;
+
+public class ExpressionCompiler {
+
+    private static final String[] NO_VARIABLES = new String[0];
+
+    public enum Backend {
+        INTERPRETER,
+        BYTECODE
+    }
+
+    private ExpressionCompiler() {
+        throw new AssertionError("Constructor is not allowed");
+    }
+
+    public static CompiledExpression compile(String expression) throws CalculatorException {
+        return compile(expression, NO_VARIABLES);
+    }
+
+    public static CompiledExpression compile(String expression, String... variables) throws CalculatorException {
+        return compile(expression, defaultBackend(), variables);
+    }
+
+    // Programs are optimized before either backend sees them. The bytecode backend falls back
+    // to the interpreted program if class generation fails
+    public static CompiledExpression compile(String expression, Backend backend, String... variables)
+            throws CalculatorException {
+        CompiledExpression program = ExpressionOptimizer.optimize(timedParse(expression, variables));
+        if (backend == Backend.BYTECODE) {
+            Formula formula = BytecodeCompiler.compile(program);
+            if (formula != null) {
+                return program.withFormula(formula);
+            }
+        }
+        return program;
+    }
+
+    // Formulas over the same variables, evaluated together with shared subexpressions computed once
+    public static CompiledBatch compileBatch(List<String> expressions, String... variables) throws CalculatorException {
+        CompiledExpression[] programs = new CompiledExpression[expressions.size()];
+        for (int i = 0; i < programs.length; i++) {
+            try {
+                programs[i] = ExpressionOptimizer.optimize(timedParse(expressions.get(i), variables));
+            } catch (CalculatorException e) {
+                throw new CalculatorException(e.getErrorType(), "Formula " + i + ": " + e.getMessage());
+            }
+        }
+        return CompiledBatch.build(expressions.toArray(new String[0]), variables.clone(), programs);
+    }
+
+    public static Backend defaultBackend() {
+        return AppConfig.getInstance().snapshot().isBytecodeCompilation() ? Backend.BYTECODE : Backend.INTERPRETER;
+    }
+
+    private static CompiledExpression timedParse(String expression, String[] variables) throws CalculatorException {
+        long start = Metrics.start();
+        CompiledExpression program = parse(expression, variables);
+        Metrics.recordSince(Metrics.PARSE, start);
+        return program;
+    }
+
+    // Runs the shunting-yard pass once and records the postfix program instead of applying it.
+    // Identifiers must be one of the declared variables; their index is the argument position
+    // used by CompiledExpression.evaluate(double...). The configured EvaluationLimits bound the
+    // input, and with it the work of every evaluation of the program.
+    private static CompiledExpression parse(String expression, String[] variables) throws CalculatorException {
+        checkVariableNames(variables);
+
+        EvaluationLimits limits = AppConfig.getInstance().snapshot().getEvaluationLimits();
+        int length = expression.length();
+        if (length > limits.getMaxLength()) {
+            throw EvaluationError.INPUT_TOO_LONG.exception(limits.getMaxLength(), '\0');
+        }
+        char[] code = new char[length];
+        double[] constants = new double[length];
+        int[] slots = new int[length];
+        char[] operators = new char[length];
+        int codeSize = 0;
+        int constantCount = 0;
+        int slotCount = 0;
+        int operatorCount = 0;
+        int depth = 0;
+        int maxDepth = 0;
+        int tokens = 0;
+        int operations = 0;
+        int nesting = 0;
+        long clock = limits.startClock();
+
+        for (int i = 0; i < length; i++) {
+            char c = expression.charAt(i);
+
+            if (DecimalParser.isWhitespace(c)) {
+                continue;
+            }
+            if (++tokens > limits.getMaxTokens()) {
+                throw EvaluationError.TOO_MANY_TOKENS.exception(i, c);
+            }
+            if (limits.isPastDeadline(tokens, clock)) {
+                throw EvaluationError.DEADLINE_EXCEEDED.exception(i, c);
+            }
+            if (DecimalParser.isDigit(c) || c == '.') {
+                int end = DecimalParser.scanNumber(expression, i, length);
+                constants[constantCount++] = DecimalParser.parse(expression, i, end);
+                code[codeSize++] = CompiledExpression.PUSH_CONSTANT;
+                maxDepth = Math.max(maxDepth, ++depth);
+                i = end - 1;
+            }
+            else if (isIdentifierStart(c)) {
+                int end = i + 1;
+                while (end < length && isIdentifierPart(expression.charAt(end))) {
+                    end++;
+                }
+                slots[slotCount++] = resolveVariable(expression, i, end, variables);
+                code[codeSize++] = CompiledExpression.PUSH_VARIABLE;
+                maxDepth = Math.max(maxDepth, ++depth);
+                i = end - 1;
+            }
+            else if (c == '(') {
+                if (++nesting > limits.getMaxDepth()) {
+                    throw EvaluationError.NESTING_TOO_DEEP.exception(i, c);
+                }
+                operators[operatorCount++] = c;
+            }
+            else if (c == ')') {
+                while (operatorCount > 0 && operators[operatorCount - 1] != '(') {
+                    depth = emitOperator(operators[--operatorCount], depth, i);
+                    code[codeSize++] = operators[operatorCount];
+                }
+                if (operatorCount == 0) {
+                    throw parseError("Unmatched ')' at position " + i);
+                }
+                operatorCount--; // Remove '('
+                nesting--;
+            }
+            else if (ExpressionEvaluator.isOperator(c)) {
+                if (++operations > limits.getMaxOperations()) {
+                    throw EvaluationError.OPERATION_LIMIT_EXCEEDED.exception(i, c);
+                }
+                while (operatorCount > 0 && ExpressionEvaluator.hasPrecedence(c, operators[operatorCount - 1])) {
+                    depth = emitOperator(operators[--operatorCount], depth, i);
+                    code[codeSize++] = operators[operatorCount];
+                }
+                operators[operatorCount++] = c;
+            }
+            else {
+                throw parseError("Unexpected character '" + c + "' at position " + i);
+            }
+        }
+
+        while (operatorCount > 0) {
+            char op = operators[--operatorCount];
+            if (op == '(') {
+                throw parseError("Unmatched '('");
+            }
+            depth = emitOperator(op, depth, length);
+            code[codeSize++] = op;
+        }
+
+        if (depth != 1) {
+            throw parseError("Malformed expression: " + expression);
+        }
+
+        return new CompiledExpression(expression, variables.clone(), Arrays.copyOf(code, codeSize),
+                Arrays.copyOf(constants, constantCount), Arrays.copyOf(slots, slotCount), maxDepth);
+    }
+
+    static boolean isIdentifierStart(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_';
+    }
+
+    static boolean isIdentifierPart(char c) {
+        return isIdentifierStart(c) || DecimalParser.isDigit(c);
+    }
+
+    private static int resolveVariable(String expression, int start, int end, String[] variables)
+            throws CalculatorException {
+        for (int slot = 0; slot < variables.length; slot++) {
+            String name = variables[slot];
+            if (name.length() == end - start && expression.regionMatches(start, name, 0, name.length())) {
+                return slot;
+            }
+        }
+        throw parseError("Unknown variable '" + expression.substring(start, end) + "' at position " + start);
+    }
+
+    private static void checkVariableNames(String[] variables) throws CalculatorException {
+        for (int i = 0; i < variables.length; i++) {
+            String name = variables[i];
+            boolean valid = name != null && !name.isEmpty() && isIdentifierStart(name.charAt(0));
+            for (int j = 1; valid && j < name.length(); j++) {
+                valid = isIdentifierPart(name.charAt(j));
+            }
+            if (!valid) {
+                throw new CalculatorException(
+                        CalculatorException.ErrorType.INVALID_INPUT,
+                        "Invalid variable name: " + name
+                );
+            }
+            for (int j = 0; j < i; j++) {
+                if (variables[j].equals(name)) {
+                    throw new CalculatorException(
+                            CalculatorException.ErrorType.INVALID_INPUT,
+                            "Duplicate variable name: " + name
+                    );
+                }
+            }
+        }
+    }
+
+    private static int emitOperator(char op, int depth, int position) throws CalculatorException {
+        if (depth < 2) {
+            throw parseError("Missing operand for '" + op + "' near position " + position);
+        }
+        return depth - 1;
+    }
+
+    private static CalculatorException parseError(String message) {
+        return new CalculatorException(CalculatorException.ErrorType.EXPRESSION_PARSE_ERROR, message);
+    }
+}
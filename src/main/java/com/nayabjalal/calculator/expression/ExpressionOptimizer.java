@@ -0,0 +1,237 @@
+package com.nayabjalal.calculator.expression;
+
+import com.nayabjalal.calculator.exception.CalculatorException;
+import com.nayabjalal.calculator.util.ExpressionEvaluator;
+import java.util.Arrays;
+
+// Rewrites a parsed postfix program so that work which does not depend on the variables is
+// done once, at compile time. Every rewrite gives bit-identical results to applying the
+// original operators with ExpressionEvaluator.applyOperation, including signed zeros, NaN and
+// division-by-zero errors:
+//   constant operands        folded, except division by zero, which must still throw
+//   x^2                      x*x        (pow is exact for an exponent of 2)
+//   x^1                      x
+//   x^0                      1          unless x can throw
+//   x*1, 1*x, x/1            x
+//   x-0, x+(-0), (-0)+x      x          (x+0 is not x when x is -0)
+//   x/c, c a power of two    x*(1/c)    (both sides are the same exact scaling)
+// Higher integer powers are left to Math.pow: a chain of multiplications rounds more than once.
+final class ExpressionOptimizer {
+    private static final byte CONSTANT = 0;
+    private static final byte VARIABLE = 1;
+    private static final byte OPERATION = 2;
+    private static final byte SQUARE = 3;
+    private static final byte ALIAS = 4; // replaced by the node in target
+    private static final byte DEAD = 5;
+
+    private static final long ZERO_BITS = Double.doubleToRawLongBits(0.0);
+    private static final long NEGATIVE_ZERO_BITS = Double.doubleToRawLongBits(-0.0);
+    private static final long ONE_BITS = Double.doubleToRawLongBits(1.0);
+    private static final long TWO_BITS = Double.doubleToRawLongBits(2.0);
+    private static final long SIGNIFICAND_MASK = 0x000FFFFFFFFFFFFFL;
+
+    // One node per instruction of the parsed program, in program order
+    private final byte[] kinds;
+    private final char[] operators;
+    private final double[] values;
+    private final int[] slots;
+    private final int[] left;
+    private final int[] right;
+    private final int[] target;
+    private final boolean[] mayThrow;
+
+    private ExpressionOptimizer(int size) {
+        kinds = new byte[size];
+        operators = new char[size];
+        values = new double[size];
+        slots = new int[size];
+        left = new int[size];
+        right = new int[size];
+        target = new int[size];
+        mayThrow = new boolean[size];
+    }
+
+    // Returns program itself when nothing can be rewritten
+    static CompiledExpression optimize(CompiledExpression program) {
+        return new ExpressionOptimizer(program.getCode().length).run(program);
+    }
+
+    private CompiledExpression run(CompiledExpression program) {
+        char[] code = program.getCode();
+        int[] stack = new int[code.length];
+        int top = 0;
+        int constant = 0;
+        int slot = 0;
+        boolean changed = false;
+
+        for (int i = 0; i < code.length; i++) {
+            char op = code[i];
+            if (op == CompiledExpression.PUSH_CONSTANT) {
+                kinds[i] = CONSTANT;
+                values[i] = program.getConstant(constant++);
+            } else if (op == CompiledExpression.PUSH_VARIABLE) {
+                kinds[i] = VARIABLE;
+                slots[i] = program.getSlot(slot++);
+            } else {
+                kinds[i] = OPERATION;
+                operators[i] = op;
+                right[i] = resolve(stack[--top]);
+                left[i] = resolve(stack[--top]);
+                changed |= simplify(i);
+                mayThrow[i] = kinds[i] == OPERATION || kinds[i] == SQUARE
+                        ? mayThrow[left[i]] || mayThrow[right[i]] || (operators[i] == '/' && !isNonZeroConstant(right[i]))
+                        : kinds[i] == ALIAS && mayThrow[resolve(i)];
+            }
+            stack[top++] = i;
+        }
+        return changed ? emit(program) : program;
+    }
+
+    private boolean simplify(int node) {
+        int a = left[node];
+        int b = right[node];
+        char op = operators[node];
+
+        if (kinds[a] == CONSTANT && kinds[b] == CONSTANT && (op != '/' || values[b] != 0)) {
+            try {
+                values[node] = ExpressionEvaluator.applyOperation(op, values[b], values[a]);
+            } catch (CalculatorException e) {
+                return false;
+            }
+            kinds[node] = CONSTANT;
+            kinds[a] = DEAD;
+            kinds[b] = DEAD;
+            return true;
+        }
+
+        switch (op) {
+            case '^':
+                if (isConstant(b, TWO_BITS)) {
+                    kinds[node] = SQUARE;
+                    kinds[b] = DEAD;
+                    return true;
+                }
+                if (isConstant(b, ONE_BITS)) {
+                    return replace(node, a, b);
+                }
+                if (kinds[b] == CONSTANT && values[b] == 0 && !mayThrow[a]) {
+                    kill(a);
+                    kinds[b] = DEAD;
+                    kinds[node] = CONSTANT;
+                    values[node] = 1.0;
+                    return true;
+                }
+                return false;
+            case '*':
+                if (isConstant(b, ONE_BITS)) {
+                    return replace(node, a, b);
+                }
+                return isConstant(a, ONE_BITS) && replace(node, b, a);
+            case '/':
+                if (isConstant(b, ONE_BITS)) {
+                    return replace(node, a, b);
+                }
+                if (kinds[b] == CONSTANT && isPowerOfTwo(values[b])) {
+                    values[b] = 1 / values[b];
+                    operators[node] = '*';
+                    return true;
+                }
+                return false;
+            case '-':
+                return isConstant(b, ZERO_BITS) && replace(node, a, b);
+            case '+':
+                if (isConstant(b, NEGATIVE_ZERO_BITS)) {
+                    return replace(node, a, b);
+                }
+                return isConstant(a, NEGATIVE_ZERO_BITS) && replace(node, b, a);
+            default:
+                return false;
+        }
+    }
+
+    // node now stands for kept; the constant dropped is no longer pushed
+    private boolean replace(int node, int kept, int dropped) {
+        kinds[node] = ALIAS;
+        target[node] = kept;
+        kinds[dropped] = DEAD;
+        return true;
+    }
+
+    // Marks a whole subtree dead, iteratively since operands nest as deep as the input is long
+    private void kill(int root) {
+        int[] pending = new int[kinds.length];
+        int count = 0;
+        pending[count++] = root;
+        while (count > 0) {
+            int node = pending[--count];
+            if (kinds[node] == OPERATION || kinds[node] == SQUARE) {
+                pending[count++] = left[node];
+                if (kinds[node] == OPERATION) {
+                    pending[count++] = right[node];
+                }
+            }
+            kinds[node] = DEAD;
+        }
+    }
+
+    private int resolve(int node) {
+        while (kinds[node] == ALIAS) {
+            node = target[node];
+        }
+        return node;
+    }
+
+    private boolean isConstant(int node, long bits) {
+        return kinds[node] == CONSTANT && Double.doubleToRawLongBits(values[node]) == bits;
+    }
+
+    private boolean isNonZeroConstant(int node) {
+        return kinds[node] == CONSTANT && values[node] != 0;
+    }
+
+    // Normal powers of two have an exact reciprocal, at worst the subnormal 2^-1023
+    private static boolean isPowerOfTwo(double value) {
+        return Math.getExponent(value) >= Double.MIN_EXPONENT && Math.getExponent(value) <= Double.MAX_EXPONENT
+                && (Double.doubleToRawLongBits(value) & SIGNIFICAND_MASK) == 0;
+    }
+
+    // Live nodes in program order are again a valid postfix program
+    private CompiledExpression emit(CompiledExpression program) {
+        char[] code = new char[kinds.length * 2];
+        double[] constants = new double[kinds.length];
+        int[] variableSlots = new int[kinds.length];
+        int size = 0;
+        int constantCount = 0;
+        int slotCount = 0;
+        int depth = 0;
+        int maxDepth = 0;
+
+        for (int i = 0; i < kinds.length; i++) {
+            switch (kinds[i]) {
+                case CONSTANT:
+                    code[size++] = CompiledExpression.PUSH_CONSTANT;
+                    constants[constantCount++] = values[i];
+                    maxDepth = Math.max(maxDepth, ++depth);
+                    break;
+                case VARIABLE:
+                    code[size++] = CompiledExpression.PUSH_VARIABLE;
+                    variableSlots[slotCount++] = slots[i];
+                    maxDepth = Math.max(maxDepth, ++depth);
+                    break;
+                case OPERATION:
+                    code[size++] = operators[i];
+                    depth--;
+                    break;
+                case SQUARE:
+                    code[size++] = CompiledExpression.DUPLICATE;
+                    code[size++] = '*';
+                    maxDepth = Math.max(maxDepth, depth + 1);
+                    break;
+                default:
+                    break;
+            }
+        }
+        return program.withProgram(Arrays.copyOf(code, size), Arrays.copyOf(constants, constantCount),
+                Arrays.copyOf(variableSlots, slotCount), maxDepth);
+    }
+}
@@ -0,0 +1,8 @@
+package com.nayabjalal.calculator.expression;
+
+import com.nayabjalal.calculator.exception.CalculatorException;
+
+// Implemented by the classes BytecodeCompiler generates; values holds one entry per declared variable
+public interface Formula {
+    double evaluate(double[] values) throws CalculatorException;
+}
@@ -0,0 +1,501 @@
+package com.nayabjalal.calculator.expression;
+
+import com.nayabjalal.calculator.exception.CalculatorException;
+import com.nayabjalal.calculator.util.ExpressionEvaluator;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+// Expression text kept together with its tokens and parse tree, so that an edit costs work in
+// proportion to what it touched. An edit is re-lexed from the token before it until the new
+// tokens line up with the old ones again. When the tokens keep their shape, only changed
+// numbers and the values on their path to the root are recomputed; otherwise, if the edit lies
+// inside a pair of parentheses it left alone, only what is between them is parsed again, and
+// failing that the whole expression is parsed again from the cached tokens. Results are the
+// ones ExpressionEvaluator.tryEvaluate gives, or the adaptive evaluator with adaptive precision.
+// Text that does not parse, or that may break one of the EvaluationLimits, is handed to
+// tryEvaluate, which reports the error. One thread at a time.
+public final class IncrementalExpression {
+    private static final int NUMBER = 0;
+    private static final int OPERATOR = 1;
+    private static final int OPEN = 2;
+    private static final int CLOSE = 3;
+    private static final int INVALID = 4;
+    // Integers up to here convert to double exactly
+    private static final double MAX_EXACT_INTEGER = 0x1p53;
+
+    private final boolean adaptive;
+    private final int digits;
+    private final EvaluationLimits limits;
+    private final StringBuilder text = new StringBuilder();
+    private final List<Token> tokens = new ArrayList<>();
+    private final double[] error = new double[1];
+    private Node root; // null when the tokens do not form an expression
+    // Upper bounds for the nesting depth and operation count the limits apply to
+    private int openTokens;
+    private int operatorTokens;
+    private int parsedTokens;
+
+    // Parser stacks, reused between edits
+    private Node[] operands = new Node[16];
+    private Token[] operators = new Token[16];
+    private int[] heights = new int[16];
+    private int[] lows = new int[16];
+
+    public IncrementalExpression() {
+        this(false, 0, EvaluationLimits.NONE);
+    }
+
+    // With adaptive set, results are what AdaptiveEvaluator gives at the given display digits
+    public IncrementalExpression(boolean adaptive, int digits, EvaluationLimits limits) {
+        this.adaptive = adaptive;
+        this.digits = AdaptiveEvaluator.clampDigits(digits);
+        this.limits = limits;
+    }
+
+    public String getText() {
+        return text.toString();
+    }
+
+    public int length() {
+        return text.length();
+    }
+
+    public void setText(CharSequence replacement) {
+        replace(0, text.length(), replacement);
+    }
+
+    public void insert(int offset, CharSequence inserted) {
+        replace(offset, 0, inserted);
+    }
+
+    public void remove(int offset, int length) {
+        replace(offset, length, "");
+    }
+
+    // Replaces length chars at offset, as a document edit would
+    public void replace(int offset, int length, CharSequence replacement) {
+        Objects.checkFromIndexSize(offset, length, text.length());
+        text.replace(offset, offset + length, replacement.toString());
+        int delta = replacement.length() - length;
+        int editEnd = offset + replacement.length();
+
+        // A number before the edit can absorb what follows it; any other token is one char
+        int first = lastTokenBefore(offset);
+        int position;
+        if (first >= 0 && tokens.get(first).kind == NUMBER) {
+            position = tokens.get(first).start;
+        } else {
+            position = first >= 0 ? tokens.get(first).end : 0;
+            first++;
+        }
+
+        // Old tokens [first, last) give way to fresh ones. Lexing only depends on the text from
+        // a token on, so once a fresh token past the edit equals an old one, the rest do too.
+        List<Token> fresh = new ArrayList<>();
+        int last = first;
+        while (true) {
+            Token token = lex(position);
+            if (token == null) {
+                last = tokens.size();
+                break;
+            }
+            if (token.start >= editEnd) {
+                int oldStart = token.start - delta;
+                while (last < tokens.size() && tokens.get(last).start < oldStart) {
+                    last++;
+                }
+                if (last < tokens.size() && tokens.get(last).matches(token, delta)) {
+                    break;
+                }
+            }
+            fresh.add(token);
+            position = token.end;
+        }
+
+        List<Token> replaced = tokens.subList(first, last);
+        boolean sameShape = root != null && sameShape(replaced, fresh);
+        Node group = root != null && !sameShape ? enclosingGroup(first, last) : null;
+        List<Node> changed = sameShape ? relink(replaced, fresh) : null;
+
+        count(replaced, -1);
+        count(fresh, 1);
+        replaced.clear();
+        tokens.addAll(first, fresh);
+        int shifted = first + fresh.size();
+        for (int i = first; i < tokens.size(); i++) {
+            Token token = tokens.get(i);
+            token.index = i;
+            if (i >= shifted) {
+                token.start += delta;
+                token.end += delta;
+            }
+        }
+
+        parsedTokens = 0;
+        if (sameShape) {
+            for (Node leaf : changed) {
+                recompute(leaf);
+            }
+        } else if (group == null || !reparse(group)) {
+            root = parse(0, tokens.size());
+            if (root != null) {
+                root.parent = null;
+            }
+        }
+    }
+
+    public EvaluationResult evaluate() {
+        if (root == null || text.length() > limits.getMaxLength() || tokens.size() > limits.getMaxTokens()
+                || openTokens > limits.getMaxDepth() || operatorTokens > limits.getMaxOperations()) {
+            return ExpressionEvaluator.tryEvaluate(text, limits);
+        }
+        Node failure = root.failure;
+        if (failure != null) {
+            return EvaluationResult.failure(EvaluationError.DIVISION_BY_ZERO, failure.token.start, failure.op);
+        }
+        if (!adaptive) {
+            return EvaluationResult.success(root.value);
+        }
+        double shown = AdaptiveEvaluator.display(root.value, root.error, digits);
+        if (!Double.isNaN(shown) || Double.isNaN(root.value)) {
+            return EvaluationResult.success(shown);
+        }
+        // Only the BigDecimal pass over the whole expression can settle the rounding
+        try {
+            return EvaluationResult.success(AdaptiveEvaluator.evaluate(ExpressionCompiler.compile(getText()), digits, limits));
+        } catch (CalculatorException e) {
+            return EvaluationResult.failure(e.getErrorType(), e.getMessage());
+        }
+    }
+
+    // Tokens run through the parser by the last edit
+    int getParsedTokenCount() {
+        return parsedTokens;
+    }
+
+    int getTokenCount() {
+        return tokens.size();
+    }
+
+    private void count(List<Token> changed, int sign) {
+        for (Token token : changed) {
+            if (token.kind == OPEN) {
+                openTokens += sign;
+            } else if (token.kind == OPERATOR) {
+                operatorTokens += sign;
+            }
+        }
+    }
+
+    private int lastTokenBefore(int offset) {
+        int low = 0;
+        int high = tokens.size() - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (tokens.get(middle).start < offset) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return high;
+    }
+
+    // The token at or after position, as ExpressionEvaluator would read it, or null at the end
+    private Token lex(int position) {
+        int length = text.length();
+        while (position < length && DecimalParser.isWhitespace(text.charAt(position))) {
+            position++;
+        }
+        if (position == length) {
+            return null;
+        }
+        char c = text.charAt(position);
+        if (DecimalParser.isDigit(c) || c == '.') {
+            int end = DecimalParser.scanNumber(text, position, length);
+            Token token = new Token(NUMBER, c, position, end);
+            token.value = DecimalParser.parseOrNaN(text, position, end);
+            if (adaptive) {
+                token.error = literalError(token);
+            }
+            return token;
+        }
+        int kind = c == '(' ? OPEN : c == ')' ? CLOSE : ExpressionEvaluator.isOperator(c) ? OPERATOR : INVALID;
+        return new Token(kind, c, position, position + 1);
+    }
+
+    private double literalError(Token token) {
+        double value = token.value;
+        if (Double.isNaN(value)) {
+            return 0;
+        }
+        boolean point = false;
+        StringBuilder literal = new StringBuilder(token.end - token.start);
+        for (int i = token.start; i < token.end; i++) {
+            char c = text.charAt(i);
+            point |= c == '.';
+            if (!DecimalParser.isWhitespace(c)) {
+                literal.append(c);
+            }
+        }
+        if (!point && value <= MAX_EXACT_INTEGER) {
+            return 0;
+        }
+        return AdaptiveEvaluator.conversionError(new BigDecimal(literal.toString()), value);
+    }
+
+    // Same kinds and operators in the same order, and every number valid: the parser would
+    // build the same tree
+    private static boolean sameShape(List<Token> replaced, List<Token> fresh) {
+        if (replaced.size() != fresh.size()) {
+            return false;
+        }
+        for (int i = 0; i < fresh.size(); i++) {
+            Token before = replaced.get(i);
+            Token after = fresh.get(i);
+            if (before.kind != after.kind || (after.kind == NUMBER ? Double.isNaN(after.value) : before.symbol != after.symbol)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Moves the tree's references to the fresh tokens; returns the leaves whose number changed
+    private static List<Node> relink(List<Token> replaced, List<Token> fresh) {
+        List<Node> changed = new ArrayList<>();
+        for (int i = 0; i < fresh.size(); i++) {
+            Token before = replaced.get(i);
+            Token after = fresh.get(i);
+            Node node = before.node;
+            after.node = node;
+            if (node == null) {
+                continue;
+            }
+            if (after.kind == CLOSE) {
+                node.close = after;
+            } else {
+                node.token = after;
+            }
+            if (after.kind == NUMBER && (Double.doubleToRawLongBits(before.value) != Double.doubleToRawLongBits(after.value)
+                    || before.error != after.error)) {
+                changed.add(node);
+            }
+        }
+        return changed;
+    }
+
+    // Innermost group whose parentheses enclose old tokens [first, last) and survive the edit
+    private Node enclosingGroup(int first, int last) {
+        if (first == 0) {
+            return null;
+        }
+        for (Node node = tokens.get(first - 1).node; node != null; node = node.parent) {
+            if (node.op == '(' && node.token.index < first && node.close.index >= last) {
+                return node;
+            }
+        }
+        return null;
+    }
+
+    private boolean reparse(Node group) {
+        Node inner = parse(group.token.index + 1, group.close.index);
+        if (inner == null) {
+            return false;
+        }
+        group.left = inner;
+        inner.parent = group;
+        recompute(group);
+        return true;
+    }
+
+    private void recompute(Node node) {
+        for (; node != null; node = node.parent) {
+            compute(node);
+        }
+    }
+
+    // ExpressionEvaluator's shunting-yard over tokens [from, to), building nodes where it
+    // applies operators; null wherever it would fail for any reason but division by zero
+    private Node parse(int from, int to) {
+        parsedTokens += to - from;
+        int capacity = to - from + 1;
+        if (operands.length < capacity) {
+            operands = new Node[capacity];
+            operators = new Token[capacity];
+            heights = new int[capacity];
+            lows = new int[capacity];
+        }
+        int operandCount = 0;
+        int operatorCount = 0;
+        // Open parentheses on the operator stack, with the operand count when each was pushed
+        // and the lowest it has been since
+        int openCount = 0;
+
+        for (int i = from; i < to; i++) {
+            Token token = tokens.get(i);
+            token.node = null;
+            switch (token.kind) {
+                case NUMBER:
+                    if (Double.isNaN(token.value)) {
+                        return null;
+                    }
+                    Node leaf = new Node('\0', token);
+                    compute(leaf);
+                    token.node = leaf;
+                    operands[operandCount++] = leaf;
+                    break;
+                case OPEN:
+                    operators[operatorCount++] = token;
+                    heights[openCount] = operandCount;
+                    lows[openCount++] = operandCount;
+                    break;
+                case CLOSE:
+                    while (operatorCount > 0 && operators[operatorCount - 1].kind != OPEN) {
+                        operandCount = reduce(operators[--operatorCount], operandCount, openCount);
+                        if (operandCount < 0) {
+                            return null;
+                        }
+                    }
+                    if (operatorCount == 0) {
+                        return null;
+                    }
+                    Token open = operators[--operatorCount];
+                    openCount--;
+                    // Only a group that produced one operand from its own tokens can be
+                    // parsed again on its own
+                    if (operandCount == heights[openCount] + 1 && lows[openCount] >= heights[openCount]) {
+                        Node group = new Node('(', open);
+                        group.close = token;
+                        group.left = operands[operandCount - 1];
+                        group.left.parent = group;
+                        compute(group);
+                        open.node = group;
+                        token.node = group;
+                        operands[operandCount - 1] = group;
+                    }
+                    if (openCount > 0) {
+                        lows[openCount - 1] = Math.min(lows[openCount - 1], lows[openCount]);
+                    }
+                    break;
+                case OPERATOR:
+                    while (operatorCount > 0 && ExpressionEvaluator.hasPrecedence(token.symbol, operators[operatorCount - 1].symbol)) {
+                        operandCount = reduce(operators[--operatorCount], operandCount, openCount);
+                        if (operandCount < 0) {
+                            return null;
+                        }
+                    }
+                    operators[operatorCount++] = token;
+                    break;
+                default:
+                    return null;
+            }
+        }
+
+        while (operatorCount > 0) {
+            Token operator = operators[--operatorCount];
+            if (operator.kind == OPEN) {
+                return null;
+            }
+            operandCount = reduce(operator, operandCount, openCount);
+            if (operandCount < 0) {
+                return null;
+            }
+        }
+        return operandCount == 1 ? operands[0] : null;
+    }
+
+    // Applies operator to the top two operands; returns the new operand count, or -1 if there
+    // are not two
+    private int reduce(Token operator, int operandCount, int openCount) {
+        if (operandCount < 2) {
+            return -1;
+        }
+        Node node = new Node(operator.symbol, operator);
+        node.left = operands[operandCount - 2];
+        node.right = operands[operandCount - 1];
+        node.left.parent = node;
+        node.right.parent = node;
+        compute(node);
+        operator.node = node;
+        operands[operandCount - 2] = node;
+        operandCount--;
+        if (openCount > 0 && operandCount - 1 < lows[openCount - 1]) {
+            lows[openCount - 1] = operandCount - 1;
+        }
+        return operandCount;
+    }
+
+    private void compute(Node node) {
+        if (node.op == '\0') {
+            node.value = node.token.value;
+            node.error = node.token.error;
+            return;
+        }
+        if (node.op == '(') {
+            node.value = node.left.value;
+            node.error = node.left.error;
+            node.failure = node.left.failure;
+            return;
+        }
+        Node left = node.left;
+        Node right = node.right;
+        // The first division by zero in evaluation order is the one reported
+        node.failure = left.failure != null ? left.failure : right.failure;
+        if (node.failure != null) {
+            return;
+        }
+        try {
+            if (adaptive) {
+                node.value = AdaptiveEvaluator.apply(node.op, left.value, left.error, right.value, right.error, error, 0);
+                node.error = error[0];
+            } else {
+                node.value = ExpressionEvaluator.applyOperation(node.op, right.value, left.value);
+            }
+        } catch (CalculatorException e) {
+            node.failure = node;
+        }
+    }
+
+    private static final class Token {
+        final int kind;
+        final char symbol;
+        int start;
+        int end;
+        int index;
+        double value;
+        double error;
+        // The leaf of a number, the operation of an operator, the group of a parenthesis
+        Node node;
+
+        Token(int kind, char symbol, int start, int end) {
+            this.kind = kind;
+            this.symbol = symbol;
+            this.start = start;
+            this.end = end;
+        }
+
+        boolean matches(Token shifted, int delta) {
+            return kind == shifted.kind && symbol == shifted.symbol
+                    && start + delta == shifted.start && end + delta == shifted.end;
+        }
+    }
+
+    private static final class Node {
+        final char op; // '\0' for a number, '(' for a parenthesized group
+        Token token;   // the number, the operator or the '('
+        Token close;
+        Node left;
+        Node right;
+        Node parent;
+        double value;
+        double error;
+        Node failure;  // the division by zero this value depends on, if any
+
+        Node(char op, Token token) {
+            this.op = op;
+            this.token = token;
+        }
+    }
+}
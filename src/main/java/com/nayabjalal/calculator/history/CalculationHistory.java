@@ -1,32 +1,58 @@
 package com.nayabjalal.calculator.history;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.core.type.TypeReference;
-import java.io.File;
 import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import com.nayabjalal.calculator.config.AppConfig;
+import com.nayabjalal.calculator.config.ConfigSnapshot;
+import com.nayabjalal.calculator.jfr.HistoryLoadEvent;
+import com.nayabjalal.calculator.metrics.Metrics;
 
 public class CalculationHistory {
     private static final String HISTORY_FILE = "src/main/resources/calculation-history.json";
-    private static CalculationHistory instance;
-    private List<CalculationEntry> history;
-    private final ObjectMapper mapper;
+    private static final String HISTORY_BASE = "src/main/resources/calculation-history";
+    private static final ObjectMapper MAPPER =
+            new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    // The ring and the index are only touched under the appender's apply lock
+    private final HistoryRingBuffer history;
+    private final HistoryIndex index = new HistoryIndex();
+    private final HistoryStore store;
+    private final HistoryJournal journal;
+    private final HistoryAppender appender;
+
+    private static final class Holder {
+        static final CalculationHistory INSTANCE = createDefault();
+    }
 
     public static class CalculationEntry {
+        private static final DateTimeFormatter TIME_OF_DAY = DateTimeFormatter.ofPattern("HH:mm:ss");
+
         private String expression;
         private String result;
-        private String timestamp;
+        private long timestamp; // epoch millis
+        private long sequence;
 
         public CalculationEntry() {}
 
         public CalculationEntry(String expression, String result) {
+            this(expression, result, System.currentTimeMillis(), 0);
+        }
+
+        CalculationEntry(String expression, String result, long timestamp, long sequence) {
             this.expression = expression;
             this.result = result;
-            this.timestamp = LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+            this.timestamp = timestamp;
+            this.sequence = sequence;
         }
 
         // Getters and setters
@@ -34,71 +60,213 @@ public class CalculationHistory {
         public void setExpression(String expression) { this.expression = expression; }
         public String getResult() { return result; }
         public void setResult(String result) { this.result = result; }
-        public String getTimestamp() { return timestamp; }
-        public void setTimestamp(String timestamp) { this.timestamp = timestamp; }
+        public long getSequence() { return sequence; }
+        public void setSequence(long sequence) { this.sequence = sequence; }
+
+        @JsonIgnore
+        public long getEpochMillis() { return timestamp; }
+
+        // Persisted as ISO local date-time, as before
+        public String getTimestamp() {
+            return toLocalDateTime().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+        }
+
+        public void setTimestamp(String timestamp) {
+            this.timestamp = LocalDateTime.parse(timestamp, DateTimeFormatter.ISO_LOCAL_DATE_TIME)
+                    .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        }
+
+        private LocalDateTime toLocalDateTime() {
+            return LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamp), ZoneId.systemDefault());
+        }
 
         @Override
         public String toString() {
-            return expression + " = " + result + " (" + timestamp.substring(11, 19) + ")";
+            return expression + " = " + result + " (" + toLocalDateTime().format(TIME_OF_DAY) + ")";
         }
     }
 
-    private CalculationHistory() {
-        this.mapper = new ObjectMapper();
-        loadHistory();
+    CalculationHistory(int capacity, HistoryStore store) {
+        this.history = new HistoryRingBuffer(capacity);
+        this.store = store;
+        this.journal = new HistoryJournal(store, this::getHistory,
+                AppConfig.getInstance().snapshot().getHistoryFlushIntervalMillis(),
+                AppConfig.getInstance().snapshot().getHistoryFlushBatchSize());
+        this.appender = new HistoryAppender(loadHistory(), this::apply);
+        journal.start();
+    }
+
+    private static CalculationHistory createDefault() {
+        CalculationHistory history = new CalculationHistory(
+                AppConfig.getInstance().snapshot().getMaxHistorySize(), openStore());
+        Runtime.getRuntime().addShutdownHook(new Thread(history.journal::shutdown, "history-shutdown"));
+        Metrics.gauge("history.size", history::size);
+        Metrics.gauge("history.stored", history::getStoredCount);
+        return history;
     }
 
     public static CalculationHistory getInstance() {
-        if (instance == null) {
-            instance = new CalculationHistory();
-        }
-        return instance;
+        return Holder.INSTANCE;
     }
 
-    private void loadHistory() {
+    // The binary store is the default; on first use it is seeded from an existing JSON history
+    private static HistoryStore openStore() {
+        ConfigSnapshot config = AppConfig.getInstance().snapshot();
+        JsonHistoryStore json = new JsonHistoryStore(Paths.get(HISTORY_FILE), MAPPER,
+                config.getHistoryCompactionThreshold());
+        if ("json".equalsIgnoreCase(config.getHistoryFormat())) {
+            return json;
+        }
         try {
-            File historyFile = new File(HISTORY_FILE);
-            if (historyFile.exists()) {
-                history = mapper.readValue(historyFile, new  TypeReference<List<CalculationEntry>>() {});
-            } else {
-                history = new ArrayList<>();
-            }
+            return MappedHistoryStore.open(Paths.get(HISTORY_BASE),
+                    () -> json.exists() ? json.load(Integer.MAX_VALUE) : Collections.emptyList());
         } catch (IOException e) {
-            history = new ArrayList<>();
+            System.err.println("Failed to open binary history, using JSON: " + e.getMessage());
+            return json;
         }
     }
 
-    public void addCalculation(String expression, String result) {
-        history.add(new CalculationEntry(expression, result));
+    // Returns the next sequence number
+    private long loadHistory() {
+        HistoryLoadEvent event = new HistoryLoadEvent();
+        event.begin();
+        List<CalculationEntry> loaded = store.load(history.capacity());
+        if (event.shouldCommit()) {
+            event.entries = loaded.size();
+            event.bytes = store.byteCount();
+            event.commit();
+        }
+        long lastSequence = loaded.size();
+        for (CalculationEntry entry : loaded) {
+            lastSequence = Math.max(lastSequence, entry.getSequence());
+        }
 
-        // Limit history size
-        Integer maxSize = AppConfig.getInstance().get("calculator.maxHistorySize");
-        if (maxSize != null && history.size() > maxSize) {
-            history.remove(0);
+        // Renumber contiguously so that sequence arithmetic works on the ring; files written
+        // before sequences existed load as all zeros
+        int skip = Math.max(0, loaded.size() - history.capacity());
+        long sequence = lastSequence - (loaded.size() - skip) + 1;
+        for (CalculationEntry entry : loaded.subList(skip, loaded.size())) {
+            record(entry.getExpression(), entry.getResult(), entry.getEpochMillis(), sequence++);
         }
+        return lastSequence + 1;
+    }
 
-        saveHistory();
+    // Safe to call from any thread; appends are striped and never wait for readers
+    public void addCalculation(String expression, String result) {
+        long start = Metrics.start();
+        appender.append(expression, result, System.currentTimeMillis());
+        Metrics.recordSince(Metrics.HISTORY_APPEND, start);
     }
 
-    private void saveHistory() {
-        try {
-            mapper.writerWithDefaultPrettyPrinter().writeValue(new File(HISTORY_FILE), history);
-        } catch (IOException e) {
-            System.err.println("Failed to save history: " + e.getMessage());
+    // Called by the appender in sequence order
+    private void apply(CalculationEntry entry) {
+        record(entry.getExpression(), entry.getResult(), entry.getEpochMillis(), entry.getSequence());
+        journal.append(entry);
+    }
+
+    private void record(String expression, String result, long timestamp, long sequence) {
+        if (history.size() == history.capacity()) {
+            index.remove(history.expressionAt(0), history.resultAt(0), history.timestampAt(0), history.sequenceAt(0));
         }
+        history.add(expression, result, timestamp, sequence);
+        index.add(expression, result, timestamp, sequence);
+    }
+
+    // Waits until all calculations added so far are saved; throws when they could not be
+    public void flush() throws IOException {
+        appender.read(() -> null);
+        journal.flush();
     }
 
+    // Flushes and stops the writer; only for instances other than the shared one
+    void close() {
+        journal.shutdown();
+    }
+
+    // Consistent snapshot that includes every calculation added before the call
     public List<CalculationEntry> getHistory() {
-        return new ArrayList<>(history);
+        return appender.read(() -> {
+            List<CalculationEntry> copy = new ArrayList<>(history.size());
+            for (int i = 0; i < history.size(); i++) {
+                copy.add(history.get(i));
+            }
+            return copy;
+        });
+    }
+
+    public int size() {
+        return appender.read(history::size);
+    }
+
+    // Entries persisted by every process sharing the history file, including ones evicted from
+    // this process's in-memory window
+    public long getStoredCount() {
+        return store.count();
+    }
+
+    // A page of persisted entries, oldest first; from is the index of the first entry to return
+    public List<CalculationEntry> getStoredPage(long from, int count) {
+        return store.read(from, count);
     }
 
     public void clearHistory() {
-        history.clear();
-        saveHistory();
+        appender.read(() -> {
+            history.clear();
+            index.clear();
+            journal.clear(appender.nextToApply());
+            return null;
+        });
+    }
+
+    // Searches over the in-memory window; each returns at most limit entries
+
+    // Entries whose expression contains text, newest first
+    public List<CalculationEntry> findByExpression(String text, int limit) {
+        return appender.read(() -> {
+            List<Long> sequences = new ArrayList<>();
+            index.containing(text, history, limit, sequences);
+            return entries(sequences);
+        });
+    }
+
+    // Entries whose expression starts with prefix, newest first
+    public List<CalculationEntry> findByExpressionPrefix(String prefix, int limit) {
+        return appender.read(() -> {
+            List<Long> sequences = new ArrayList<>();
+            index.startingWith(prefix, history, limit, sequences);
+            return entries(sequences);
+        });
+    }
+
+    // Entries with a numeric result in [min, max], roughly lowest first (by value bucket)
+    public List<CalculationEntry> findByResult(double min, double max, int limit) {
+        return appender.read(() -> {
+            List<Long> sequences = new ArrayList<>();
+            index.resultBetween(min, max, history, limit, sequences);
+            return entries(sequences);
+        });
+    }
+
+    // Entries added in [fromMillis, toMillis] (epoch millis), oldest first
+    public List<CalculationEntry> findByTime(long fromMillis, long toMillis, int limit) {
+        return appender.read(() -> {
+            List<Long> sequences = new ArrayList<>();
+            index.between(fromMillis, toMillis, limit, sequences);
+            return entries(sequences);
+        });
+    }
+
+    private List<CalculationEntry> entries(List<Long> sequences) {
+        List<CalculationEntry> entries = new ArrayList<>(sequences.size());
+        long first = history.size() == 0 ? 0 : history.sequenceAt(0);
+        for (long sequence : sequences) {
+            entries.add(history.get((int) (sequence - first)));
+        }
+        return entries;
     }
 
+    // The newest count entries, oldest first, including appends still being staged
     public List<CalculationEntry> getRecentHistory(int count) {
-        int start = Math.max(0, history.size() - count);
-        return new ArrayList<>(history.subList(start, history.size()));
+        return appender.read(() -> history.recent(count));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,147 @@
+package com.nayabjalal.calculator.history;
+
+import com.nayabjalal.calculator.history.CalculationHistory.CalculationEntry;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+// Striped staging area in front of the history's single-threaded structures. A writer claims the
+// next sequence number and stages its entry under one of several stripe monitors, so writers on
+// different stripes never contend with each other. Whoever holds the apply lock drains the
+// stripes and hands entries to the sink strictly in sequence order; an entry whose predecessor
+// has been claimed but not staged yet waits for a later drain. Writers only try the apply lock,
+// so readers holding it do not block them, unless their stripe has backed up past MAX_STAGED:
+// then they wait for the lock and drain, so writers that outpace the sink cannot grow the
+// stripes without bound.
+final class HistoryAppender {
+    private static final int MAX_STRIPES = 64;
+    private static final int MAX_STAGED = 4096;
+
+    private final Stripe[] stripes;
+    private final int stripeMask;
+    private final AtomicLong nextSequence;
+    private final ReentrantLock applyLock = new ReentrantLock();
+    private final PriorityQueue<CalculationEntry> waiting =
+            new PriorityQueue<>(Comparator.comparingLong(CalculationEntry::getSequence));
+    private final Consumer<CalculationEntry> sink;
+    private long nextToApply; // guarded by applyLock
+
+    HistoryAppender(long firstSequence, Consumer<CalculationEntry> sink) {
+        int count = Integer.highestOneBit(Math.min(MAX_STRIPES, Runtime.getRuntime().availableProcessors() * 2) * 2 - 1);
+        this.stripes = new Stripe[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new Stripe();
+        }
+        this.stripeMask = count - 1;
+        this.nextSequence = new AtomicLong(firstSequence);
+        this.nextToApply = firstSequence;
+        this.sink = sink;
+    }
+
+    void append(String expression, String result, long timestamp) {
+        Stripe stripe = stripes[stripeIndex()];
+        synchronized (stripe) {
+            // Claimed under the stripe monitor, so a drain that locks this stripe sees the entry
+            stripe.add(new CalculationEntry(expression, result, timestamp, nextSequence.getAndIncrement()));
+        }
+        if (stripe.count >= MAX_STAGED) {
+            // Our entry is already staged, so a reader spinning under the lock cannot wait on us
+            applyLock.lock();
+            try {
+                drainLocked();
+            } finally {
+                applyLock.unlock();
+            }
+        }
+        tryDrain();
+    }
+
+    // Runs reader under the apply lock once every append that was claimed before the call has
+    // reached the sink
+    <T> T read(Supplier<T> reader) {
+        long target = nextSequence.get();
+        applyLock.lock();
+        try {
+            drainLocked();
+            while (nextToApply < target) {
+                // A writer is between claiming its sequence and publishing the entry
+                Thread.yield();
+                drainLocked();
+            }
+            return reader.get();
+        } finally {
+            applyLock.unlock();
+            tryDrain();
+        }
+    }
+
+    // Sequence number the next applied entry will have; call with the apply lock held
+    long nextToApply() {
+        return nextToApply;
+    }
+
+    // Writers that failed to get the lock left their entries staged; whoever releases the lock
+    // re-checks so nothing is stranded
+    private void tryDrain() {
+        while (hasStaged() && applyLock.tryLock()) {
+            try {
+                drainLocked();
+            } finally {
+                applyLock.unlock();
+            }
+        }
+    }
+
+    private boolean hasStaged() {
+        for (Stripe stripe : stripes) {
+            if (stripe.count != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void drainLocked() {
+        for (Stripe stripe : stripes) {
+            if (stripe.count == 0) {
+                continue;
+            }
+            synchronized (stripe) {
+                for (int i = 0; i < stripe.count; i++) {
+                    waiting.add(stripe.entries[i]);
+                    stripe.entries[i] = null;
+                }
+                stripe.count = 0;
+            }
+        }
+        CalculationEntry next;
+        while ((next = waiting.peek()) != null && next.getSequence() == nextToApply) {
+            waiting.poll();
+            sink.accept(next);
+            nextToApply++;
+        }
+    }
+
+    private int stripeIndex() {
+        long id = Thread.currentThread().getId();
+        return (int) ((id * 0x9E3779B97F4A7C15L) >>> 32) & stripeMask;
+    }
+
+    private static final class Stripe {
+        private CalculationEntry[] entries = new CalculationEntry[16];
+        private volatile int count; // written under the stripe's monitor
+
+        void add(CalculationEntry entry) {
+            if (count == entries.length) {
+                CalculationEntry[] grown = new CalculationEntry[entries.length * 2];
+                System.arraycopy(entries, 0, grown, 0, count);
+                entries = grown;
+            }
+            entries[count] = entry;
+            count = count + 1;
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package com.nayabjalal.calculator.history;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+// Incrementally maintained search indexes over the entries in a HistoryRingBuffer, keyed by
+// sequence number:
+//   - trigram postings for expression substring search, and postings for every one and two
+//     character substring so that shorter queries do not scan the ring
+//   - postings for the first one, two and three characters for prefix search
+//   - postings per result bucket, plus the sorted set of non-empty buckets, for range search
+//   - postings per timestamp in time order, for time-range search
+// Updates are hash lookups, except that creating or dropping a result bucket or a timestamp
+// touches a sorted structure. Timestamps are indexed rather than read off the ring because
+// they need not increase with the sequence: other processes and migrated files interleave.
+// Entries are evicted oldest first, so an evicted sequence is always at the front of every list
+// that holds it and removal is O(1) per list. Not thread-safe: guarded by the CalculationHistory
+// lock.
+final class HistoryIndex {
+    // A bucket spans values that share sign, exponent and the top 12 mantissa bits
+    private static final int BUCKET_SHIFT = 40;
+
+    private final Map<Long, SequenceList> trigrams = new HashMap<>();
+    private final Map<Long, SequenceList> shortGrams = new HashMap<>();
+    private final Map<Long, SequenceList> prefixes = new HashMap<>();
+    private final Map<Long, SequenceList> buckets = new HashMap<>();
+    private final TreeSet<Long> bucketOrder = new TreeSet<>();
+    private final TreeMap<Long, SequenceList> times = new TreeMap<>();
+
+    void add(String expression, String result, long timestamp, long sequence) {
+        for (int i = 0; i + 3 <= expression.length(); i++) {
+            postings(trigrams, trigram(expression, i)).addOnce(sequence);
+        }
+        for (int i = 0; i < expression.length(); i++) {
+            postings(shortGrams, gram(expression, i, 1)).addOnce(sequence);
+            if (i + 2 <= expression.length()) {
+                postings(shortGrams, gram(expression, i, 2)).addOnce(sequence);
+            }
+        }
+        postings(times, timestamp).addOnce(sequence);
+        for (int length = 1; length <= Math.min(3, expression.length()); length++) {
+            postings(prefixes, prefix(expression, length)).addOnce(sequence);
+        }
+        double value = numericValue(result);
+        if (!Double.isNaN(value)) {
+            Long bucket = bucket(value);
+            SequenceList sequences = buckets.get(bucket);
+            if (sequences == null) {
+                sequences = new SequenceList();
+                buckets.put(bucket, sequences);
+                bucketOrder.add(bucket);
+            }
+            sequences.addOnce(sequence);
+        }
+    }
+
+    void remove(String expression, String result, long timestamp, long sequence) {
+        for (int i = 0; i + 3 <= expression.length(); i++) {
+            removeFrom(trigrams, trigram(expression, i), sequence);
+        }
+        for (int i = 0; i < expression.length(); i++) {
+            removeFrom(shortGrams, gram(expression, i, 1), sequence);
+            if (i + 2 <= expression.length()) {
+                removeFrom(shortGrams, gram(expression, i, 2), sequence);
+            }
+        }
+        removeFrom(times, timestamp, sequence);
+        for (int length = 1; length <= Math.min(3, expression.length()); length++) {
+            removeFrom(prefixes, prefix(expression, length), sequence);
+        }
+        double value = numericValue(result);
+        if (!Double.isNaN(value)) {
+            Long bucket = bucket(value);
+            if (removeFrom(buckets, bucket, sequence)) {
+                bucketOrder.remove(bucket);
+            }
+        }
+    }
+
+    void clear() {
+        trigrams.clear();
+        shortGrams.clear();
+        prefixes.clear();
+        buckets.clear();
+        bucketOrder.clear();
+        times.clear();
+    }
+
+    // Newest first. Candidates come from the shortest postings list among the query's trigrams
+    // and are verified against the expression text; one and two character queries are answered
+    // by their own postings.
+    void containing(String query, HistoryRingBuffer ring, int limit, List<Long> out) {
+        if (query.isEmpty()) {
+            startingWith(query, ring, limit, out);
+            return;
+        }
+        if (query.length() < 3) {
+            SequenceList postings = shortGrams.get(gram(query, 0, query.length()));
+            if (postings != null) {
+                verify(postings, ring, query, false, limit, out);
+            }
+            return;
+        }
+
+        SequenceList shortest = null;
+        for (int i = 0; i + 3 <= query.length(); i++) {
+            SequenceList postings = trigrams.get(trigram(query, i));
+            if (postings == null) {
+                return;
+            }
+            if (shortest == null || postings.size() < shortest.size()) {
+                shortest = postings;
+            }
+        }
+        verify(shortest, ring, query, false, limit, out);
+    }
+
+    // Newest first
+    void startingWith(String prefix, HistoryRingBuffer ring, int limit, List<Long> out) {
+        if (prefix.isEmpty()) {
+            for (int index = ring.size() - 1; index >= 0 && out.size() < limit; index--) {
+                out.add(ring.sequenceAt(index));
+            }
+            return;
+        }
+        SequenceList candidates = prefixes.get(prefix(prefix, Math.min(3, prefix.length())));
+        if (prefix.length() > 3) {
+            // A longer prefix may be narrower through one of its later trigrams
+            for (int i = 1; candidates != null && i + 3 <= prefix.length(); i++) {
+                SequenceList postings = trigrams.get(trigram(prefix, i));
+                if (postings == null || postings.size() < candidates.size()) {
+                    candidates = postings;
+                }
+            }
+        }
+        if (candidates != null) {
+            verify(candidates, ring, prefix, true, limit, out);
+        }
+    }
+
+    // Lowest bucket first, newest first within a bucket
+    void resultBetween(double min, double max, HistoryRingBuffer ring, int limit, List<Long> out) {
+        if (!(min <= max)) {
+            return;
+        }
+        long first = ring.size() == 0 ? 0 : ring.sequenceAt(0);
+        for (Long bucket : bucketOrder.subSet(bucket(min), true, bucket(max), true)) {
+            SequenceList sequences = buckets.get(bucket);
+            for (int i = sequences.size() - 1; i >= 0 && out.size() < limit; i--) {
+                long sequence = sequences.get(i);
+                // Only the boundary buckets can hold values outside the range
+                double value = numericValue(ring.resultAt((int) (sequence - first)));
+                if (value >= min && value <= max) {
+                    out.add(sequence);
+                }
+            }
+            if (out.size() >= limit) {
+                return;
+            }
+        }
+    }
+
+    // Oldest first, by timestamp and then sequence
+    void between(long fromMillis, long toMillis, int limit, List<Long> out) {
+        if (fromMillis > toMillis) {
+            return;
+        }
+        for (SequenceList sequences : times.subMap(fromMillis, true, toMillis, true).values()) {
+            for (int i = 0; i < sequences.size() && out.size() < limit; i++) {
+                out.add(sequences.get(i));
+            }
+            if (out.size() >= limit) {
+                return;
+            }
+        }
+    }
+
+    private static void verify(SequenceList candidates, HistoryRingBuffer ring, String text, boolean prefix,
+                               int limit, List<Long> out) {
+        long first = ring.size() == 0 ? 0 : ring.sequenceAt(0);
+        for (int i = candidates.size() - 1; i >= 0 && out.size() < limit; i--) {
+            long sequence = candidates.get(i);
+            String expression = ring.expressionAt((int) (sequence - first));
+            if (prefix ? expression.startsWith(text) : expression.contains(text)) {
+                out.add(sequence);
+            }
+        }
+    }
+
+    private static SequenceList postings(Map<Long, SequenceList> index, Long key) {
+        SequenceList sequences = index.get(key);
+        if (sequences == null) {
+            sequences = new SequenceList();
+            index.put(key, sequences);
+        }
+        return sequences;
+    }
+
+    // Returns true when the key's list became empty and was dropped
+    private static boolean removeFrom(Map<Long, SequenceList> index, Long key, long sequence) {
+        SequenceList sequences = index.get(key);
+        if (sequences != null && sequences.removeFirst(sequence) && sequences.isEmpty()) {
+            index.remove(key);
+            return true;
+        }
+        return false;
+    }
+
+    private static long trigram(String text, int start) {
+        return ((long) text.charAt(start) << 32) | ((long) text.charAt(start + 1) << 16) | text.charAt(start + 2);
+    }
+
+    // Up to three characters plus the length, so "1" and "1\0" stay distinct
+    private static long prefix(String text, int length) {
+        return gram(text, 0, length);
+    }
+
+    private static long gram(String text, int start, int length) {
+        long key = length;
+        for (int i = 0; i < length; i++) {
+            key |= (long) text.charAt(start + i) << (16 * i + 16);
+        }
+        return key;
+    }
+
+    // Order-preserving: maps the double's bits so that signed long order matches numeric order
+    private static long bucket(double value) {
+        long bits = Double.doubleToLongBits(value == 0.0 ? 0.0 : value);
+        return (bits < 0 ? bits ^ Long.MAX_VALUE : bits) >> BUCKET_SHIFT;
+    }
+
+    private static double numericValue(String result) {
+        if (result == null || result.isEmpty()) {
+            return Double.NaN;
+        }
+        char first = result.charAt(0);
+        if (first != '-' && first != '.' && (first < '0' || first > '9')) {
+            return Double.NaN; // "Error" and other non-numeric results
+        }
+        try {
+            return Double.parseDouble(result);
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    // Ascending sequence numbers with O(1) append and O(1) removal from the front
+    private static final class SequenceList {
+        private long[] values = new long[2];
+        private int start;
+        private int end;
+
+        void addOnce(long sequence) {
+            if (end > start && values[end - 1] == sequence) {
+                return;
+            }
+            if (end == values.length) {
+                int size = end - start;
+                long[] target = size * 2 < values.length ? values : new long[values.length * 2];
+                System.arraycopy(values, start, target, 0, size);
+                values = target;
+                start = 0;
+                end = size;
+            }
+            values[end++] = sequence;
+        }
+
+        boolean removeFirst(long sequence) {
+            if (end > start && values[start] == sequence) {
+                start++;
+                if (start == end) {
+                    start = 0;
+                    end = 0;
+                    if (values.length > 16) {
+                        values = Arrays.copyOf(values, 2);
+                    }
+                }
+                return true;
+            }
+            return false;
+        }
+
+        int size() {
+            return end - start;
+        }
+
+        boolean isEmpty() {
+            return start == end;
+        }
+
+        long get(int index) {
+            return values[start + index];
+        }
+    }
+}
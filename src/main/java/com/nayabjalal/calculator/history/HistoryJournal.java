@@ -0,0 +1,203 @@
+package com.nayabjalal.calculator.history;
+
+import com.nayabjalal.calculator.history.CalculationHistory.CalculationEntry;
+import com.nayabjalal.calculator.jfr.HistorySaveEvent;
+import com.nayabjalal.calculator.metrics.Metrics;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+// Write-behind persistence for the history. Callers only enqueue; a background writer hands
+// entries to the HistoryStore in group-commit batches (on batch size or flush interval,
+// whichever comes first) and compacts the store when it asks for it. A batch the store fails to
+// take is kept and retried; flush reports the failure instead of returning as if it were saved.
+class HistoryJournal {
+    private static final CalculationEntry FLUSH = new CalculationEntry();
+    private static final CalculationEntry COMPACT = new CalculationEntry();
+    private static final CalculationEntry SHUTDOWN = new CalculationEntry();
+    private static final long RETRY_MILLIS = 1000;
+    private static final long FLUSH_TIMEOUT_SECONDS = 5;
+
+    private final HistoryStore store;
+    private final Supplier<List<CalculationEntry>> snapshotSource;
+    private final long flushIntervalNanos;
+    private final int batchSize;
+
+    private final BlockingQueue<CalculationEntry> pending = new LinkedBlockingQueue<>();
+    private final List<CompletableFuture<Void>> flushWaiters = new ArrayList<>();
+    private final Thread writer;
+    private volatile long discardBelow;
+    private volatile boolean clearRequested;
+    private IOException failure; // owned by the writer thread
+
+    HistoryJournal(HistoryStore store, Supplier<List<CalculationEntry>> snapshotSource,
+                   long flushIntervalMillis, int batchSize) {
+        this.store = store;
+        this.snapshotSource = snapshotSource;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        this.batchSize = batchSize;
+        this.writer = new Thread(this::writeLoop, "history-writer");
+        this.writer.setDaemon(true);
+    }
+
+    void start() {
+        writer.start();
+    }
+
+    void append(CalculationEntry entry) {
+        pending.add(entry);
+    }
+
+    // Entries below firstKept that are still queued are dropped, and the store is cleared
+    void clear(long firstKept) {
+        discardBelow = firstKept;
+        clearRequested = true;
+        pending.add(COMPACT);
+    }
+
+    // Blocks until everything enqueued so far has been handed to the store. Throws the store's
+    // failure if it could not take it, or when the writer does not get there in time.
+    void flush() throws IOException {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        synchronized (flushWaiters) {
+            flushWaiters.add(done);
+        }
+        pending.add(FLUSH);
+        try {
+            done.get(FLUSH_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            throw (IOException) e.getCause();
+        } catch (TimeoutException e) {
+            throw new IOException("History not saved within " + FLUSH_TIMEOUT_SECONDS + " seconds");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for history to be saved");
+        }
+    }
+
+    void shutdown() {
+        pending.add(SHUTDOWN);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeLoop() {
+        List<CalculationEntry> batch = new ArrayList<>(batchSize);
+        boolean running = true;
+        while (running) {
+            CalculationEntry last = null;
+            try {
+                // A batch kept after a failure is retried once more arrives or the delay passes
+                CalculationEntry first = failure == null
+                        ? pending.take() : pending.poll(RETRY_MILLIS, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                }
+
+                // Group commit: gather until the batch is full or the flush window closes
+                long deadline = System.nanoTime() + flushIntervalNanos;
+                while (!batch.isEmpty() && batch.size() < batchSize && !isControl(batch.get(batch.size() - 1))) {
+                    CalculationEntry next = pending.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                if (!batch.isEmpty() && isControl(batch.get(batch.size() - 1))) {
+                    last = batch.remove(batch.size() - 1);
+                }
+                batch.removeIf(entry -> entry.getSequence() < discardBelow);
+                if (clearRequested) {
+                    store.clear();
+                    clearRequested = false;
+                }
+                if (!batch.isEmpty()) {
+                    append(batch);
+                }
+                batch.clear();
+
+                if (last == COMPACT || last == SHUTDOWN || store.needsCompaction()) {
+                    compact();
+                }
+                failure = null;
+                if (last == FLUSH) {
+                    releaseFlushWaiters();
+                }
+                running = last != SHUTDOWN;
+            } catch (InterruptedException e) {
+                running = false;
+            } catch (IOException e) {
+                System.err.println("Failed to save history, will retry: " + e.getMessage());
+                failure = e;
+                releaseFlushWaiters();
+                if (last == SHUTDOWN) {
+                    System.err.println("History entries not saved: " + batch.size());
+                    running = false;
+                }
+            }
+        }
+        releaseFlushWaiters();
+        try {
+            store.close();
+        } catch (IOException e) {
+            System.err.println("Failed to close history store: " + e.getMessage());
+        }
+    }
+
+    private void append(List<CalculationEntry> batch) throws IOException {
+        HistorySaveEvent event = new HistorySaveEvent();
+        long before = event.isEnabled() ? store.byteCount() : 0;
+        event.begin();
+        long start = Metrics.start();
+        store.append(batch);
+        Metrics.recordSince(Metrics.HISTORY_FLUSH, start);
+        if (event.shouldCommit()) {
+            event.entries = batch.size();
+            event.bytes = store.byteCount() - before;
+            event.commit();
+        }
+    }
+
+    private void compact() throws IOException {
+        HistorySaveEvent event = new HistorySaveEvent();
+        event.begin();
+        List<CalculationEntry> snapshot = snapshotSource.get();
+        store.compact(snapshot);
+        if (event.shouldCommit()) {
+            event.entries = snapshot.size();
+            event.bytes = store.byteCount();
+            event.compaction = true;
+            event.commit();
+        }
+    }
+
+    private static boolean isControl(CalculationEntry entry) {
+        return entry == FLUSH || entry == COMPACT || entry == SHUTDOWN;
+    }
+
+    // Completes the waiting flushes with the current failure, if any
+    private void releaseFlushWaiters() {
+        synchronized (flushWaiters) {
+            for (CompletableFuture<Void> waiter : flushWaiters) {
+                if (failure == null) {
+                    waiter.complete(null);
+                } else {
+                    waiter.completeExceptionally(failure);
+                }
+            }
+            flushWaiters.clear();
+        }
+    }
+}
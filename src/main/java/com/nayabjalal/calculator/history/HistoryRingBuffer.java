@@ -0,0 +1,118 @@
+package com.nayabjalal.calculator.history;
+
+import com.nayabjalal.calculator.history.CalculationHistory.CalculationEntry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Fixed-capacity history store with O(1) append and eviction. Entries are kept in parallel
+// primitive/reference arrays rather than as objects; the arrays start small and double until
+// they reach the capacity. Not thread-safe: callers hold the lock they pass in.
+final class HistoryRingBuffer {
+    private static final int INITIAL_LENGTH = 64;
+
+    private final int capacity;
+    private String[] expressions;
+    private String[] results;
+    private long[] timestamps;
+    private long[] sequences;
+    private int head; // slot of the oldest entry
+    private int size;
+
+    HistoryRingBuffer(int capacity) {
+        this.capacity = capacity;
+        int length = Math.min(capacity, INITIAL_LENGTH);
+        this.expressions = new String[length];
+        this.results = new String[length];
+        this.timestamps = new long[length];
+        this.sequences = new long[length];
+    }
+
+    void add(String expression, String result, long timestamp, long sequence) {
+        if (size == expressions.length && size < capacity) {
+            grow();
+        }
+        int slot;
+        if (size == capacity) {
+            slot = head; // overwrite the oldest entry
+            head = (head + 1) % capacity;
+        } else {
+            slot = (head + size) % expressions.length;
+            size++;
+        }
+        expressions[slot] = expression;
+        results[slot] = result;
+        timestamps[slot] = timestamp;
+        sequences[slot] = sequence;
+    }
+
+    private void grow() {
+        int length = (int) Math.min(capacity, expressions.length * 2L);
+        expressions = unwrap(expressions, new String[length]);
+        results = unwrap(results, new String[length]);
+        long[] newTimestamps = new long[length];
+        long[] newSequences = new long[length];
+        for (int i = 0; i < size; i++) {
+            int slot = (head + i) % timestamps.length;
+            newTimestamps[i] = timestamps[slot];
+            newSequences[i] = sequences[slot];
+        }
+        timestamps = newTimestamps;
+        sequences = newSequences;
+        head = 0;
+    }
+
+    private String[] unwrap(String[] source, String[] target) {
+        for (int i = 0; i < size; i++) {
+            target[i] = source[(head + i) % source.length];
+        }
+        return target;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    // index 0 is the oldest retained entry
+    CalculationEntry get(int index) {
+        int slot = (head + index) % expressions.length;
+        return new CalculationEntry(expressions[slot], results[slot], timestamps[slot], sequences[slot]);
+    }
+
+    String expressionAt(int index) {
+        return expressions[(head + index) % expressions.length];
+    }
+
+    String resultAt(int index) {
+        return results[(head + index) % results.length];
+    }
+
+    long sequenceAt(int index) {
+        return sequences[(head + index) % sequences.length];
+    }
+
+    long timestampAt(int index) {
+        return timestamps[(head + index) % timestamps.length];
+    }
+
+    void clear() {
+        Arrays.fill(expressions, null);
+        Arrays.fill(results, null);
+        head = 0;
+        size = 0;
+    }
+
+    // Copy of the newest count entries, oldest first
+    List<CalculationEntry> recent(int count) {
+        int first = size - Math.max(0, Math.min(count, size));
+        List<CalculationEntry> copy = new ArrayList<>(size - first);
+        for (int i = first; i < size; i++) {
+            copy.add(get(i));
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,33 @@
+package com.nayabjalal.calculator.history;
+
+import com.nayabjalal.calculator.history.CalculationHistory.CalculationEntry;
+import java.io.IOException;
+import java.util.List;
+
+// Durable side of the history. HistoryJournal calls the mutating methods from its single
+// writer thread; count and read may be called from any thread.
+interface HistoryStore extends AutoCloseable {
+
+    // The newest limit entries, oldest first
+    List<CalculationEntry> load(int limit);
+
+    // Entries are durable when this returns
+    void append(List<CalculationEntry> batch) throws IOException;
+
+    boolean needsCompaction();
+
+    void compact(List<CalculationEntry> snapshot) throws IOException;
+
+    void clear() throws IOException;
+
+    // Entries stored, without reading them; polled by the history.stored gauge
+    long count();
+
+    List<CalculationEntry> read(long from, int count);
+
+    // Bytes the stored history takes on disk
+    long byteCount();
+
+    @Override
+    void close() throws IOException;
+}
@@ -0,0 +1,217 @@
+package com.nayabjalal.calculator.history;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nayabjalal.calculator.history.CalculationHistory.CalculationEntry;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// JSON snapshot plus a journal of JSON lines. Every entry carries a sequence number, so journal
+// lines already covered by the snapshot or by an earlier line are skipped on replay. There is no index: read has to
+// load the files, but count is kept as entries are loaded, appended and compacted.
+class JsonHistoryStore implements HistoryStore {
+    private final Path snapshotFile;
+    private final Path journalFile;
+    private final ObjectMapper mapper;
+    private final int compactionThreshold;
+    private FileChannel journal;
+    // Owned by the writer thread; load sets it before the journal starts. Readers must not touch it.
+    private int journalEntries;
+    private volatile long storedEntries;
+
+    JsonHistoryStore(Path snapshotFile, ObjectMapper mapper, int compactionThreshold) {
+        this.snapshotFile = snapshotFile;
+        this.journalFile = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".journal");
+        this.mapper = mapper;
+        this.compactionThreshold = compactionThreshold;
+    }
+
+    boolean exists() {
+        return Files.exists(snapshotFile) || Files.exists(journalFile);
+    }
+
+    @Override
+    public List<CalculationEntry> load(int limit) {
+        dropTornLine();
+        List<CalculationEntry> entries = readSnapshot();
+        int snapshotEntries = entries.size();
+        replayJournal(entries);
+        journalEntries = entries.size() - snapshotEntries;
+        storedEntries = entries.size();
+        return new ArrayList<>(entries.subList(Math.max(0, entries.size() - limit), entries.size()));
+    }
+
+    // Snapshot entries followed by journal entries newer than the snapshot
+    private List<CalculationEntry> loadAll() {
+        List<CalculationEntry> entries = readSnapshot();
+        replayJournal(entries);
+        return entries;
+    }
+
+    private List<CalculationEntry> readSnapshot() {
+        List<CalculationEntry> entries = new ArrayList<>();
+        try {
+            if (Files.exists(snapshotFile)) {
+                entries.addAll(mapper.readValue(snapshotFile.toFile(), new TypeReference<List<CalculationEntry>>() {}));
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to load history snapshot: " + e.getMessage());
+        }
+        return entries;
+    }
+
+    // Adds the journal entries newer than anything already in entries
+    private void replayJournal(List<CalculationEntry> entries) {
+        long lastSequence = 0;
+        for (CalculationEntry entry : entries) {
+            lastSequence = Math.max(lastSequence, entry.getSequence());
+        }
+        if (Files.exists(journalFile)) {
+            try (BufferedReader reader = Files.newBufferedReader(journalFile, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    CalculationEntry entry = readJournalLine(line);
+                    if (entry != null && entry.getSequence() > lastSequence) {
+                        entries.add(entry);
+                        lastSequence = entry.getSequence();
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("Failed to replay history journal: " + e.getMessage());
+            }
+        }
+    }
+
+    // A crash can leave the last line half written; cut it off so the next append starts a line
+    private void dropTornLine() {
+        if (!Files.exists(journalFile)) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(journalFile, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer last = ByteBuffer.allocate(1);
+            long end = channel.size();
+            while (end > 0) {
+                last.clear();
+                channel.read(last, end - 1);
+                if (last.get(0) == '\n') {
+                    break;
+                }
+                end--;
+            }
+            if (end < channel.size()) {
+                channel.truncate(end);
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to repair history journal: " + e.getMessage());
+        }
+    }
+
+    private CalculationEntry readJournalLine(String line) {
+        try {
+            return mapper.readValue(line, CalculationEntry.class);
+        } catch (IOException e) {
+            return null; // torn write from a crash; only ever the last line
+        }
+    }
+
+    @Override
+    public void append(List<CalculationEntry> batch) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(batch.size() * 96);
+        for (CalculationEntry entry : batch) {
+            mapper.writeValue(bytes, entry);
+            bytes.write('\n');
+        }
+
+        FileChannel channel = journal();
+        long end = channel.size();
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            // Drop the partial batch so a retry does not land behind a torn line
+            try {
+                channel.truncate(end);
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+        journalEntries += batch.size();
+        storedEntries += batch.size();
+    }
+
+    @Override
+    public boolean needsCompaction() {
+        return journalEntries >= compactionThreshold;
+    }
+
+    // Writes the snapshot to a temporary file, renames it into place, then starts an empty journal
+    @Override
+    public void compact(List<CalculationEntry> snapshot) throws IOException {
+        Path temporary = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+        mapper.writerWithDefaultPrettyPrinter().writeValue(temporary.toFile(), snapshot);
+        Files.move(temporary, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        journal().truncate(0);
+        journalEntries = 0;
+        storedEntries = snapshot.size();
+    }
+
+    @Override
+    public void clear() throws IOException {
+        compact(Collections.emptyList());
+    }
+
+    @Override
+    public long count() {
+        return storedEntries;
+    }
+
+    @Override
+    public List<CalculationEntry> read(long from, int count) {
+        List<CalculationEntry> entries = loadAll();
+        int start = (int) Math.min(entries.size(), Math.max(0, from));
+        return new ArrayList<>(entries.subList(start, Math.min(entries.size(), start + Math.max(0, count))));
+    }
+
+    @Override
+    public long byteCount() {
+        return sizeOf(snapshotFile) + sizeOf(journalFile);
+    }
+
+    private static long sizeOf(Path file) {
+        try {
+            return Files.exists(file) ? Files.size(file) : 0;
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private FileChannel journal() throws IOException {
+        if (journal == null) {
+            journal = FileChannel.open(journalFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+        }
+        return journal;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (journal != null) {
+            journal.close();
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package com.nayabjalal.calculator.history;
+
+import com.nayabjalal.calculator.history.CalculationHistory.CalculationEntry;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+// Binary history shared by every calculator process on the host. Two files:
+//
+//   <base>.idx   64-byte header, then one 32-byte record per entry: timestamp (long),
+//                sequence (long), heap offset (long), expression length (int), result length
+//                (int); memory-mapped in chunks of 4096 records
+//   <base>.heap  UTF-8 expression and result bytes, written and read with positional I/O so
+//                the file is only as long as what has been committed
+//
+// Header: magic, version, committed count, first visible index (moved by clear), heap end.
+// Appenders hold an exclusive file lock on the header, write heap bytes and records, force
+// them, and only then publish the new count with a release store. Readers never lock: they
+// acquire-read the count and only look at records below it, so counting, paging and reading
+// the newest entries are O(1) seeks however large the file is. A crash before the count is
+// published leaves the partial batch past the end, where the next append overwrites it.
+// File locks belong to the whole JVM, so instances in the same process on the same files
+// take a shared monitor first.
+class MappedHistoryStore implements HistoryStore {
+    private static final int MAGIC = 0x43414C48; // "CALH"
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 64;
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 4;
+    private static final int COUNT_OFFSET = 8;
+    private static final int START_OFFSET = 16;
+    private static final int HEAP_END_OFFSET = 24;
+    private static final int RECORD_SIZE = 32;
+    private static final int RECORDS_PER_CHUNK = 1 << 12;
+    private static final int CHUNK_SIZE = RECORDS_PER_CHUNK * RECORD_SIZE;
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+    private static final Map<Path, Object> WRITE_MONITORS = new ConcurrentHashMap<>();
+
+    private final FileChannel indexChannel;
+    private final FileChannel heapChannel;
+    private final MappedByteBuffer header;
+    private final List<MappedByteBuffer> chunks = new ArrayList<>();
+    private final Object writeMonitor;
+
+    private MappedHistoryStore(FileChannel indexChannel, FileChannel heapChannel, Object writeMonitor)
+            throws IOException {
+        this.indexChannel = indexChannel;
+        this.heapChannel = heapChannel;
+        this.writeMonitor = writeMonitor;
+        this.header = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+    }
+
+    // Opens or creates the store. A new file is seeded from initialEntries under the same lock,
+    // so when several processes start at once exactly one of them migrates.
+    static MappedHistoryStore open(Path base, Supplier<List<CalculationEntry>> initialEntries) throws IOException {
+        Path indexFile = base.resolveSibling(base.getFileName() + ".idx");
+        FileChannel index = FileChannel.open(indexFile,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        FileChannel heap = FileChannel.open(base.resolveSibling(base.getFileName() + ".heap"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        Object monitor = WRITE_MONITORS.computeIfAbsent(indexFile.toRealPath(), path -> new Object());
+        MappedHistoryStore store = new MappedHistoryStore(index, heap, monitor);
+
+        synchronized (monitor) {
+            try (FileLock ignored = index.lock(0, HEADER_SIZE, false)) {
+                int magic = store.header.getInt(MAGIC_OFFSET);
+                if (magic == 0) {
+                    store.header.putInt(VERSION_OFFSET, VERSION);
+                    store.header.putInt(MAGIC_OFFSET, MAGIC);
+                    store.appendLocked(initialEntries.get());
+                } else if (magic != MAGIC || store.header.getInt(VERSION_OFFSET) != VERSION) {
+                    store.close();
+                    throw new IOException("Not a calculator history file: " + base);
+                }
+            }
+        }
+        return store;
+    }
+
+    @Override
+    public List<CalculationEntry> load(int limit) {
+        long count = count();
+        return read(Math.max(0, count - limit), limit);
+    }
+
+    @Override
+    public void append(List<CalculationEntry> batch) throws IOException {
+        synchronized (writeMonitor) {
+            try (FileLock ignored = indexChannel.lock(0, HEADER_SIZE, false)) {
+                appendLocked(batch);
+            }
+        }
+    }
+
+    private void appendLocked(List<CalculationEntry> batch) throws IOException {
+        if (batch.isEmpty()) {
+            return;
+        }
+        long count = (long) LONGS.getAcquire(header, COUNT_OFFSET);
+        long heapEnd = (long) LONGS.getAcquire(header, HEAP_END_OFFSET);
+        int firstChunk = (int) (count / RECORDS_PER_CHUNK);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        long heapStart = heapEnd;
+        for (CalculationEntry entry : batch) {
+            byte[] expression = entry.getExpression().getBytes(StandardCharsets.UTF_8);
+            byte[] result = entry.getResult().getBytes(StandardCharsets.UTF_8);
+            bytes.write(expression);
+            bytes.write(result);
+
+            ByteBuffer record = map(chunks, indexChannel, HEADER_SIZE, CHUNK_SIZE, (int) (count / RECORDS_PER_CHUNK));
+            int position = recordPosition(count);
+            record.putLong(position, entry.getEpochMillis());
+            record.putLong(position + 8, entry.getSequence());
+            record.putLong(position + 16, heapEnd);
+            record.putInt(position + 24, expression.length);
+            record.putInt(position + 28, result.length);
+
+            heapEnd += expression.length + result.length;
+            count++;
+        }
+
+        ByteBuffer heap = ByteBuffer.wrap(bytes.toByteArray());
+        while (heap.hasRemaining()) {
+            heapChannel.write(heap, heapStart + heap.position());
+        }
+        heapChannel.force(false);
+        // Only the chunks this batch wrote to
+        for (int i = firstChunk; i <= (count - 1) / RECORDS_PER_CHUNK; i++) {
+            map(chunks, indexChannel, HEADER_SIZE, CHUNK_SIZE, i).force();
+        }
+        LONGS.setRelease(header, HEAP_END_OFFSET, heapEnd);
+        LONGS.setRelease(header, COUNT_OFFSET, count);
+        header.force();
+    }
+
+    @Override
+    public boolean needsCompaction() {
+        return false;
+    }
+
+    // Records are already the durable form; nothing to fold
+    @Override
+    public void compact(List<CalculationEntry> snapshot) {
+    }
+
+    @Override
+    public void clear() throws IOException {
+        synchronized (writeMonitor) {
+            try (FileLock ignored = indexChannel.lock(0, HEADER_SIZE, false)) {
+                LONGS.setRelease(header, START_OFFSET, (long) LONGS.getAcquire(header, COUNT_OFFSET));
+                header.force();
+            }
+        }
+    }
+
+    @Override
+    public long count() {
+        return (long) LONGS.getAcquire(header, COUNT_OFFSET) - (long) LONGS.getAcquire(header, START_OFFSET);
+    }
+
+    // Header, records and heap up to the last entry; the index file is mapped in larger chunks
+    @Override
+    public long byteCount() {
+        return HEADER_SIZE + (long) LONGS.getAcquire(header, COUNT_OFFSET) * RECORD_SIZE
+                + (long) LONGS.getAcquire(header, HEAP_END_OFFSET);
+    }
+
+    // from is relative to the first visible entry
+    @Override
+    public List<CalculationEntry> read(long from, int count) {
+        long start = (long) LONGS.getAcquire(header, START_OFFSET);
+        long end = (long) LONGS.getAcquire(header, COUNT_OFFSET);
+        long first = start + Math.max(0, from);
+        long last = Math.min(end, first + Math.max(0, count));
+
+        List<CalculationEntry> entries = new ArrayList<>((int) Math.max(0, last - first));
+        for (long index = first; index < last; index++) {
+            entries.add(readEntry(index));
+        }
+        return entries;
+    }
+
+    private CalculationEntry readEntry(long index) {
+        int position = recordPosition(index);
+        try {
+            ByteBuffer record = map(chunks, indexChannel, HEADER_SIZE, CHUNK_SIZE, (int) (index / RECORDS_PER_CHUNK));
+            long timestamp = record.getLong(position);
+            long sequence = record.getLong(position + 8);
+            long offset = record.getLong(position + 16);
+            int expressionLength = record.getInt(position + 24);
+            int resultLength = record.getInt(position + 28);
+
+            ByteBuffer bytes = ByteBuffer.allocate(expressionLength + resultLength);
+            while (bytes.hasRemaining()) {
+                if (heapChannel.read(bytes, offset + bytes.position()) < 0) {
+                    throw new IOException("History heap ends before entry " + index);
+                }
+            }
+            return new CalculationEntry(
+                    new String(bytes.array(), 0, expressionLength, StandardCharsets.UTF_8),
+                    new String(bytes.array(), expressionLength, resultLength, StandardCharsets.UTF_8),
+                    timestamp, sequence);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to read history file", e);
+        }
+    }
+
+    // Position of the record within its chunk
+    private static int recordPosition(long index) {
+        return (int) (index % RECORDS_PER_CHUNK) * RECORD_SIZE;
+    }
+
+    // The number-th size-byte chunk of channel after base, mapping any missing chunks before it.
+    // No single mapping grows past size, so the files can outgrow what one buffer addresses.
+    private static MappedByteBuffer map(List<MappedByteBuffer> mapped, FileChannel channel, long base,
+                                        int size, int number) throws IOException {
+        synchronized (mapped) {
+            while (mapped.size() <= number) {
+                mapped.add(channel.map(FileChannel.MapMode.READ_WRITE, base + (long) mapped.size() * size, size));
+            }
+            return mapped.get(number);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        indexChannel.close();
+        heapChannel.close();
+    }
+}
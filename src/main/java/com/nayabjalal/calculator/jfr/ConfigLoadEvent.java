@@ -0,0 +1,24 @@
+package com.nayabjalal.calculator.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.nayabjalal.calculator.ConfigLoad")
+@Label("Config Load")
+@Category({"Calculator", "Config"})
+@Description("The configuration file read at startup or reloaded after an edit")
+public final class ConfigLoadEvent extends Event {
+    @Label("Path")
+    public String path;
+
+    @Label("Size")
+    @DataAmount
+    public long bytes;
+
+    @Label("Reload")
+    public boolean reload;
+}
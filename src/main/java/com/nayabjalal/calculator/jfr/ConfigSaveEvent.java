@@ -0,0 +1,21 @@
+package com.nayabjalal.calculator.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.nayabjalal.calculator.ConfigSave")
+@Label("Config Save")
+@Category({"Calculator", "Config"})
+@Description("The configuration file written")
+public final class ConfigSaveEvent extends Event {
+    @Label("Path")
+    public String path;
+
+    @Label("Size")
+    @DataAmount
+    public long bytes;
+}
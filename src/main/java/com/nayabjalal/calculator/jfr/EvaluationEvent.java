@@ -0,0 +1,79 @@
+package com.nayabjalal.calculator.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.FlightRecorderListener;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+// Flight Recorder events are no-ops until a recording enables them, and fields are only
+// filled in once shouldCommit says the event will be written. Evaluations are hot enough that
+// even allocating the event showed up, and the JIT did not always remove it, so start returns
+// null unless a recording is running. They can also run millions of times a second, so by
+// default only those of 1 ms or more are recorded; calculator.jfc records all of them.
+@Name("com.nayabjalal.calculator.Evaluation")
+@Label("Expression Evaluation")
+@Category({"Calculator", "Expression"})
+@Description("An expression evaluated by the engine")
+@StackTrace(false)
+@Threshold("1 ms")
+public final class EvaluationEvent extends Event {
+    public static final String SUCCESS = "SUCCESS";
+
+    private static volatile boolean recording;
+
+    static {
+        // Does not start Flight Recorder; the listener hears of recordings once something does
+        FlightRecorder.addListener(new FlightRecorderListener() {
+            @Override
+            public void recordingStateChanged(Recording changed) {
+                updateRecording();
+            }
+        });
+        if (FlightRecorder.isInitialized()) {
+            updateRecording();
+        }
+    }
+
+    @Label("Evaluator")
+    @Description("compiled, adaptive or interpreter")
+    public String evaluator;
+
+    @Label("Expression Length")
+    public int expressionLength;
+
+    @Label("Outcome")
+    @Description("SUCCESS or the CalculatorException.ErrorType of the failure")
+    public String outcome;
+
+    // Null while nothing is recording; pass the result to finish either way
+    public static EvaluationEvent start() {
+        if (!recording) {
+            return null;
+        }
+        EvaluationEvent event = new EvaluationEvent();
+        event.begin();
+        return event;
+    }
+
+    // Commits, with the fields set, if a recording wants this event
+    public static void finish(EvaluationEvent event, String evaluator, int expressionLength, String outcome) {
+        if (event != null && event.shouldCommit()) {
+            event.evaluator = evaluator;
+            event.expressionLength = expressionLength;
+            event.outcome = outcome;
+            event.commit();
+        }
+    }
+
+    private static void updateRecording() {
+        recording = FlightRecorder.getFlightRecorder().getRecordings().stream()
+                .anyMatch(running -> running.getState() == RecordingState.RUNNING);
+    }
+}
@@ -0,0 +1,21 @@
+package com.nayabjalal.calculator.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.nayabjalal.calculator.HistoryLoad")
+@Label("History Load")
+@Category({"Calculator", "History"})
+@Description("The calculation history read from its store at startup")
+public final class HistoryLoadEvent extends Event {
+    @Label("Entries")
+    public int entries;
+
+    @Label("Stored Size")
+    @DataAmount
+    public long bytes;
+}
@@ -0,0 +1,25 @@
+package com.nayabjalal.calculator.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.nayabjalal.calculator.HistorySave")
+@Label("History Save")
+@Category({"Calculator", "History"})
+@Description("A batch of calculations written to the history store, or the store compacted")
+public final class HistorySaveEvent extends Event {
+    @Label("Entries")
+    public int entries;
+
+    @Label("Bytes Written")
+    @Description("Growth of the store for appends, its whole size after a compaction")
+    @DataAmount
+    public long bytes;
+
+    @Label("Compaction")
+    public boolean compaction;
+}
@@ -0,0 +1,16 @@
+package com.nayabjalal.calculator.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.nayabjalal.calculator.ThemeChange")
+@Label("Theme Change")
+@Category({"Calculator", "UI"})
+@Description("A theme applied to the window, on the EDT")
+public final class ThemeChangeEvent extends Event {
+    @Label("Theme")
+    public String theme;
+}
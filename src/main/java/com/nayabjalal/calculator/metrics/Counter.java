@@ -0,0 +1,23 @@
+package com.nayabjalal.calculator.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// Striped, so that threads counting at once do not contend on one cache line
+public final class Counter {
+    private final LongAdder count = new LongAdder();
+
+    Counter() {
+    }
+
+    public void increment() {
+        count.increment();
+    }
+
+    public void add(long amount) {
+        count.add(amount);
+    }
+
+    public long get() {
+        return count.sum();
+    }
+}
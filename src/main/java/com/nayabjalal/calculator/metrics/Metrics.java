@@ -0,0 +1,98 @@
+package com.nayabjalal.calculator.metrics;
+
+import com.nayabjalal.calculator.exception.CalculatorException.ErrorType;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+// The engine's metrics, off unless the JVM runs with -Dcalculator.metrics=true. ENABLED is a
+// constant, so with metrics off the JIT removes the instrumentation along with the branch.
+// When on, the registry is registered as the MBean OBJECT_NAME and printed to stderr every
+// -Dcalculator.metrics.dumpSeconds (default 60, 0 for never).
+public final class Metrics {
+    public static final boolean ENABLED = Boolean.getBoolean("calculator.metrics");
+    public static final String OBJECT_NAME = "com.nayabjalal.calculator:type=Metrics";
+    private static final long DUMP_SECONDS = Long.getLong("calculator.metrics.dumpSeconds", 60);
+
+    public static final MetricsRegistry REGISTRY = new MetricsRegistry();
+
+    // Compiling an expression: one pass that tokenizes and parses
+    public static final LatencyHistogram PARSE = REGISTRY.histogram("expression.parse");
+    // evaluateExpression, through the cache of compiled programs
+    public static final LatencyHistogram EVALUATE = REGISTRY.histogram("expression.evaluate");
+    // The single pass over the text that tokenizes and evaluates at once
+    public static final LatencyHistogram INTERPRET = REGISTRY.histogram("expression.interpret");
+    public static final LatencyHistogram HISTORY_APPEND = REGISTRY.histogram("history.append");
+    public static final LatencyHistogram HISTORY_FLUSH = REGISTRY.histogram("history.flush");
+    public static final Counter CONFIG_GET = REGISTRY.counter("config.get");
+    public static final Counter CONFIG_SNAPSHOT = REGISTRY.counter("config.snapshot");
+    private static final Counter[] ERRORS = new Counter[ErrorType.values().length];
+
+    static {
+        for (ErrorType type : ErrorType.values()) {
+            ERRORS[type.ordinal()] = REGISTRY.counter("errors." + type.name());
+        }
+        if (ENABLED) {
+            register();
+            scheduleDump();
+        }
+    }
+
+    private Metrics() {
+        throw new AssertionError("Constructor is not allowed");
+    }
+
+    // Pass the result to recordSince; 0 without reading the clock when metrics are off
+    public static long start() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    public static void recordSince(LatencyHistogram histogram, long start) {
+        if (ENABLED) {
+            histogram.record(System.nanoTime() - start);
+        }
+    }
+
+    public static void increment(Counter counter) {
+        if (ENABLED) {
+            counter.increment();
+        }
+    }
+
+    public static void error(ErrorType type) {
+        if (ENABLED) {
+            ERRORS[type.ordinal()].increment();
+        }
+    }
+
+    public static void gauge(String name, LongSupplier value) {
+        if (ENABLED) {
+            REGISTRY.gauge(name, value);
+        }
+    }
+
+    private static void register() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsMBean(REGISTRY), new ObjectName(OBJECT_NAME));
+        } catch (JMException e) {
+            System.err.println("Failed to register metrics MBean: " + e.getMessage());
+        }
+    }
+
+    private static void scheduleDump() {
+        if (DUMP_SECONDS <= 0) {
+            return;
+        }
+        ScheduledExecutorService dumper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-dump");
+            thread.setDaemon(true);
+            return thread;
+        });
+        dumper.scheduleAtFixedRate(() -> System.err.print("Metrics:\n" + REGISTRY.format()),
+                DUMP_SECONDS, DUMP_SECONDS, TimeUnit.SECONDS);
+    }
+}
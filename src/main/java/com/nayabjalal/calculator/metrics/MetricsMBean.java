@@ -0,0 +1,68 @@
+package com.nayabjalal.calculator.metrics;
+
+import java.util.Map;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.ReflectionException;
+
+// Read-only view of a registry, one Long attribute per name in MetricsRegistry.sample().
+// Dynamic because gauges can be registered after the bean is.
+final class MetricsMBean implements DynamicMBean {
+    private final MetricsRegistry registry;
+
+    MetricsMBean(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public Object getAttribute(String name) throws AttributeNotFoundException {
+        Long value = registry.sample().get(name);
+        if (value == null) {
+            throw new AttributeNotFoundException(name);
+        }
+        return value;
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] names) {
+        Map<String, Long> sample = registry.sample();
+        AttributeList attributes = new AttributeList();
+        for (String name : names) {
+            Long value = sample.get(name);
+            if (value != null) {
+                attributes.add(new Attribute(name, value));
+            }
+        }
+        return attributes;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException(attribute.getName() + " is read-only");
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String action, Object[] params, String[] signature) throws ReflectionException {
+        throw new ReflectionException(new NoSuchMethodException(action));
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        Map<String, Long> sample = registry.sample();
+        MBeanAttributeInfo[] attributes = new MBeanAttributeInfo[sample.size()];
+        int i = 0;
+        for (String name : sample.keySet()) {
+            attributes[i++] = new MBeanAttributeInfo(name, Long.class.getName(), name, true, false, false);
+        }
+        return new MBeanInfo(getClass().getName(), "Calculator engine metrics", attributes, null, null, null);
+    }
+}
@@ -0,0 +1,99 @@
+package com.nayabjalal.calculator.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.LongSupplier;
+
+// Named counters, latency histograms and gauges, kept in name order for the dump
+public final class MetricsRegistry {
+    private static final double[] PERCENTILES = {50, 90, 99};
+
+    private final Map<String, Object> metrics = new ConcurrentSkipListMap<>();
+
+    public Counter counter(String name) {
+        return lookup(name, Counter.class, new Counter());
+    }
+
+    public LatencyHistogram histogram(String name) {
+        return lookup(name, LatencyHistogram.class, new LatencyHistogram());
+    }
+
+    // Read on every sample; registering a name again replaces the supplier
+    public void gauge(String name, LongSupplier value) {
+        Object existing = metrics.put(name, value);
+        if (existing != null && !(existing instanceof LongSupplier)) {
+            metrics.put(name, existing);
+            throw new IllegalArgumentException(name + " is already registered as " + describe(existing));
+        }
+    }
+
+    private <T> T lookup(String name, Class<T> type, T created) {
+        Object metric = metrics.putIfAbsent(name, created);
+        if (metric == null) {
+            return created;
+        }
+        if (!type.isInstance(metric)) {
+            throw new IllegalArgumentException(name + " is already registered as " + describe(metric));
+        }
+        return type.cast(metric);
+    }
+
+    // One value per flat name: counters and gauges as they are, histograms as name.count,
+    // name.mean, name.p50, name.p90, name.p99 and name.max in nanoseconds
+    public Map<String, Long> sample() {
+        Map<String, Long> values = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> entry : metrics.entrySet()) {
+            String name = entry.getKey();
+            Object metric = entry.getValue();
+            if (metric instanceof Counter) {
+                values.put(name, ((Counter) metric).get());
+            } else if (metric instanceof LongSupplier) {
+                values.put(name, ((LongSupplier) metric).getAsLong());
+            } else {
+                LatencyHistogram histogram = (LatencyHistogram) metric;
+                values.put(name + ".count", histogram.getCount());
+                values.put(name + ".mean", histogram.getMean());
+                for (double percentile : PERCENTILES) {
+                    values.put(name + ".p" + (int) percentile, histogram.getValueAtPercentile(percentile));
+                }
+                values.put(name + ".max", histogram.getMax());
+            }
+        }
+        return values;
+    }
+
+    // One line per metric, latencies in microseconds
+    public String format() {
+        StringBuilder out = new StringBuilder();
+        for (Map.Entry<String, Object> entry : metrics.entrySet()) {
+            Object metric = entry.getValue();
+            out.append(entry.getKey()).append(' ');
+            if (metric instanceof Counter) {
+                out.append(((Counter) metric).get());
+            } else if (metric instanceof LongSupplier) {
+                out.append(((LongSupplier) metric).getAsLong());
+            } else {
+                LatencyHistogram histogram = (LatencyHistogram) metric;
+                out.append("count=").append(histogram.getCount())
+                        .append(" mean=").append(micros(histogram.getMean()));
+                for (double percentile : PERCENTILES) {
+                    out.append(" p").append((int) percentile).append('=')
+                            .append(micros(histogram.getValueAtPercentile(percentile)));
+                }
+                out.append(" max=").append(micros(histogram.getMax())).append(" us");
+            }
+            out.append('\n');
+        }
+        return out.toString();
+    }
+
+    private static String micros(long nanos) {
+        return String.format(Locale.ROOT, "%.1f", nanos / 1000.0);
+    }
+
+    private static String describe(Object metric) {
+        return metric instanceof LongSupplier ? "a gauge" : "a " + metric.getClass().getSimpleName();
+    }
+}
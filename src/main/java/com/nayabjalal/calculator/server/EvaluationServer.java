@@ -0,0 +1,311 @@
+package com.nayabjalal.calculator.server;
+
+import com.nayabjalal.calculator.config.AppConfig;
+import com.nayabjalal.calculator.expression.BatchEvaluator;
+import com.nayabjalal.calculator.expression.EvaluationResult;
+import com.nayabjalal.calculator.history.CalculationHistory;
+import com.nayabjalal.calculator.util.InputValidator;
+import com.nayabjalal.calculator.util.VirtualThreads;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Local sidecar exposing the evaluator over HTTP on the loopback interface.
+//   POST /evaluate    body: one expression          -> result
+//   GET  /evaluate?expression=...                    -> result
+//   POST /batch       body: one expression per line -> one result per line
+// Connections are persistent, so clients can pipeline requests on one socket. Admission is
+// bounded: a request takes a permit on the dispatcher thread, before it is handed to the
+// executor, so at most maxQueuedRequests are queued or running at once. Requests beyond that
+// are answered with 503 on the dispatcher thread without being evaluated.
+public class EvaluationServer implements AutoCloseable {
+    private static final int DEFAULT_PORT = 8787;
+    private static final int DEFAULT_MAX_QUEUED_REQUESTS = 1024;
+    private static final int BACKLOG = 256;
+    private static final int MAX_BATCH_BYTES = 1 << 20;
+    // Most of an oversized body read and thrown away so that its 413 reaches the client
+    private static final long MAX_DRAIN_BYTES = 1 << 26;
+
+    static {
+        // Responses are written as separate header and body segments; without TCP_NODELAY each
+        // small response waits on the client's delayed ACK (~40 ms)
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    // Set on the dispatcher thread while it answers a request that found no permit
+    private static final ThreadLocal<Boolean> SHEDDING = ThreadLocal.withInitial(() -> false);
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final int maxQueuedRequests;
+    private final Semaphore admission;
+    private final boolean recordHistory;
+    private final LongAdder served = new LongAdder();
+    private final LongAdder shed = new LongAdder();
+
+    public EvaluationServer(int port, int maxQueuedRequests, boolean recordHistory) throws IOException {
+        this.maxQueuedRequests = maxQueuedRequests;
+        this.admission = new Semaphore(maxQueuedRequests);
+        this.recordHistory = recordHistory;
+        this.executor = VirtualThreads.newPerTaskExecutor(
+                Math.max(4, Runtime.getRuntime().availableProcessors() * 2), "evaluation-server");
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), BACKLOG);
+        server.createContext("/evaluate", exchange -> admit(exchange, false));
+        server.createContext("/batch", exchange -> admit(exchange, true));
+        server.setExecutor(this::dispatch);
+    }
+
+    public static int run(String... args) {
+        int port = DEFAULT_PORT;
+        if (args.length > 0) {
+            try {
+                port = Integer.parseInt(args[0]);
+            } catch (NumberFormatException e) {
+                System.err.println("Usage: --server [port]");
+                return 2;
+            }
+        }
+        try {
+            EvaluationServer server = new EvaluationServer(port, DEFAULT_MAX_QUEUED_REQUESTS, true);
+            server.start();
+            System.out.println("Calculator server listening on http://localhost:" + server.getPort());
+            Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+            return 0;
+        } catch (IOException e) {
+            System.err.println("Failed to start server: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public long getServedCount() {
+        return served.sum();
+    }
+
+    public long getShedCount() {
+        return shed.sum();
+    }
+
+    // Requests queued or running
+    int getInFlightCount() {
+        return maxQueuedRequests - admission.availablePermits();
+    }
+
+    // Called by the HttpServer dispatcher for each request. The fallback executor's queue is
+    // unbounded, so the permit has to be taken here rather than once a worker picks the task up.
+    private void dispatch(Runnable exchange) {
+        if (!admission.tryAcquire()) {
+            SHEDDING.set(true);
+            try {
+                exchange.run();
+            } finally {
+                SHEDDING.set(false);
+            }
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    exchange.run();
+                } finally {
+                    admission.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            admission.release();
+            throw e;
+        }
+    }
+
+    private void admit(HttpExchange exchange, boolean batch) throws IOException {
+        if (SHEDDING.get()) {
+            shed.increment();
+            exchange.getResponseHeaders().set("Retry-After", "1");
+            respond(exchange, 503, "Server busy\n");
+            return;
+        }
+        if (batch) {
+            handleBatch(exchange);
+        } else {
+            handleEvaluate(exchange);
+        }
+    }
+
+    private void handleEvaluate(HttpExchange exchange) throws IOException {
+        String expression;
+        if ("GET".equals(exchange.getRequestMethod())) {
+            expression = queryParameter(exchange, "expression");
+        } else if ("POST".equals(exchange.getRequestMethod())) {
+            // Never buffer more than the evaluator would accept
+            int maxLength = AppConfig.getInstance().snapshot().getEvaluationLimits().getMaxLength();
+            expression = declaresMoreThan(exchange, maxLength) ? null : readBody(exchange.getRequestBody(), maxLength);
+            if (expression == null) {
+                reject(exchange, "Expression is longer than " + maxLength + " characters\n");
+                return;
+            }
+            expression = expression.trim();
+        } else {
+            respond(exchange, 405, "Method not allowed\n");
+            return;
+        }
+
+        // Counted before the response, so a client that has its answer never sees a count without it
+        served.increment();
+        EvaluationResult result = evaluate(expression);
+        if (result.isSuccess()) {
+            respond(exchange, 200, InputValidator.formatResult(result.getValue()) + "\n");
+        } else {
+            respond(exchange, 400, "Error: " + result + "\n");
+        }
+    }
+
+    private void handleBatch(HttpExchange exchange) throws IOException {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            respond(exchange, 405, "Method not allowed\n");
+            return;
+        }
+
+        String body = declaresMoreThan(exchange, MAX_BATCH_BYTES) ? null
+                : readBody(exchange.getRequestBody(), MAX_BATCH_BYTES);
+        if (body == null) {
+            reject(exchange, "Batch is longer than " + MAX_BATCH_BYTES + " bytes\n");
+            return;
+        }
+        served.increment();
+        int maxLength = AppConfig.getInstance().snapshot().getEvaluationLimits().getMaxLength();
+
+        // Results are streamed back as they are computed rather than collected first
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(200, 0);
+        char[] line = new char[InputValidator.MAX_RESULT_LENGTH + 1];
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8))) {
+            int start = 0;
+            while (start < body.length()) {
+                int end = body.indexOf('\n', start);
+                int next = end < 0 ? body.length() : end + 1;
+                if (end < 0) {
+                    end = body.length();
+                }
+                if (end > start && body.charAt(end - 1) == '\r') {
+                    end--;
+                }
+                double value = Double.NaN;
+                if (end - start <= maxLength) {
+                    EvaluationResult result = evaluate(body.substring(start, end));
+                    if (result.isSuccess()) {
+                        value = result.getValue();
+                    }
+                }
+                int length = InputValidator.formatResult(value, line, 0);
+                line[length] = '\n';
+                out.write(line, 0, length + 1);
+                start = next;
+            }
+        }
+    }
+
+    private EvaluationResult evaluate(String expression) {
+        EvaluationResult result = BatchEvaluator.evaluateOne(expression);
+        if (recordHistory && result.isSuccess()) {
+            CalculationHistory.getInstance().addCalculation(expression.trim(),
+                    InputValidator.formatResult(result.getValue()));
+        }
+        return result;
+    }
+
+    private static String queryParameter(HttpExchange exchange, String name) {
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return null;
+        }
+        for (String pair : query.split("&")) {
+            int separator = pair.indexOf('=');
+            if (separator > 0 && pair.substring(0, separator).equals(name)) {
+                return URLDecoder.decode(pair.substring(separator + 1), StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+    private static boolean declaresMoreThan(HttpExchange exchange, long maxBytes) {
+        String length = exchange.getRequestHeaders().getFirst("Content-Length");
+        try {
+            return length != null && Long.parseLong(length.trim()) > maxBytes;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    // Null if the body is longer than maxBytes; the rest of it is then left for reject to drain
+    private static String readBody(InputStream in, int maxBytes) throws IOException {
+        byte[] bytes = in.readNBytes(maxBytes);
+        if (bytes.length == maxBytes && in.read() != -1) {
+            return null;
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // 413 on a connection that is closed afterwards. The client is still sending, and closing a
+    // socket with unread input resets it, which can lose the response; so the rest of the body
+    // is read and discarded after the response is written and before it is closed.
+    private static void reject(HttpExchange exchange, String message) throws IOException {
+        byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.getResponseHeaders().set("Connection", "close");
+        exchange.sendResponseHeaders(413, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+            out.flush();
+            InputStream in = exchange.getRequestBody();
+            byte[] discarded = new byte[8192];
+            long drained = 0;
+            int read;
+            while (drained < MAX_DRAIN_BYTES && (read = in.read(discarded)) != -1) {
+                drained += read;
+            }
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
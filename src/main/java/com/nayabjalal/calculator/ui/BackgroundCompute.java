@@ -0,0 +1,125 @@
+package com.nayabjalal.calculator.ui;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import javax.swing.JComponent;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+// Runs work for the UI on background threads and hands the outcome back on the EDT. Tasks are
+// submitted, cancelled and completed on the EDT, so their state needs no locking. A task that
+// is cancelled never calls back; one that passes its timeout is cancelled and reports a
+// TimeoutException. Cancelling interrupts the worker, which only stops work that checks for it.
+// The indicator is shown while a task has been running for longer than INDICATOR_DELAY_MILLIS.
+final class BackgroundCompute {
+    private static final int INDICATOR_DELAY_MILLIS = 150;
+
+    private final ExecutorService workers;
+    private final JComponent indicator;
+    private final Timer indicatorDelay;
+    private int running; // EDT only
+
+    BackgroundCompute(int threads, JComponent indicator) {
+        AtomicInteger counter = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "ui-compute-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.indicator = indicator;
+        this.indicatorDelay = new Timer(INDICATOR_DELAY_MILLIS, event -> indicator.setVisible(running > 0));
+        indicatorDelay.setRepeats(false);
+    }
+
+    // Call on the EDT. timeoutMillis of 0 means no timeout; what work throws and timeouts go to
+    // onError.
+    <T> Task submit(Callable<T> work, long timeoutMillis, Consumer<? super T> onResult, Consumer<Exception> onError) {
+        Task task = new Task(onError);
+        task.future = workers.submit(() -> {
+            T result;
+            try {
+                result = work.call();
+            } catch (Exception | Error e) {
+                // An Error would otherwise leave the task, and the indicator, running forever
+                Exception error = e instanceof Exception ? (Exception) e : new ExecutionException(e);
+                SwingUtilities.invokeLater(() -> {
+                    if (task.finish()) {
+                        onError.accept(error);
+                    }
+                });
+                return;
+            }
+            SwingUtilities.invokeLater(() -> {
+                if (task.finish()) {
+                    onResult.accept(result);
+                }
+            });
+        });
+        if (timeoutMillis > 0) {
+            task.timeout = new Timer((int) Math.min(Integer.MAX_VALUE, timeoutMillis), event -> task.expire(timeoutMillis));
+            task.timeout.setRepeats(false);
+            task.timeout.start();
+        }
+        if (running++ == 0) {
+            indicatorDelay.restart();
+        }
+        return task;
+    }
+
+    private void finished() {
+        if (--running == 0) {
+            indicatorDelay.stop();
+            indicator.setVisible(false);
+        }
+    }
+
+    final class Task {
+        private final Consumer<Exception> onError;
+        private Future<?> future;
+        private Timer timeout;
+        private boolean done;
+
+        private Task(Consumer<Exception> onError) {
+            this.onError = onError;
+        }
+
+        boolean isDone() {
+            return done;
+        }
+
+        // No callback follows; returns false if the task had already finished
+        boolean cancel() {
+            if (!finish()) {
+                return false;
+            }
+            future.cancel(true);
+            return true;
+        }
+
+        private void expire(long timeoutMillis) {
+            if (finish()) {
+                future.cancel(true);
+                onError.accept(new TimeoutException("Timed out after " + timeoutMillis + " ms"));
+            }
+        }
+
+        // Marks the task done the first time only
+        private boolean finish() {
+            if (done) {
+                return false;
+            }
+            done = true;
+            if (timeout != null) {
+                timeout.stop();
+            }
+            finished();
+            return true;
+        }
+    }
+}
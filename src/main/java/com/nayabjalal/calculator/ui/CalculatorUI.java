@@ -8,10 +8,13 @@ import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeoutException;
 
 import com.nayabjalal.calculator.config.AppConfig;
 import com.nayabjalal.calculator.exception.CalculatorException;
+import com.nayabjalal.calculator.expression.DecimalParser;
 import com.nayabjalal.calculator.history.CalculationHistory;
+import com.nayabjalal.calculator.jfr.ThemeChangeEvent;
 import com.nayabjalal.calculator.util.ExpressionEvaluator;
 import javax.swing.*;
 import java.awt.event.ActionEvent;
@@ -37,11 +40,16 @@ public class CalculatorUI {
     private static final int BUTTON_HEIGHT = 70;
     private static final int MARGIN_X = 20;
     private static final int MARGIN_Y = 60;
+    private static final long EVALUATION_TIMEOUT_MILLIS = 5000;
+    private static final long HISTORY_TIMEOUT_MILLIS = 5000;
 
     private final JFrame window;
     private JComboBox<String> comboCalculatorType;
     private JComboBox<String> comboTheme;
     private JTextField inputScreen;
+    private JTextField expressionEditor;
+    private JLabel expressionPreview;
+    private JProgressBar busyIndicator;
     private JButton btnC;
     private JButton btnBack;
     private JButton btnMod;
@@ -71,8 +79,14 @@ public class CalculatorUI {
     private double typedValue = 0;
 
     private final Map<String, Theme> themesMap;
+    // Evaluation and history work runs here so that the window stays responsive
+    private BackgroundCompute compute;
+    // One thread, so calculations reach the history in the order they were shown
+    private BackgroundCompute historyWrites;
+    private BackgroundCompute.Task evaluation;
 
     public CalculatorUI() {
+        EdtWatchdog.install();
         themesMap = ThemeLoader.loadThemes();
 
         window = new JFrame(APPLICATION_TITLE);
@@ -204,7 +218,7 @@ public class CalculatorUI {
         if (!InputValidator.isValidNumber(inputScreen.getText())) return;
 
         if (go) {
-            typedValue = calculate(typedValue, Double.parseDouble(inputScreen.getText()), selectedOperator);
+            typedValue = calculate(typedValue, DecimalParser.parseSigned(inputScreen.getText()), selectedOperator);
             inputScreen.setText(InputValidator.formatResult(typedValue));
             selectedOperator = operator;
             go = false;
@@ -236,6 +250,37 @@ public class CalculatorUI {
         inputScreen.setBackground(Color.WHITE);
         inputScreen.setFont(new Font(FONT_NAME, Font.PLAIN, 33));
         window.add(inputScreen);
+
+        // The Advanced editor takes the place of the screen while it is open
+        expressionEditor = new JTextField();
+        expressionEditor.setBounds(columns[0], rows[0], 350, 40);
+        expressionEditor.setFont(new Font(FONT_NAME, Font.PLAIN, 20));
+        expressionEditor.setToolTipText("Enter expression (e.g., 2+3*4, (5+3)/2); Enter to use, Esc to close");
+        expressionEditor.addActionListener(event -> commitAdvancedCalculation());
+        expressionEditor.getInputMap().put(KeyStroke.getKeyStroke(KeyEvent.VK_ESCAPE, 0), "closeEditor");
+        expressionEditor.getActionMap().put("closeEditor", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent event) {
+                closeExpressionEditor();
+            }
+        });
+        expressionEditor.setVisible(false);
+        window.add(expressionEditor);
+
+        expressionPreview = new JLabel();
+        expressionPreview.setBounds(columns[0], rows[0] + 40, 350, 30);
+        expressionPreview.setFont(new Font(FONT_NAME, Font.PLAIN, 16));
+        expressionPreview.setVisible(false);
+        window.add(expressionPreview);
+        new LivePreview(expressionEditor, expressionPreview);
+
+        busyIndicator = new JProgressBar();
+        busyIndicator.setIndeterminate(true);
+        busyIndicator.setBounds(columns[0], rows[0] + 76, 350, 8);
+        busyIndicator.setVisible(false);
+        window.add(busyIndicator);
+        compute = new BackgroundCompute(2, busyIndicator);
+        historyWrites = new BackgroundCompute(1, busyIndicator);
     }
 
     private void initCalculatorTypeSelector() {
@@ -262,21 +307,34 @@ public class CalculatorUI {
         });
     }
     private void showHistoryDialog() {
-        CalculationHistory history = CalculationHistory.getInstance();
-        List<CalculationHistory.CalculationEntry> recent = history.getRecentHistory(10);
+        // The first use of the history loads it from disk
+        compute.submit(() -> recentHistoryText(10), HISTORY_TIMEOUT_MILLIS, this::displayHistory,
+                e -> JOptionPane.showMessageDialog(window, "Could not load history: " + describeError(e),
+                        "History", JOptionPane.ERROR_MESSAGE));
+    }
 
+    // Empty when there is no history
+    private static String recentHistoryText(int count) {
+        List<CalculationHistory.CalculationEntry> recent = CalculationHistory.getInstance().getRecentHistory(count);
         if (recent.isEmpty()) {
-            JOptionPane.showMessageDialog(window, "No calculation history available.",
-                    "History", JOptionPane.INFORMATION_MESSAGE);
-            return;
+            return "";
         }
 
         StringBuilder historyText = new StringBuilder("Recent Calculations:\n\n");
         for (CalculationHistory.CalculationEntry entry : recent) {
             historyText.append(entry.toString()).append("\n");
         }
+        return historyText.toString();
+    }
+
+    private void displayHistory(String historyText) {
+        if (historyText.isEmpty()) {
+            JOptionPane.showMessageDialog(window, "No calculation history available.",
+                    "History", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
 
-        JTextArea textArea = new JTextArea(historyText.toString());
+        JTextArea textArea = new JTextArea(historyText);
         textArea.setEditable(false);
         textArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
 
@@ -288,31 +346,64 @@ public class CalculatorUI {
     }
 
     private void handleAdvancedCalculation() {
-        String expression = JOptionPane.showInputDialog(window,
-                "Enter expression (e.g., 2+3*4, (5+3)/2):",
-                "Advanced Calculator",
-                JOptionPane.QUESTION_MESSAGE);
+        if (expressionEditor.isVisible()) {
+            closeExpressionEditor();
+            return;
+        }
+        inputScreen.setVisible(false);
+        expressionEditor.setVisible(true);
+        expressionPreview.setVisible(true);
+        expressionEditor.requestFocusInWindow();
+    }
 
-        if (expression != null && !expression.trim().isEmpty()) {
-            try {
-                double result = ExpressionEvaluator.evaluateExpression(expression);
-                String resultStr = InputValidator.formatResult(result);
+    private void commitAdvancedCalculation() {
+        String expression = expressionEditor.getText();
+        if (expression.trim().isEmpty()) {
+            closeExpressionEditor();
+            return;
+        }
+        if (evaluation != null) {
+            evaluation.cancel();
+        }
+        // On failure the editor stays open so the expression can be fixed
+        evaluation = compute.submit(() -> ExpressionEvaluator.evaluateExpression(expression), EVALUATION_TIMEOUT_MILLIS,
+                result -> showAdvancedResult(expression, result),
+                e -> expressionPreview.setText(describeError(e)));
+    }
 
-                inputScreen.setText(resultStr);
-                CalculationHistory.getInstance().addCalculation(expression, resultStr);
+    private void showAdvancedResult(String expression, double result) {
+        String resultStr = InputValidator.formatResult(result);
 
-                // Reset calculator state
-                typedValue = result;
-                selectedOperator = '=';
-                addToDisplay = false;
+        inputScreen.setText(resultStr);
+        historyWrites.submit(() -> {
+            CalculationHistory.getInstance().addCalculation(expression, resultStr);
+            return null;
+        }, 0, ignored -> { }, e -> System.err.println("Failed to save calculation: " + describeError(e)));
 
-            } catch (CalculatorException e) {
-                JOptionPane.showMessageDialog(window,
-                        e.getLocalizedMessage(),
-                        "Calculation Error",
-                        JOptionPane.ERROR_MESSAGE);
-            }
+        // Reset calculator state
+        typedValue = result;
+        selectedOperator = '=';
+        addToDisplay = false;
+        closeExpressionEditor();
+    }
+
+    private static String describeError(Exception e) {
+        if (e instanceof TimeoutException) {
+            return "Calculation took too long";
         }
+        return e.getLocalizedMessage() != null ? e.getLocalizedMessage() : e.toString();
+    }
+
+    private void closeExpressionEditor() {
+        if (evaluation != null) {
+            evaluation.cancel();
+            evaluation = null;
+        }
+        expressionEditor.setText("");
+        expressionEditor.setVisible(false);
+        expressionPreview.setVisible(false);
+        inputScreen.setVisible(true);
+        window.requestFocus();
     }
 
     private void initButtons(int[] columns, int[] rows) {
@@ -401,7 +492,7 @@ public class CalculatorUI {
                 return;
 
             if (go) {
-                typedValue = calculate(typedValue, Double.parseDouble(inputScreen.getText()), selectedOperator);
+                typedValue = calculate(typedValue, DecimalParser.parseSigned(inputScreen.getText()), selectedOperator);
                 inputScreen.setText(InputValidator.formatResult(typedValue));
                 selectedOperator = '=';
                 addToDisplay = false;
@@ -415,7 +506,7 @@ public class CalculatorUI {
                 return;
 
             if (go) {
-                typedValue = Math.sqrt(Double.parseDouble(inputScreen.getText()));
+                typedValue = Math.sqrt(DecimalParser.parseSigned(inputScreen.getText()));
                 inputScreen.setText(InputValidator.formatResult(typedValue));
                 selectedOperator = '√';
                 addToDisplay = false;
@@ -434,7 +525,7 @@ public class CalculatorUI {
                 return;
 
             if (go) {
-                typedValue = Math.log(Double.parseDouble(inputScreen.getText()));
+                typedValue = Math.log(DecimalParser.parseSigned(inputScreen.getText()));
                 inputScreen.setText(InputValidator.formatResult(typedValue));
                 selectedOperator = 'l';
                 addToDisplay = false;
@@ -482,11 +573,15 @@ public class CalculatorUI {
     }
 
     private void applyTheme(Theme theme) {
+        ThemeChangeEvent event = new ThemeChangeEvent();
+        event.begin();
         window.getContentPane().setBackground(hex2Color(theme.getApplicationBackground()));
 
         comboCalculatorType.setForeground(hex2Color(theme.getTextColor()));
         comboTheme.setForeground(hex2Color(theme.getTextColor()));
         inputScreen.setForeground(hex2Color(theme.getTextColor()));
+        expressionEditor.setForeground(hex2Color(theme.getTextColor()));
+        expressionPreview.setForeground(hex2Color(theme.getTextColor()));
         btn0.setForeground(hex2Color(theme.getTextColor()));
         btn1.setForeground(hex2Color(theme.getTextColor()));
         btn2.setForeground(hex2Color(theme.getTextColor()));
@@ -513,6 +608,7 @@ public class CalculatorUI {
         comboCalculatorType.setBackground(hex2Color(theme.getApplicationBackground()));
         comboTheme.setBackground(hex2Color(theme.getApplicationBackground()));
         inputScreen.setBackground(hex2Color(theme.getApplicationBackground()));
+        expressionEditor.setBackground(hex2Color(theme.getApplicationBackground()));
         btn0.setBackground(hex2Color(theme.getNumbersBackground()));
         btn1.setBackground(hex2Color(theme.getNumbersBackground()));
         btn2.setBackground(hex2Color(theme.getNumbersBackground()));
@@ -535,5 +631,9 @@ public class CalculatorUI {
         btnLog.setBackground(hex2Color(theme.getOperatorBackground()));
         btnPower.setBackground(hex2Color(theme.getOperatorBackground()));
         btnEqual.setBackground(hex2Color(theme.getBtnEqualBackground()));
+        if (event.shouldCommit()) {
+            event.theme = theme.getName();
+            event.commit();
+        }
     }
 }
\ No newline at end of file
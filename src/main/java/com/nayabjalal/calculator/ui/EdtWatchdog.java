@@ -0,0 +1,115 @@
+package com.nayabjalal.calculator.ui;
+
+import java.awt.AWTEvent;
+import java.awt.EventQueue;
+import java.awt.Toolkit;
+
+// Event queue that logs every stretch of more than THRESHOLD_MILLIS the EDT spends dispatching
+// without coming back for the next event. Time a modal dialog's nested loop spends waiting does
+// not count against the event that opened it. A sampler thread prints the EDT's stack once for
+// a stall still going after STACK_TRACE_MILLIS, since a stall that never ends is never logged
+// otherwise.
+final class EdtWatchdog extends EventQueue {
+    static final long THRESHOLD_MILLIS = 16;
+    private static final long STACK_TRACE_MILLIS = 1000;
+
+    private static EdtWatchdog installed;
+
+    private final long thresholdNanos;
+    // Start of the current busy stretch, 0 while the EDT waits for events
+    private volatile long busySince;
+    private volatile Thread dispatchThread;
+    private volatile boolean traced;
+    private AWTEvent current; // EDT only
+    private volatile long stalls; // written on the EDT only
+
+    private EdtWatchdog(long thresholdMillis) {
+        this.thresholdNanos = thresholdMillis * 1_000_000;
+    }
+
+    static synchronized EdtWatchdog install() {
+        if (installed == null) {
+            installed = new EdtWatchdog(THRESHOLD_MILLIS);
+            Toolkit.getDefaultToolkit().getSystemEventQueue().push(installed);
+            Thread sampler = new Thread(installed::sample, "edt-watchdog");
+            sampler.setDaemon(true);
+            sampler.start();
+        }
+        return installed;
+    }
+
+    @Override
+    public AWTEvent getNextEvent() throws InterruptedException {
+        endBusy();
+        return super.getNextEvent();
+    }
+
+    @Override
+    protected void dispatchEvent(AWTEvent event) {
+        // A nested dispatch, from a modal loop, ends the stretch of the event around it
+        endBusy();
+        AWTEvent outer = current;
+        current = event;
+        dispatchThread = Thread.currentThread();
+        startBusy();
+        try {
+            super.dispatchEvent(event);
+        } finally {
+            endBusy();
+            current = outer;
+            if (outer != null) {
+                startBusy();
+            }
+        }
+    }
+
+    long getStallCount() {
+        return stalls;
+    }
+
+    private void startBusy() {
+        traced = false;
+        busySince = System.nanoTime();
+    }
+
+    private void endBusy() {
+        long since = busySince;
+        if (since == 0) {
+            return;
+        }
+        busySince = 0;
+        long elapsed = System.nanoTime() - since;
+        if (elapsed > thresholdNanos) {
+            stalls++;
+            System.err.println("EDT blocked for " + elapsed / 1_000_000 + " ms by " + describe(current));
+        }
+    }
+
+    private static String describe(AWTEvent event) {
+        if (event == null) {
+            return "unknown event";
+        }
+        return event.getClass().getSimpleName() + " on " + event.getSource().getClass().getSimpleName();
+    }
+
+    private void sample() {
+        long stackTraceNanos = STACK_TRACE_MILLIS * 1_000_000;
+        while (true) {
+            try {
+                Thread.sleep(THRESHOLD_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            long since = busySince;
+            Thread thread = dispatchThread;
+            if (since != 0 && !traced && thread != null && System.nanoTime() - since > stackTraceNanos) {
+                traced = true;
+                StringBuilder trace = new StringBuilder("EDT blocked for over " + STACK_TRACE_MILLIS + " ms at:");
+                for (StackTraceElement element : thread.getStackTrace()) {
+                    trace.append("\n\tat ").append(element);
+                }
+                System.err.println(trace);
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.nayabjalal.calculator.ui;
+
+import com.nayabjalal.calculator.config.AppConfig;
+import com.nayabjalal.calculator.config.ConfigSnapshot;
+import com.nayabjalal.calculator.expression.EvaluationError;
+import com.nayabjalal.calculator.expression.EvaluationResult;
+import com.nayabjalal.calculator.expression.IncrementalExpression;
+import com.nayabjalal.calculator.util.InputValidator;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.swing.JLabel;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.JTextComponent;
+
+// Shows the value of the expression in an editor while it is typed. Document edits are queued
+// on the EDT and, once typing pauses, applied on a worker thread that owns the
+// IncrementalExpression, so a keystroke only re-parses what it touched. Results come back
+// through invokeLater and are dropped when newer edits have been sent since.
+final class LivePreview {
+    private static final int DEBOUNCE_MILLIS = 60;
+
+    private final JLabel preview;
+    private final Timer debounce;
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "live-preview");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final IncrementalExpression expression; // worker thread only
+    private final List<Edit> pending = new ArrayList<>(); // EDT only
+    private int generation; // EDT only
+
+    // Precision settings and limits are read once; the preview follows the config as it was on creation
+    LivePreview(JTextComponent editor, JLabel preview) {
+        this.preview = preview;
+        ConfigSnapshot config = AppConfig.getInstance().snapshot();
+        expression = new IncrementalExpression(config.isAdaptivePrecision(), config.getDisplayDigits(),
+                config.getEvaluationLimits());
+        debounce = new Timer(DEBOUNCE_MILLIS, event -> flush());
+        debounce.setRepeats(false);
+        editor.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent event) {
+                queue(new Edit(event.getOffset(), 0, inserted(event)));
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent event) {
+                queue(new Edit(event.getOffset(), event.getLength(), ""));
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent event) {
+                // Attribute changes only
+            }
+        });
+    }
+
+    private static String inserted(DocumentEvent event) {
+        Document document = event.getDocument();
+        try {
+            return document.getText(event.getOffset(), event.getLength());
+        } catch (BadLocationException e) {
+            throw new IllegalStateException("Edit outside the document", e);
+        }
+    }
+
+    private void queue(Edit edit) {
+        pending.add(edit);
+        debounce.restart();
+    }
+
+    private void flush() {
+        Edit[] edits = pending.toArray(new Edit[0]);
+        pending.clear();
+        int current = ++generation;
+        worker.execute(() -> {
+            for (Edit edit : edits) {
+                expression.replace(edit.offset, edit.length, edit.text);
+            }
+            String shown = describe(expression.evaluate());
+            SwingUtilities.invokeLater(() -> {
+                if (current == generation) {
+                    preview.setText(shown);
+                }
+            });
+        });
+    }
+
+    private static String describe(EvaluationResult result) {
+        if (result.isSuccess()) {
+            return "= " + InputValidator.formatResult(result.getValue());
+        }
+        return result.getError() == EvaluationError.EMPTY ? "" : result.getMessage();
+    }
+
+    private static final class Edit {
+        final int offset;
+        final int length;
+        final String text;
+
+        Edit(int offset, int length, String text) {
+            this.offset = offset;
+            this.length = length;
+            this.text = text;
+        }
+    }
+}
@@ -1,22 +1,58 @@
 package com.nayabjalal.calculator.util;
 
+import com.nayabjalal.calculator.config.AppConfig;
+import com.nayabjalal.calculator.config.ConfigSnapshot;
 import com.nayabjalal.calculator.exception.CalculatorException;
-import java.util.Stack;
-import java.util.StringTokenizer;
+import com.nayabjalal.calculator.expression.AdaptiveEvaluator;
+import com.nayabjalal.calculator.expression.CompiledExpression;
+import com.nayabjalal.calculator.expression.DecimalParser;
+import com.nayabjalal.calculator.expression.EvaluationError;
+import com.nayabjalal.calculator.expression.EvaluationLimits;
+import com.nayabjalal.calculator.expression.EvaluationResult;
+import com.nayabjalal.calculator.expression.EvaluationStack;
+import com.nayabjalal.calculator.expression.ExpressionCache;
+import com.nayabjalal.calculator.jfr.EvaluationEvent;
+import com.nayabjalal.calculator.metrics.Metrics;
 
 public class ExpressionEvaluator {
 
+    private static final ExpressionCache CACHE = new ExpressionCache(cacheSize());
+
+    static {
+        Metrics.gauge("expression.cache.hits", CACHE::getHitCount);
+        Metrics.gauge("expression.cache.misses", CACHE::getMissCount);
+        Metrics.gauge("expression.cache.evictions", CACHE::getEvictionCount);
+    }
+
     public static double evaluateExpression(String expression) throws CalculatorException {
         if (expression == null || expression.trim().isEmpty()) {
+            Metrics.error(CalculatorException.ErrorType.INVALID_INPUT);
             throw new CalculatorException(
                     CalculatorException.ErrorType.INVALID_INPUT,
                     "Expression cannot be empty"
             );
         }
 
+        ConfigSnapshot config = AppConfig.getInstance().snapshot();
+        String evaluator = config.isAdaptivePrecision() ? "adaptive" : "compiled";
+        EvaluationEvent event = EvaluationEvent.start();
+        long start = Metrics.start();
         try {
-            return evaluate(expression.replaceAll("\\s+", ""));
+            CompiledExpression program = CACHE.get(expression);
+            double value = config.isAdaptivePrecision()
+                    ? AdaptiveEvaluator.evaluate(program, config.getDisplayDigits(), config.getEvaluationLimits())
+                    : program.evaluate();
+            Metrics.recordSince(Metrics.EVALUATE, start);
+            EvaluationEvent.finish(event, evaluator, expression.length(), EvaluationEvent.SUCCESS);
+            return value;
+        } catch (CalculatorException e) {
+            Metrics.error(e.getErrorType());
+            EvaluationEvent.finish(event, evaluator, expression.length(), e.getErrorType().name());
+            throw e;
         } catch (Exception e) {
+            Metrics.error(CalculatorException.ErrorType.EXPRESSION_PARSE_ERROR);
+            EvaluationEvent.finish(event, evaluator, expression.length(),
+                    CalculatorException.ErrorType.EXPRESSION_PARSE_ERROR.name());
             throw new CalculatorException(
                     CalculatorException.ErrorType.EXPRESSION_PARSE_ERROR,
                     "Failed to parse expression: " + expression,
@@ -25,70 +61,196 @@ public class ExpressionEvaluator {
         }
     }
 
-    private static double evaluate(String expression) throws CalculatorException {
-        Stack<Double> numbers = new Stack<>();
-        Stack<Character> operators = new Stack<>();
+    // Single pass over the raw input with primitive per-thread stacks; skips whitespace inline
+    // and allocates nothing unless the expression is invalid. Bounded by the configured
+    // EvaluationLimits.
+    public static double evaluate(CharSequence expression) throws CalculatorException {
+        EvaluationStack stack = EvaluationStack.forCurrentThread();
+        if (interpret(expression, stack, limits())) {
+            return stack.popOperand();
+        }
+        throw stack.getError().exception(stack.getErrorPosition(), stack.getErrorSymbol());
+    }
+
+    // Non-throwing variant for high-volume callers: a failure costs the same as a success
+    public static EvaluationResult tryEvaluate(CharSequence expression) {
+        return tryEvaluate(expression, limits());
+    }
+
+    public static EvaluationResult tryEvaluate(CharSequence expression, EvaluationLimits limits) {
+        if (expression == null) {
+            return EvaluationResult.failure(EvaluationError.EMPTY, -1, '\0');
+        }
+        EvaluationStack stack = EvaluationStack.forCurrentThread();
+        if (interpret(expression, stack, limits)) {
+            return EvaluationResult.success(stack.popOperand());
+        }
+        return EvaluationResult.failure(stack.getError(), stack.getErrorPosition(), stack.getErrorSymbol());
+    }
+
+    private static boolean interpret(CharSequence expression, EvaluationStack stack, EvaluationLimits limits) {
+        EvaluationEvent event = EvaluationEvent.start();
+        long start = Metrics.start();
+        boolean success = run(expression, stack, limits);
+        Metrics.recordSince(Metrics.INTERPRET, start);
+        if (success) {
+            EvaluationEvent.finish(event, "interpreter", expression.length(), EvaluationEvent.SUCCESS);
+        } else {
+            Metrics.error(stack.getError().getErrorType());
+            EvaluationEvent.finish(event, "interpreter", expression.length(), stack.getError().getErrorType().name());
+        }
+        return success;
+    }
+
+    // Leaves the value on the stack and returns true, or records the error and returns false
+    private static boolean run(CharSequence expression, EvaluationStack stack, EvaluationLimits limits) {
+        int length = expression.length();
+        if (length > limits.getMaxLength()) {
+            return stack.fail(EvaluationError.INPUT_TOO_LONG, limits.getMaxLength(), '\0');
+        }
+        int tokens = 0;
+        int operations = 0;
+        int depth = 0;
+        long clock = limits.startClock();
 
-        for (int i = 0; i < expression.length(); i++) {
+        for (int i = 0; i < length; i++) {
             char c = expression.charAt(i);
 
-            if (Character.isDigit(c) || c == '.') {
-                StringBuilder number = new StringBuilder();
-                while (i < expression.length() &&
-                        (Character.isDigit(expression.charAt(i)) || expression.charAt(i) == '.')) {
-                    number.append(expression.charAt(i++));
+            if (DecimalParser.isWhitespace(c)) {
+                continue;
+            }
+            if (++tokens > limits.getMaxTokens()) {
+                return stack.fail(EvaluationError.TOO_MANY_TOKENS, i, c);
+            }
+            if (limits.isPastDeadline(tokens, clock)) {
+                return stack.fail(EvaluationError.DEADLINE_EXCEEDED, i, c);
+            }
+            if (DecimalParser.isDigit(c) || c == '.') {
+                int end = DecimalParser.scanNumber(expression, i, length);
+                double value = DecimalParser.parseOrNaN(expression, i, end);
+                if (Double.isNaN(value)) {
+                    return stack.fail(EvaluationError.INVALID_NUMBER, i, c);
                 }
-                i--; // Back up one
-                numbers.push(Double.parseDouble(number.toString()));
+                stack.pushOperand(value);
+                i = end - 1;
             }
             else if (c == '(') {
-                operators.push(c);
+                if (++depth > limits.getMaxDepth()) {
+                    return stack.fail(EvaluationError.NESTING_TOO_DEEP, i, c);
+                }
+                stack.pushOperator(c, i);
             }
             else if (c == ')') {
-                while (operators.peek() != '(') {
-                    numbers.push(applyOperation(operators.pop(), numbers.pop(), numbers.pop()));
+                while (stack.hasOperators() && stack.peekOperator() != '(') {
+                    if (!applyTop(stack, i)) {
+                        return false;
+                    }
                 }
-                operators.pop(); // Remove '('
+                if (!stack.hasOperators()) {
+                    return stack.fail(EvaluationError.UNMATCHED_CLOSE, i, c);
+                }
+                stack.popOperator(); // Remove '('
+                depth--;
             }
             else if (isOperator(c)) {
-                while (!operators.empty() && hasPrecedence(c, operators.peek())) {
-                    numbers.push(applyOperation(operators.pop(), numbers.pop(), numbers.pop()));
+                // Each operator is applied at most once
+                if (++operations > limits.getMaxOperations()) {
+                    return stack.fail(EvaluationError.OPERATION_LIMIT_EXCEEDED, i, c);
+                }
+                while (stack.hasOperators() && hasPrecedence(c, stack.peekOperator())) {
+                    if (!applyTop(stack, i)) {
+                        return false;
+                    }
                 }
-                operators.push(c);
+                stack.pushOperator(c, i);
+            }
+            else {
+                return stack.fail(EvaluationError.UNEXPECTED_CHARACTER, i, c);
             }
         }
 
-        while (!operators.empty()) {
-            numbers.push(applyOperation(operators.pop(), numbers.pop(), numbers.pop()));
+        while (stack.hasOperators()) {
+            if (stack.peekOperator() == '(') {
+                return stack.fail(EvaluationError.UNMATCHED_OPEN, stack.peekOperatorPosition(), '(');
+            }
+            if (!applyTop(stack, length)) {
+                return false;
+            }
         }
 
-        return numbers.pop();
+        if (stack.operandCount() == 0) {
+            return stack.fail(EvaluationError.EMPTY, -1, '\0');
+        }
+        if (stack.operandCount() != 1) {
+            return stack.fail(EvaluationError.MALFORMED, -1, '\0');
+        }
+        return true;
+    }
+
+    private static boolean applyTop(EvaluationStack stack, int position) {
+        int operatorPosition = stack.peekOperatorPosition();
+        char op = stack.popOperator();
+        if (stack.operandCount() < 2) {
+            return stack.fail(EvaluationError.MISSING_OPERAND, position, op);
+        }
+        double b = stack.popOperand();
+        double a = stack.popOperand();
+        switch (op) {
+            case '+': stack.pushOperand(a + b); break;
+            case '-': stack.pushOperand(a - b); break;
+            case '*': stack.pushOperand(a * b); break;
+            case '/':
+                if (b == 0) {
+                    return stack.fail(EvaluationError.DIVISION_BY_ZERO, operatorPosition, op);
+                }
+                stack.pushOperand(a / b);
+                break;
+            case '%': stack.pushOperand(a % b); break;
+            default: stack.pushOperand(Math.pow(a, b)); break; // '^'
+        }
+        return true;
+    }
+
+    public static ExpressionCache getCache() {
+        return CACHE;
     }
 
-    private static boolean isOperator(char c) {
+    private static EvaluationLimits limits() {
+        return AppConfig.getInstance().snapshot().getEvaluationLimits();
+    }
+
+    private static int cacheSize() {
+        return AppConfig.getInstance().snapshot().getExpressionCacheSize();
+    }
+
+    public static boolean isOperator(char c) {
         return c == '+' || c == '-' || c == '*' || c == '/' || c == '%' || c == '^';
     }
 
-    private static boolean hasPrecedence(char op1, char op2) {
+    public static boolean hasPrecedence(char op1, char op2) {
         if (op2 == '(' || op2 == ')') return false;
         if ((op1 == '*' || op1 == '/' || op1 == '%') && (op2 == '+' || op2 == '-')) return false;
         if (op1 == '^' && (op2 == '+' || op2 == '-' || op2 == '*' || op2 == '/' || op2 == '%')) return false;
         return true;
     }
 
-    private static double applyOperation(char op, double b, double a) throws CalculatorException {
+    // Also called directly by bytecode-compiled formulas
+    public static double divide(double a, double b) throws CalculatorException {
+        if (b == 0) {
+            throw new CalculatorException(
+                    CalculatorException.ErrorType.DIVISION_BY_ZERO,
+                    "Cannot divide by zero"
+            );
+        }
+        return a / b;
+    }
+
+    public static double applyOperation(char op, double b, double a) throws CalculatorException {
         switch (op) {
             case '+': return a + b;
             case '-': return a - b;
             case '*': return a * b;
-            case '/':
-                if (b == 0) {
-                    throw new CalculatorException(
-                            CalculatorException.ErrorType.DIVISION_BY_ZERO,
-                            "Cannot divide by zero"
-                    );
-                }
-                return a / b;
+            case '/': return divide(a, b);
             case '%': return a % b;
             case '^': return Math.pow(a, b);
             default:
@@ -98,4 +260,4 @@ public class ExpressionEvaluator {
                 );
         }
     }
-}
\ No newline at end of file
+}
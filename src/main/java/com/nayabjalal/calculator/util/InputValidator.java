@@ -1,41 +1,272 @@
 package com.nayabjalal.calculator.util;
 
-import java.util.regex.Pattern;
-
 public class InputValidator {
 
-    private static final String NUMBER_REGEX = "-?\\d+(\\.\\d+)?";
-    private static final String ZERO_PATTERN = "0+(\\.0+)?";
-    private static final String INTEGER_REGEX = "-?\\d+";
+    // Longest formatResult output: "-2.2250738585072014E-308"
+    public static final int MAX_RESULT_LENGTH = 24;
+
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final long MIN_15_DIGITS = 100_000_000_000_000L;
+    private static final long MAX_15_DIGITS = 999_999_999_999_999L;
+    private static final ThreadLocal<char[]> SCRATCH = ThreadLocal.withInitial(() -> new char[MAX_RESULT_LENGTH]);
 
     private InputValidator() {
         throw new AssertionError("Utility class - constructor not allowed");
     }
 
+    // The validators accept exactly what the regular expressions they replace accepted, after
+    // String.trim(): -?\d+(\.\d+)? , 0+(\.0+)? and -?\d+ with ASCII digits
+
     public static boolean isValidNumber(String input) {
-        if (input == null || input.trim().isEmpty()) {
+        if (input == null) {
             return false;
         }
-        return Pattern.matches(NUMBER_REGEX, input.trim());
+        int start = trimStart(input);
+        int end = trimEnd(input, start);
+        if (start < end && input.charAt(start) == '-') {
+            start++;
+        }
+        int point = skipDigits(input, start, end);
+        if (point == start) {
+            return false;
+        }
+        return point == end || (input.charAt(point) == '.' && point + 1 < end && skipDigits(input, point + 1, end) == end);
     }
 
     public static boolean isZeroOnly(String input) {
-        return input != null && Pattern.matches(ZERO_PATTERN, input.trim());
+        if (input == null) {
+            return false;
+        }
+        int start = trimStart(input);
+        int end = trimEnd(input, start);
+        int point = skipZeros(input, start, end);
+        if (point == start) {
+            return false;
+        }
+        return point == end || (input.charAt(point) == '.' && point + 1 < end && skipZeros(input, point + 1, end) == end);
     }
 
     public static boolean isInteger(String input) {
-        return input != null && Pattern.matches(INTEGER_REGEX, input.trim());
+        if (input == null) {
+            return false;
+        }
+        int start = trimStart(input);
+        int end = trimEnd(input, start);
+        if (start < end && input.charAt(start) == '-') {
+            start++;
+        }
+        return start < end && skipDigits(input, start, end) == end;
+    }
+
+    private static int trimStart(String input) {
+        int start = 0;
+        while (start < input.length() && input.charAt(start) <= ' ') {
+            start++;
+        }
+        return start;
+    }
+
+    private static int trimEnd(String input, int start) {
+        int end = input.length();
+        while (end > start && input.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return end;
+    }
+
+    private static int skipDigits(String input, int from, int end) {
+        while (from < end && input.charAt(from) >= '0' && input.charAt(from) <= '9') {
+            from++;
+        }
+        return from;
+    }
+
+    private static int skipZeros(String input, int from, int end) {
+        while (from < end && input.charAt(from) == '0') {
+            from++;
+        }
+        return from;
     }
 
     public static String formatResult(double result) {
+        char[] scratch = SCRATCH.get();
+        return new String(scratch, 0, formatResult(result, scratch, 0));
+    }
+
+    public static void formatResult(double result, StringBuilder out) {
+        char[] scratch = SCRATCH.get();
+        out.append(scratch, 0, formatResult(result, scratch, 0));
+    }
+
+    // Writes the same text as formatResult(double) at buffer[offset] and returns its length;
+    // needs MAX_RESULT_LENGTH free chars. Whole numbers print as longs, anything else as
+    // Double.toString would print it.
+    public static int formatResult(double result, char[] buffer, int offset) {
         if (Double.isNaN(result) || Double.isInfinite(result)) {
-            return "Error";
+            "Error".getChars(0, 5, buffer, offset);
+            return 5;
         }
 
         // Check if it's a whole number
         if (result == (long) result) {
-            return String.valueOf((long) result);
+            return writeLong((long) result, buffer, offset);
+        }
+        int length = writeShortDecimal(result, buffer, offset);
+        if (length < 0) {
+            String text = Double.toString(result);
+            text.getChars(0, text.length(), buffer, offset);
+            length = text.length();
+        }
+        return length;
+    }
+
+    private static int writeLong(long value, char[] buffer, int offset) {
+        if (value == Long.MIN_VALUE) {
+            "-9223372036854775808".getChars(0, 20, buffer, offset);
+            return 20;
+        }
+        int position = offset;
+        if (value < 0) {
+            buffer[position++] = '-';
+            value = -value;
+        }
+        int digits = digitCount(value);
+        for (int i = position + digits - 1; i >= position; i--) {
+            buffer[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return position + digits - offset;
+    }
+
+    // Doubles whose shortest decimal has at most 15 significant digits, the usual calculator
+    // result, are formatted from integer digits. Any two 15-digit decimals are several ulps
+    // apart, so the 15-digit decimal that converts back to the double is unique, and stripping
+    // its trailing zeros gives the shortest form, which is also what Double.toString prints for
+    // such values. Returns -1 for everything else, including magnitudes of 2^63 and up: those are
+    // all integers, and before JDK 19 Double.toString prints some of them with an extra digit
+    // (9.999999999999999E22 for 1e23).
+    private static int writeShortDecimal(double value, char[] buffer, int offset) {
+        double magnitude = Math.abs(value);
+        if (magnitude >= 0x1p63) {
+            return -1;
+        }
+        // floor(log10) from the binary exponent; it can be one low, which the digit count corrects
+        int exponent = (int) Math.floor(Math.getExponent(magnitude) * 0.30102999566398120);
+        long digits = scaledDigits(magnitude, exponent);
+        if (digits > MAX_15_DIGITS) {
+            digits = scaledDigits(magnitude, ++exponent);
+        } else if (digits < MIN_15_DIGITS) {
+            digits = scaledDigits(magnitude, --exponent);
+        }
+        if (digits < MIN_15_DIGITS || digits > MAX_15_DIGITS) {
+            return -1;
+        }
+
+        int count = 15;
+        while (digits % 10 == 0) {
+            digits /= 10;
+            count--;
+        }
+
+        int position = offset;
+        if (value < 0) {
+            buffer[position++] = '-';
+        }
+        if (exponent >= -3 && exponent < 7) {
+            position = writePlain(digits, count, exponent, buffer, position);
+        } else {
+            position = writeScientific(digits, count, exponent, buffer, position);
+        }
+        return position - offset;
+    }
+
+    // The 15 significant digits of magnitude, assuming its leading digit is at 10^exponent, or
+    // -1 if no 15-digit decimal converts back to exactly magnitude
+    private static long scaledDigits(double magnitude, int exponent) {
+        int scale = 14 - exponent;
+        if (scale > 22 || scale < -22) {
+            return -1;
+        }
+        long candidate = Math.round(scale >= 0 ? magnitude * POWERS_OF_TEN[scale] : magnitude / POWERS_OF_TEN[-scale]);
+        // The scaling above can round; the exact decimal is at most one step away
+        for (long digits = candidate - 1; digits <= candidate + 1; digits++) {
+            double back = scale >= 0 ? digits / POWERS_OF_TEN[scale] : digits * POWERS_OF_TEN[-scale];
+            if (back == magnitude) {
+                return digits;
+            }
+        }
+        return -1;
+    }
+
+    // d.ddd for 10^-3 <= |value| < 10^7, with at least one digit after the point
+    private static int writePlain(long digits, int count, int exponent, char[] buffer, int position) {
+        int start = position;
+        if (exponent < 0) {
+            buffer[position++] = '0';
+            buffer[position++] = '.';
+            for (int i = -1; i > exponent; i--) {
+                buffer[position++] = '0';
+            }
+            writeDigits(digits, count, buffer, position);
+            return position + count;
+        }
+        int integerDigits = exponent + 1;
+        if (count <= integerDigits) {
+            writeDigits(digits, count, buffer, position);
+            position += count;
+            for (int i = count; i < integerDigits; i++) {
+                buffer[position++] = '0';
+            }
+            buffer[position++] = '.';
+            buffer[position++] = '0';
+            return position;
+        }
+        writeDigits(digits, count, buffer, position + 1);
+        System.arraycopy(buffer, position + 1, buffer, position, integerDigits);
+        buffer[position + integerDigits] = '.';
+        return start + count + 1;
+    }
+
+    // d.dddE[-]n
+    private static int writeScientific(long digits, int count, int exponent, char[] buffer, int position) {
+        writeDigits(digits, count, buffer, position + 1);
+        buffer[position] = buffer[position + 1];
+        buffer[position + 1] = '.';
+        position += count + 1;
+        if (count == 1) {
+            buffer[position++] = '0';
+        }
+        buffer[position++] = 'E';
+        if (exponent < 0) {
+            buffer[position++] = '-';
+            exponent = -exponent;
+        }
+        if (exponent >= 100) {
+            buffer[position++] = (char) ('0' + exponent / 100);
+        }
+        if (exponent >= 10) {
+            buffer[position++] = (char) ('0' + exponent / 10 % 10);
+        }
+        buffer[position++] = (char) ('0' + exponent % 10);
+        return position;
+    }
+
+    private static void writeDigits(long digits, int count, char[] buffer, int position) {
+        for (int i = position + count - 1; i >= position; i--) {
+            buffer[i] = (char) ('0' + digits % 10);
+            digits /= 10;
+        }
+    }
+
+    private static int digitCount(long value) {
+        int count = 1;
+        while (value >= 10) {
+            value /= 10;
+            count++;
         }
-        return String.valueOf(result);
+        return count;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,27 @@
+package com.nayabjalal.calculator.util;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class VirtualThreads {
+
+    private VirtualThreads() {
+        throw new AssertionError("Constructor is not allowed");
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor exists from Java 21 on; older runtimes get a
+    // fixed pool of daemon platform threads instead
+    public static ExecutorService newPerTaskExecutor(int fallbackThreads, String name) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger counter = new AtomicInteger();
+            return Executors.newFixedThreadPool(fallbackThreads, runnable -> {
+                Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
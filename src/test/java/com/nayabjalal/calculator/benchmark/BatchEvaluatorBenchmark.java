@@ -0,0 +1,57 @@
+package com.nayabjalal.calculator.benchmark;
+
+import com.nayabjalal.calculator.expression.BatchEvaluator;
+import com.nayabjalal.calculator.expression.EvaluationResult;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// One batch of 10000 expressions per operation, for each mode and pool size. Scaling only shows
+// up to the number of cores the run actually has.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BatchEvaluatorBenchmark {
+
+    @Param({"FORK_JOIN", "VIRTUAL_THREADS"})
+    public BatchEvaluator.Mode mode;
+
+    @Param({"1", "2", "4", "8"})
+    public int parallelism;
+
+    private final List<String> expressions = new ArrayList<>();
+    private BatchEvaluator evaluator;
+
+    @Setup
+    public void setUp() {
+        for (int i = 0; i < 10_000; i++) {
+            expressions.add("(" + i + " + 3.5) * 2 - " + (i % 17) + " / 4");
+        }
+        evaluator = new BatchEvaluator(mode, parallelism);
+    }
+
+    @TearDown
+    public void tearDown() {
+        evaluator.close();
+    }
+
+    @Benchmark
+    public List<EvaluationResult> evaluate() {
+        return evaluator.evaluate(expressions);
+    }
+}
@@ -0,0 +1,48 @@
+package com.nayabjalal.calculator.benchmark;
+
+import com.nayabjalal.calculator.config.AppConfig;
+import com.nayabjalal.calculator.util.ColorUtil;
+import java.awt.Color;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// The lookups behind building and theming the UI. Uses the application's own config file,
+// which is created with the defaults if missing.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ConfigBenchmark {
+
+    public String hex = "1E90FF";
+
+    private final AppConfig config = AppConfig.getInstance();
+
+    // Separate state so that hex2Color does not run once per path
+    @State(Scope.Thread)
+    public static class Lookup {
+        @Param({"calculator.maxHistorySize", "errors.divisionByZero"})
+        public String path;
+    }
+
+    @Benchmark
+    public Object get(Lookup lookup) {
+        return config.get(lookup.path);
+    }
+
+    @Benchmark
+    public Color hex2Color() {
+        return ColorUtil.hex2Color(hex);
+    }
+}
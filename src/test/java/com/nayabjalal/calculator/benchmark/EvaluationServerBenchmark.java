@@ -0,0 +1,73 @@
+package com.nayabjalal.calculator.benchmark;
+
+import com.nayabjalal.calculator.server.EvaluationServer;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Load on the HTTP sidecar. Each JMH thread is one client on its own persistent connection,
+// posting one expression per request. Throughput is requests per second over all clients;
+// SampleTime gives the latency distribution, including p0.50 and p0.99.
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class EvaluationServerBenchmark {
+
+    private EvaluationServer server;
+    private URI evaluate;
+
+    @Setup
+    public void setUp() throws IOException {
+        server = new EvaluationServer(0, 1024, false);
+        server.start();
+        evaluate = URI.create("http://localhost:" + server.getPort() + "/evaluate");
+    }
+
+    @TearDown
+    public void tearDown() {
+        server.close();
+    }
+
+    @State(Scope.Thread)
+    public static class Client {
+        private HttpClient http;
+        private int next;
+
+        @Setup
+        public void setUp() {
+            http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        }
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public String evaluate(Client client) throws IOException, InterruptedException {
+        int i = client.next++;
+        HttpRequest request = HttpRequest.newBuilder(evaluate)
+                .POST(HttpRequest.BodyPublishers.ofString("(" + i + " + 1) * 2"))
+                .build();
+        HttpResponse<String> response = client.http.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("HTTP " + response.statusCode() + ": " + response.body());
+        }
+        return response.body();
+    }
+}
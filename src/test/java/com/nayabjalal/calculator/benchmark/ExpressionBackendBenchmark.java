@@ -0,0 +1,54 @@
+package com.nayabjalal.calculator.benchmark;
+
+import com.nayabjalal.calculator.exception.CalculatorException;
+import com.nayabjalal.calculator.expression.CompiledExpression;
+import com.nayabjalal.calculator.expression.ExpressionCompiler;
+import com.nayabjalal.calculator.expression.ExpressionCompiler.Backend;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// mvn test-compile, then: java -cp target/test-classes:target/classes:<test classpath> org.openjdk.jmh.Main ExpressionBackend
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ExpressionBackendBenchmark {
+
+    @Param({"x*2+y^2", "((x+1)*(y-2)/(x+3)+y%7)*x-y/(x+4)*(y+x*x-3.5)"})
+    public String expression;
+
+    private CompiledExpression interpreted;
+    private CompiledExpression bytecode;
+    private final double[] values = {3.25, 7.5};
+
+    @Setup
+    public void setUp() throws CalculatorException {
+        interpreted = ExpressionCompiler.compile(expression, Backend.INTERPRETER, "x", "y");
+        bytecode = ExpressionCompiler.compile(expression, Backend.BYTECODE, "x", "y");
+        if (!bytecode.isBytecodeCompiled()) {
+            throw new IllegalStateException("Bytecode backend fell back to the interpreter");
+        }
+    }
+
+    @Benchmark
+    public double interpreter() throws CalculatorException {
+        return interpreted.evaluate(values);
+    }
+
+    @Benchmark
+    public double bytecode() throws CalculatorException {
+        return bytecode.evaluate(values);
+    }
+}
@@ -0,0 +1,54 @@
+package com.nayabjalal.calculator.benchmark;
+
+import com.nayabjalal.calculator.exception.CalculatorException;
+import com.nayabjalal.calculator.expression.EvaluationResult;
+import com.nayabjalal.calculator.util.ExpressionEvaluator;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// evaluateExpression is what the UI calls: a cache lookup, then the compiled program.
+// tryEvaluate is the single pass over the text used by the server and the live preview.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ExpressionEvaluatorBenchmark {
+
+    // Number of "+ (i * 2.5 - 1)" terms
+    @Param({"1", "10", "100", "1000"})
+    public int terms;
+
+    private String expression;
+
+    @Setup
+    public void setUp() throws CalculatorException {
+        StringBuilder text = new StringBuilder("0");
+        for (int i = 1; i <= terms; i++) {
+            text.append(" + (").append(i).append(" * 2.5 - 1)");
+        }
+        expression = text.toString();
+        ExpressionEvaluator.evaluateExpression(expression);
+    }
+
+    @Benchmark
+    public double evaluateExpression() throws CalculatorException {
+        return ExpressionEvaluator.evaluateExpression(expression);
+    }
+
+    @Benchmark
+    public EvaluationResult tryEvaluate() {
+        return ExpressionEvaluator.tryEvaluate(expression);
+    }
+}
@@ -0,0 +1,64 @@
+package com.nayabjalal.calculator.benchmark;
+
+import com.nayabjalal.calculator.util.InputValidator;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class InputValidatorBenchmark {
+
+    // Display text as typed, and as formatResult would print it
+    @Param({"42", "-1234.5678", "0.000", "3.3333333333333335"})
+    public String input;
+
+    private double value;
+    private final StringBuilder out = new StringBuilder(InputValidator.MAX_RESULT_LENGTH);
+
+    @Setup
+    public void setUp() {
+        value = Double.parseDouble(input);
+    }
+
+    @Benchmark
+    public boolean isValidNumber() {
+        return InputValidator.isValidNumber(input);
+    }
+
+    @Benchmark
+    public boolean isZeroOnly() {
+        return InputValidator.isZeroOnly(input);
+    }
+
+    @Benchmark
+    public boolean isInteger() {
+        return InputValidator.isInteger(input);
+    }
+
+    @Benchmark
+    public String formatResult() {
+        return InputValidator.formatResult(value);
+    }
+
+    // The allocation-free variant
+    @Benchmark
+    public int formatResultInto() {
+        out.setLength(0);
+        InputValidator.formatResult(value, out);
+        return out.length();
+    }
+}
@@ -0,0 +1,86 @@
+package com.nayabjalal.calculator.cli;
+
+import com.nayabjalal.calculator.config.AppConfig;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class HeadlessCalculatorTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void writesOneResultPerInputLine() throws IOException {
+        assertEquals(Arrays.asList("3", "Error", "5", "3.5", "Error", "10"),
+                process("1+2\n1/0\n2.5*2\n7/2\nabc\n10"));
+    }
+
+    @Test
+    void keepsBlankLinesAligned() throws IOException {
+        assertEquals(Arrays.asList("3", "", "", "4", ""), process("1+2\n\n  \t\n2*2\n\n"));
+    }
+
+    @Test
+    void acceptsWindowsLineEndings() throws IOException {
+        assertEquals(Arrays.asList("3", "", "6"), process("1+2\r\n\r\n2*3\r\n"));
+    }
+
+    @Test
+    void answersOverLongLinesWithErrorAndCarriesOn() throws IOException {
+        int maxLength = AppConfig.getInstance().snapshot().getEvaluationLimits().getMaxLength();
+        // Both span several read buffers; the first is as long as allowed
+        String longest = padded("1+1", maxLength);
+        String tooLong = padded("1+1", maxLength + 1);
+        assertEquals(Arrays.asList("2", "Error", "4"), process(longest + "\n" + tooLong + "\n2+2\n"));
+    }
+
+    @Test
+    void returnsZeroAfterWritingTheOutputFile() throws IOException {
+        Path input = Files.write(directory.resolve("in.txt"), "2^10\n\n9/3\n".getBytes(StandardCharsets.US_ASCII));
+        Path output = directory.resolve("out.txt");
+        assertEquals(0, HeadlessCalculator.run(input.toString(), output.toString()));
+        assertEquals(Arrays.asList("1024", "", "3"), Files.readAllLines(output, StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    void returnsOneWhenTheInputCannotBeRead() {
+        assertEquals(1, HeadlessCalculator.run(directory.resolve("missing.txt").toString()));
+    }
+
+    @Test
+    void returnsTwoForTooManyArguments() {
+        assertEquals(2, HeadlessCalculator.run("a", "b", "c"));
+    }
+
+    private static List<String> process(String input) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new HeadlessCalculator().process(
+                Channels.newChannel(new ByteArrayInputStream(input.getBytes(StandardCharsets.US_ASCII))),
+                Channels.newChannel(output));
+        String text = output.toString(StandardCharsets.US_ASCII.name());
+        // One line out per line in, each ending in a newline
+        assertEquals('\n', text.charAt(text.length() - 1));
+        return Arrays.asList(text.substring(0, text.length() - 1).split("\n", -1));
+    }
+
+    // expression after enough spaces to make length characters
+    private static String padded(String expression, int length) {
+        StringBuilder line = new StringBuilder(length);
+        while (line.length() + expression.length() < length) {
+            line.append(' ');
+        }
+        return line.append(expression).toString();
+    }
+}
@@ -0,0 +1,112 @@
+package com.nayabjalal.calculator.config;
+
+import com.nayabjalal.calculator.exception.CalculatorException.ErrorType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AppConfigTest {
+
+    @TempDir
+    Path directory;
+
+    private Path file;
+    private AppConfig config;
+
+    @BeforeEach
+    void setUp() {
+        file = directory.resolve("calculator-config.json");
+        config = new AppConfig(file);
+    }
+
+    @AfterEach
+    void tearDown() {
+        config.close();
+    }
+
+    @Test
+    void resolvesTypedSettingsAndDefaults() {
+        ConfigSnapshot snapshot = config.snapshot();
+        assertEquals(50, snapshot.getMaxHistorySize());
+        assertFalse(snapshot.isBytecodeCompilation());
+        assertEquals("Cannot divide by zero", snapshot.getErrorMessage(ErrorType.DIVISION_BY_ZERO));
+        assertNull(snapshot.getErrorMessage(ErrorType.EXPRESSION_PARSE_ERROR));
+        assertEquals("C", snapshot.getShortcuts().get("clear"));
+        assertEquals(Integer.valueOf(50), config.get("calculator.maxHistorySize"));
+    }
+
+    @Test
+    void acceptsZeroToTurnTheDeadlineOff() {
+        assertEquals(ConfigSnapshot.DEFAULT_EVALUATION_TIMEOUT_MILLIS,
+                config.snapshot().getEvaluationLimits().getTimeoutMillis());
+        config.set("calculator.evaluationTimeoutMillis", 0);
+        assertEquals(0, config.snapshot().getEvaluationLimits().getTimeoutMillis());
+        config.set("calculator.evaluationTimeoutMillis", -5);
+        assertEquals(ConfigSnapshot.DEFAULT_EVALUATION_TIMEOUT_MILLIS,
+                config.snapshot().getEvaluationLimits().getTimeoutMillis());
+        // Sizes still have to be positive
+        config.set("calculator.maxExpressionLength", 0);
+        assertEquals(ConfigSnapshot.DEFAULT_MAX_EXPRESSION_LENGTH, config.snapshot().getEvaluationLimits().getMaxLength());
+    }
+
+    @Test
+    void setSwapsSnapshotAndSavesLater() throws Exception {
+        ConfigSnapshot before = config.snapshot();
+        config.set("calculator.maxHistorySize", 500);
+
+        assertEquals(500, config.snapshot().getMaxHistorySize());
+        assertEquals(50, before.getMaxHistorySize());
+        assertFalse(read().contains("\"maxHistorySize\" : 500"));
+        assertTrue(await(() -> read().contains("\"maxHistorySize\" : 500")));
+    }
+
+    @Test
+    void reloadsWhenFileChanges() throws Exception {
+        String edited = read().replace("\"bytecodeCompilation\" : false", "\"bytecodeCompilation\" : true");
+        Files.write(file, edited.getBytes(StandardCharsets.UTF_8));
+
+        assertTrue(await(() -> config.snapshot().isBytecodeCompilation()));
+    }
+
+    @Test
+    void reloadsEditsWithTheModificationTimeOfOurOwnSave() throws Exception {
+        FileTime saved = Files.getLastModifiedTime(file);
+        String edited = read().replace("\"bytecodeCompilation\" : false", "\"bytecodeCompilation\" : true");
+        Files.write(file, edited.getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(file, saved);
+
+        config.reload();
+        assertTrue(config.snapshot().isBytecodeCompilation());
+    }
+
+    private String read() {
+        try {
+            return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+        } catch (Exception e) {
+            return "";
+        }
+    }
+
+    private static boolean await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            Thread.sleep(20);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,95 @@
+package com.nayabjalal.calculator.expression;
+
+import com.nayabjalal.calculator.exception.CalculatorException;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeout;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdaptiveEvaluatorTest {
+
+    @Test
+    void showsDecimalResults() throws CalculatorException {
+        assertEquals(0.3, evaluate("0.1 + 0.2"));
+        assertEquals(0.3, evaluate("0.1 * 3"));
+        assertEquals(1.21, evaluate("1.1 ^ 2"));
+        assertEquals(1.0, evaluate("1 / 3 * 3"));
+        assertEquals(0.0, evaluate("0.1 + 0.2 - 0.3"));
+        assertEquals(0.0, evaluate("10 % 0.1"));
+        assertEquals(-0.1, evaluate("(0 - 0.3) % 0.2"));
+        assertEquals(1.4142135623731, evaluate("2 ^ 0.5"));
+        assertEquals(0.001, evaluate("10 ^ (0 - 3)"));
+    }
+
+    @Test
+    void keepsExactResults() throws CalculatorException {
+        assertEquals(0x1p60, evaluate("2 ^ 60"));
+        assertEquals(1.15292150460685E18, evaluate("2 ^ 60 + 1"));
+        assertEquals(0.5, evaluate("1 / 2"));
+        assertEquals(-0.0, evaluate("0 * (0 - 1)"));
+    }
+
+    @Test
+    void matchesDoubleSemanticsForNonFiniteResults() throws CalculatorException {
+        assertTrue(Double.isNaN(evaluate("5 % 0")));
+        assertEquals(Double.POSITIVE_INFINITY, evaluate("0 ^ (0 - 1)"));
+        assertEquals(Double.POSITIVE_INFINITY, evaluate("10 ^ 400"));
+        assertThrows(CalculatorException.class, () -> evaluate("1 / 0"));
+        // Zero only once the literals are taken exactly
+        assertThrows(CalculatorException.class, () -> evaluate("1 / (0.3 - (0.1 + 0.2))"));
+    }
+
+    @Test
+    void roundsIntermediatesTooLargeToKeepExact() {
+        // Exactly, each tower has about 1.8 million digits
+        String tower = "((1.000001 ^ 64) ^ 64) ^ 64";
+        assertEquals(0.1, assertTimeout(Duration.ofSeconds(1), () -> evaluate(tower + " - " + tower + " + 0.1")));
+    }
+
+    // Random sums, differences and products of short decimals against BigDecimal arithmetic
+    @Test
+    void matchesBigDecimalReference() throws CalculatorException {
+        Random random = new Random(17);
+        MathContext display = new MathContext(AdaptiveEvaluator.MAX_DIGITS, RoundingMode.HALF_EVEN);
+        long escalationsBefore = AdaptiveEvaluator.getEscalationCount();
+        int count = 20_000;
+        for (int i = 0; i < count; i++) {
+            StringBuilder expression = new StringBuilder();
+            BigDecimal reference = literal(random, expression);
+            for (int terms = 1 + random.nextInt(4); terms > 0; terms--) {
+                char op = "+-*".charAt(random.nextInt(3));
+                expression.append(' ').append(op).append(' ');
+                BigDecimal operand = literal(random, expression);
+                reference = op == '+' ? reference.add(operand) : op == '-' ? reference.subtract(operand)
+                        : reference.multiply(operand);
+            }
+            // The reference applies the operators left to right, so only mix * with one other term
+            if (expression.indexOf("*") >= 0 && (expression.indexOf("+") >= 0 || expression.indexOf(" - ") >= 0)) {
+                continue;
+            }
+            double value = reference.doubleValue();
+            double expected = new BigDecimal(value).compareTo(reference) == 0 ? value : reference.round(display).doubleValue();
+            assertEquals(expected, evaluate(expression.toString()), expression.toString());
+        }
+        assertTrue(AdaptiveEvaluator.getEscalationCount() - escalationsBefore < count / 10);
+    }
+
+    private static BigDecimal literal(Random random, StringBuilder expression) {
+        String text = random.nextInt(1000) + "." + random.nextInt(100);
+        expression.append(text);
+        return new BigDecimal(text);
+    }
+
+    private static double evaluate(String expression) throws CalculatorException {
+        return AdaptiveEvaluator.evaluate(ExpressionCompiler.compile(expression, ExpressionCompiler.Backend.INTERPRETER),
+                AdaptiveEvaluator.MAX_DIGITS);
+    }
+}
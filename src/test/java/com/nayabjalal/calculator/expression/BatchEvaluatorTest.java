@@ -0,0 +1,87 @@
+package com.nayabjalal.calculator.expression;
+
+import com.nayabjalal.calculator.exception.CalculatorException;
+import com.nayabjalal.calculator.expression.BatchEvaluator.Mode;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BatchEvaluatorTest {
+
+    @ParameterizedTest
+    @EnumSource(Mode.class)
+    void keepsInputOrderAcrossChunks(Mode mode) {
+        // Several 512-item chunks plus a partial one
+        List<String> expressions = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            expressions.add(i + "*2+1");
+        }
+        try (BatchEvaluator evaluator = new BatchEvaluator(mode, 4)) {
+            List<EvaluationResult> results = evaluator.evaluate(expressions);
+            assertEquals(expressions.size(), results.size());
+            for (int i = 0; i < results.size(); i++) {
+                assertTrue(results.get(i).isSuccess(), expressions.get(i));
+                assertEquals(i * 2 + 1, results.get(i).getValue(), 0.0);
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(Mode.class)
+    void recordsFailuresPerItem(Mode mode) {
+        List<String> expressions = new ArrayList<>();
+        for (int i = 0; i < 1_500; i++) {
+            expressions.add(i % 3 == 0 ? i + "/0" : i % 3 == 1 ? i + "+" : String.valueOf(i));
+        }
+        try (BatchEvaluator evaluator = new BatchEvaluator(mode, 3)) {
+            List<EvaluationResult> results = evaluator.evaluate(expressions);
+            assertEquals(expressions.size(), results.size());
+            for (int i = 0; i < results.size(); i++) {
+                EvaluationResult result = results.get(i);
+                if (i % 3 == 0) {
+                    assertEquals(CalculatorException.ErrorType.DIVISION_BY_ZERO, result.getErrorType());
+                } else if (i % 3 == 1) {
+                    assertEquals(CalculatorException.ErrorType.EXPRESSION_PARSE_ERROR, result.getErrorType());
+                } else {
+                    assertEquals(i, result.getValue(), 0.0);
+                }
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(Mode.class)
+    void handlesEmptyAndSingleInputs(Mode mode) {
+        try (BatchEvaluator evaluator = new BatchEvaluator(mode)) {
+            assertEquals(mode, evaluator.getMode());
+            assertTrue(evaluator.evaluate(Collections.emptyList()).isEmpty());
+            assertTrue(evaluator.evaluate(Stream.empty()).isEmpty());
+
+            List<EvaluationResult> results = evaluator.evaluate(Stream.of("", "2^3"));
+            assertFalse(results.get(0).isSuccess());
+            assertEquals(CalculatorException.ErrorType.INVALID_INPUT, results.get(0).getErrorType());
+            assertEquals(8.0, results.get(1).getValue(), 0.0);
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(Mode.class)
+    void canBeReused(Mode mode) {
+        try (BatchEvaluator evaluator = new BatchEvaluator(mode, 2)) {
+            for (int round = 0; round < 3; round++) {
+                List<EvaluationResult> results = evaluator.evaluate(Arrays.asList(round + "+1", round + "*10"));
+                assertEquals(round + 1, results.get(0).getValue(), 0.0);
+                assertEquals(round * 10, results.get(1).getValue(), 0.0);
+            }
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.nayabjalal.calculator.expression;
+
+import com.nayabjalal.calculator.exception.CalculatorException;
+import com.nayabjalal.calculator.expression.ExpressionCompiler.Backend;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CompiledBatchTest {
+
+    @Test
+    void sharesCommonSubexpressions() throws CalculatorException {
+        CompiledBatch batch = ExpressionCompiler.compileBatch(
+                Arrays.asList("a / (x + y)", "b / (y + x)", "(x + y) ^ 2"), "a", "b", "x", "y");
+        // Alone: 5 + 5 + 4 nodes; shared: a b x y (x+y) a/ b/ square
+        assertEquals(8, batch.getNodeCount());
+        assertEquals(6, batch.getRemovedNodeCount());
+
+        double[][] out = new double[3][2];
+        batch.evaluate(new double[][]{{1, 2}, {3, 4}, {0.5, 1}, {1.5, 3}}, out);
+        assertEquals(Arrays.asList(0.5, 0.5), Arrays.asList(out[0][0], out[0][1]));
+        assertEquals(Arrays.asList(1.5, 1.0), Arrays.asList(out[1][0], out[1][1]));
+        assertEquals(Arrays.asList(4.0, 16.0), Arrays.asList(out[2][0], out[2][1]));
+    }
+
+    @Test
+    void matchesFormulasCompiledAlone() throws CalculatorException {
+        Random random = new Random(19);
+        String[] parts = {"x", "y", "z", "(x+y)", "(y*z)", "(x-z)^2", "(x+y)/(z+1)", "3", "0.5"};
+        List<String> formulas = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            StringBuilder formula = new StringBuilder(parts[random.nextInt(parts.length)]);
+            for (int terms = random.nextInt(4); terms >= 0; terms--) {
+                formula.append("+-*/%^".charAt(random.nextInt(6))).append(parts[random.nextInt(parts.length)]);
+            }
+            formulas.add(formula.toString());
+        }
+
+        int rows = 1000;
+        double[][] columns = new double[3][rows];
+        for (double[] column : columns) {
+            for (int row = 0; row < rows; row++) {
+                column[row] = random.nextDouble() * 10 - 5;
+            }
+        }
+        double[][] out = new double[formulas.size()][rows];
+        ExpressionCompiler.compileBatch(formulas, "x", "y", "z").evaluate(columns, out);
+
+        double[] expected = new double[rows];
+        for (int f = 0; f < formulas.size(); f++) {
+            ExpressionCompiler.compile(formulas.get(f), Backend.INTERPRETER, "x", "y", "z").evaluate(columns, expected);
+            for (int row = 0; row < rows; row++) {
+                assertEquals(Double.doubleToLongBits(expected[row]), Double.doubleToLongBits(out[f][row]), formulas.get(f));
+            }
+        }
+    }
+
+    @Test
+    void reportsErrors() {
+        CalculatorException parse = assertThrows(CalculatorException.class,
+                () -> ExpressionCompiler.compileBatch(Arrays.asList("x + 1", "x +* 2"), "x"));
+        assertEquals("Formula 1: Missing operand for '+' near position 6", parse.getMessage());
+        assertThrows(CalculatorException.class, () -> ExpressionCompiler.compileBatch(Arrays.asList("1 / x"), "x")
+                .evaluate(new double[][]{{1, 0}}, new double[1][2]));
+    }
+}
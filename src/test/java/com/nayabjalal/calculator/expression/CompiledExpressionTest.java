@@ -0,0 +1,89 @@
+package com.nayabjalal.calculator.expression;
+
+import com.nayabjalal.calculator.exception.CalculatorException;
+import com.nayabjalal.calculator.expression.ExpressionCompiler.Backend;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CompiledExpressionTest {
+
+    @ParameterizedTest
+    @EnumSource(Backend.class)
+    void bindsVariablesInDeclaredOrder(Backend backend) throws CalculatorException {
+        CompiledExpression expression = ExpressionCompiler.compile("x*2+y^2", backend, "x", "y");
+        assertEquals(backend == Backend.BYTECODE, expression.isBytecodeCompiled());
+        assertArrayEquals(new String[]{"x", "y"}, expression.getVariables());
+        assertEquals(22.0, expression.evaluate(3, 4));
+        assertEquals(17.0, expression.evaluate(4, 3));
+        assertEquals(12.0, ExpressionCompiler.compile("(a+b)*a", backend, "b", "a").evaluate(1, 3));
+        assertEquals(7.0, ExpressionCompiler.compile("3+4", backend).evaluate());
+
+        CalculatorException arity = assertThrows(CalculatorException.class, () -> expression.evaluate(1));
+        assertEquals(CalculatorException.ErrorType.INVALID_INPUT, arity.getErrorType());
+        assertEquals("Expected 2 variable values but got 1", arity.getMessage());
+    }
+
+    @Test
+    void rejectsUnknownAndMalformedVariables() {
+        assertEquals("Unknown variable 'z' at position 2",
+                assertThrows(CalculatorException.class, () -> ExpressionCompiler.compile("x+z", "x")).getMessage());
+        assertEquals("Invalid variable name: 1x",
+                assertThrows(CalculatorException.class, () -> ExpressionCompiler.compile("x+1", "1x")).getMessage());
+        assertEquals("Duplicate variable name: x",
+                assertThrows(CalculatorException.class, () -> ExpressionCompiler.compile("x+1", "x", "x")).getMessage());
+    }
+
+    @ParameterizedTest
+    @EnumSource(Backend.class)
+    void columnsMatchRowByRowAcrossBlocks(Backend backend) throws CalculatorException {
+        CompiledExpression expression = ExpressionCompiler.compile("(x+y)*(x-y)/(z*z+1) % 3 + x^2", backend, "x", "y", "z");
+        // Several 256-row blocks and a partial one
+        int rows = 1_000;
+        Random random = new Random(7);
+        double[][] columns = new double[3][rows];
+        for (double[] column : columns) {
+            for (int row = 0; row < rows; row++) {
+                column[row] = random.nextDouble() * 10 - 5;
+            }
+        }
+        double[] out = new double[rows];
+        expression.evaluate(columns, out);
+        for (int row = 0; row < rows; row++) {
+            double expected = expression.evaluate(columns[0][row], columns[1][row], columns[2][row]);
+            assertEquals(Double.doubleToLongBits(expected), Double.doubleToLongBits(out[row]), "row " + row);
+        }
+
+        // Only out.length rows are read
+        double[] firstRows = new double[10];
+        expression.evaluate(columns, firstRows);
+        for (int row = 0; row < firstRows.length; row++) {
+            assertEquals(out[row], firstRows[row]);
+        }
+    }
+
+    @Test
+    void reportsColumnErrors() throws CalculatorException {
+        CompiledExpression expression = ExpressionCompiler.compile("1/x", "x");
+        double[] column = new double[600];
+        Arrays.fill(column, 1);
+        column[517] = 0;
+
+        CalculatorException zero = assertThrows(CalculatorException.class,
+                () -> expression.evaluate(new double[][]{column}, new double[600]));
+        assertEquals(CalculatorException.ErrorType.DIVISION_BY_ZERO, zero.getErrorType());
+        assertEquals("Cannot divide by zero (row 517)", zero.getMessage());
+
+        assertEquals("Column has 2 rows, expected at least 3", assertThrows(CalculatorException.class,
+                () -> expression.evaluate(new double[][]{{1, 2}}, new double[3])).getMessage());
+        assertEquals("Expected 1 variable values but got 2", assertThrows(CalculatorException.class,
+                () -> expression.evaluate(new double[][]{{1}, {2}}, new double[1])).getMessage());
+    }
+}
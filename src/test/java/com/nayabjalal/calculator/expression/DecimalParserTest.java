@@ -0,0 +1,115 @@
+package com.nayabjalal.calculator.expression;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Differential test against Double.parseDouble; the parser only sees plain decimals, so every
+// input is written without an exponent
+class DecimalParserTest {
+
+    @Test
+    void randomDigitsMatchParseDouble() {
+        Random random = new Random(16);
+        for (int i = 0; i < 500_000; i++) {
+            StringBuilder digits = new StringBuilder();
+            for (int length = 1 + random.nextInt(random.nextBoolean() ? 20 : 40); length > 0; length--) {
+                digits.append((char) ('0' + random.nextInt(10)));
+            }
+            int point = random.nextInt(digits.length() + 1);
+            if (point < digits.length()) {
+                digits.insert(point, '.');
+            }
+            assertParse(digits.toString());
+        }
+    }
+
+    @Test
+    void doublesAndHalfwayPointsMatchParseDouble() {
+        Random random = new Random(16);
+        for (int i = 0; i < 50_000; i++) {
+            double value = Math.abs(Double.longBitsToDouble(random.nextLong()));
+            if (Double.isNaN(value) || Double.isInfinite(value)) {
+                continue;
+            }
+            assertDouble(value);
+            assertDouble(random.nextInt(1_000_000) / Math.pow(10, random.nextInt(12)));
+            assertDouble(random.nextDouble() * Math.pow(10, random.nextInt(60) - 30));
+        }
+        for (int exponent = -325; exponent <= 308; exponent++) {
+            for (int digit = 1; digit <= 9; digit++) {
+                double value = Double.parseDouble(digit + "e" + exponent);
+                assertDouble(value);
+                assertDouble(Math.nextUp(value));
+                assertDouble(Math.nextDown(value));
+            }
+        }
+        double[] edges = {Double.MIN_VALUE, Double.MIN_NORMAL, Math.nextDown(Double.MIN_NORMAL), Double.MAX_VALUE,
+                0x1p53, 0x1p53 + 2, 0x1p63, 0x1p64, 9007199254740993.0, 1e22, 1e23, 0.1, 0.3};
+        for (double value : edges) {
+            assertDouble(value);
+        }
+    }
+
+    @Test
+    void edgeCasesMatchParseDouble() {
+        String[] inputs = {"0", "0.0", "000", ".5", "5.", "00012.50000", "9007199254740993", "9007199254740992.5",
+                "18446744073709551615", "18446744073709551616", "9999999999999999999", "99999999999999999999",
+                "10000000000000000000000", "2.4703282292062327e-324".replace("e-324", ""),
+                "0." + "0".repeat(323) + "24703282292062327208828439643411068618252990130716238221279284125033775364",
+                "0." + "0".repeat(323) + "24703282292062327208828439643411068618252990130716238221279284125033775363",
+                "0." + "0".repeat(400) + "1", "1" + "0".repeat(308), "1" + "0".repeat(309),
+                "179769313486231580793728971405301", "0.30000000000000004440892098500626"};
+        for (String input : inputs) {
+            assertParse(input);
+        }
+    }
+
+    @Test
+    void rejectsMalformedNumbers() {
+        assertTrue(Double.isNaN(DecimalParser.parseOrNaN("1.2.3", 0, 5)));
+        assertTrue(Double.isNaN(DecimalParser.parseOrNaN(".", 0, 1)));
+        assertTrue(Double.isNaN(DecimalParser.parseOrNaN("", 0, 0)));
+        assertEquals(12.5, DecimalParser.parseOrNaN("(1 2.5)", 1, 6));
+    }
+
+    @Test
+    void parseSignedMatchesParseDouble() {
+        String[] inputs = {"0", "-0", " -12.5 ", "3.14159", "-0.000001", "\t42\n"};
+        for (String input : inputs) {
+            assertEquals(Double.doubleToLongBits(Double.parseDouble(input)),
+                    Double.doubleToLongBits(DecimalParser.parseSigned(input)), input);
+        }
+        assertThrows(NumberFormatException.class, () -> DecimalParser.parseSigned("-"));
+        assertThrows(NumberFormatException.class, () -> DecimalParser.parseSigned("1 2"));
+        assertThrows(NumberFormatException.class, () -> DecimalParser.parseSigned("--1"));
+    }
+
+    // Signs are handled by the tokenizer, not the parser
+    private static void assertDouble(double value) {
+        value = Math.abs(value);
+        if (Double.isInfinite(value)) {
+            return;
+        }
+        assertParse(new BigDecimal(Double.toString(value)).toPlainString());
+        BigDecimal exact = new BigDecimal(value);
+        assertParse(exact.toPlainString());
+        if (value < Double.MAX_VALUE) {
+            BigDecimal halfway = exact.add(new BigDecimal(Math.nextUp(value))).divide(BigDecimal.valueOf(2));
+            assertParse(halfway.toPlainString());
+            BigDecimal tiny = halfway.ulp();
+            assertParse(halfway.add(tiny).toPlainString());
+            assertParse(halfway.subtract(tiny).toPlainString());
+        }
+    }
+
+    private static void assertParse(String input) {
+        assertEquals(Double.doubleToLongBits(Double.parseDouble(input)),
+                Double.doubleToLongBits(DecimalParser.parseOrNaN(input, 0, input.length())), input);
+    }
+}
@@ -0,0 +1,57 @@
+package com.nayabjalal.calculator.expression;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EvaluationStackTest {
+
+    @Test
+    void growsPastItsInitialCapacity() {
+        EvaluationStack stack = EvaluationStack.forCurrentThread();
+        for (int i = 0; i < 1_000; i++) {
+            stack.pushOperand(i);
+            stack.pushOperator(i % 2 == 0 ? '+' : '*', i);
+        }
+        assertEquals(1_000, stack.operandCount());
+        for (int i = 999; i >= 0; i--) {
+            assertEquals(i, stack.peekOperatorPosition());
+            assertEquals(i % 2 == 0 ? '+' : '*', stack.peekOperator());
+            assertEquals(i % 2 == 0 ? '+' : '*', stack.popOperator());
+            assertEquals(i, stack.popOperand(), 0.0);
+        }
+        assertFalse(stack.hasOperators());
+        assertEquals(0, stack.operandCount());
+    }
+
+    @Test
+    void isReusedAndResetPerThread() throws Exception {
+        EvaluationStack stack = EvaluationStack.forCurrentThread();
+        stack.pushOperand(1);
+        stack.pushOperator('(');
+        assertSame(stack, EvaluationStack.forCurrentThread());
+        assertEquals(0, stack.operandCount());
+        assertFalse(stack.hasOperators());
+
+        EvaluationStack other = CompletableFuture.supplyAsync(EvaluationStack::forCurrentThread).get();
+        assertNotSame(stack, other);
+    }
+
+    @Test
+    void recordsTheFailure() {
+        EvaluationStack stack = EvaluationStack.forCurrentThread();
+        stack.pushOperator('-');
+        assertEquals(-1, stack.peekOperatorPosition());
+        assertFalse(stack.fail(EvaluationError.MISSING_OPERAND, 4, '-'));
+        assertEquals(EvaluationError.MISSING_OPERAND, stack.getError());
+        assertEquals(4, stack.getErrorPosition());
+        assertEquals('-', stack.getErrorSymbol());
+        assertTrue(stack.hasOperators());
+    }
+}
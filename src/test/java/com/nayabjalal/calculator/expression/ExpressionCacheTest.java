@@ -0,0 +1,93 @@
+package com.nayabjalal.calculator.expression;
+
+import com.nayabjalal.calculator.config.AppConfig;
+import com.nayabjalal.calculator.exception.CalculatorException;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ExpressionCacheTest {
+
+    @Test
+    void keepsOneEntryPerNormalizedExpression() throws CalculatorException {
+        ExpressionCache cache = new ExpressionCache(2);
+        CompiledExpression program = cache.get("1 + 2");
+        assertSame(program, cache.get("1+2"));
+        assertSame(program, cache.get(" 1 +2"));
+        assertSame(program, cache.get("1 + 2"));
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.getMissCount());
+
+        // Spellings of one expression do not take the room of another
+        cache.get("3 * 4");
+        assertEquals(2, cache.size());
+        assertEquals(0, cache.getEvictionCount());
+        assertSame(program, cache.get("1 + 2"));
+    }
+
+    @Test
+    void evictsTheLeastRecentlyUsed() throws CalculatorException {
+        ExpressionCache cache = new ExpressionCache(2);
+        CompiledExpression first = cache.get("1+1");
+        CompiledExpression second = cache.get("2+2");
+        assertSame(first, cache.get("1+1"));
+        cache.get("3+3");
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+        assertSame(first, cache.get("1+1"));
+        assertNotSame(second, cache.get("2+2"));
+        assertEquals(2, cache.getHitCount());
+        assertEquals(4, cache.getMissCount());
+    }
+
+    @Test
+    void doesNotCacheFailures() {
+        ExpressionCache cache = new ExpressionCache(4);
+        for (int i = 0; i < 2; i++) {
+            CalculatorException e = assertThrows(CalculatorException.class, () -> cache.get("1 +"));
+            assertEquals(CalculatorException.ErrorType.EXPRESSION_PARSE_ERROR, e.getErrorType());
+        }
+        assertEquals(0, cache.size());
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    void clearsEntriesAndAliases() throws CalculatorException {
+        ExpressionCache cache = new ExpressionCache(4);
+        CompiledExpression program = cache.get("2 * 3");
+        cache.clear();
+        assertEquals(0, cache.size());
+        CompiledExpression recompiled = cache.get("2 * 3");
+        assertNotSame(program, recompiled);
+        assertEquals(6.0, recompiled.evaluate());
+    }
+
+    @Test
+    void normalizesWithoutCopyingWhenThereIsNoWhitespace() {
+        String compact = "1+2*3";
+        assertSame(compact, ExpressionCache.normalize(compact));
+        assertEquals("1+2*3", ExpressionCache.normalize(" 1 +\t2 * 3 "));
+        assertEquals("", ExpressionCache.normalize("   "));
+        assertThrows(IllegalArgumentException.class, () -> new ExpressionCache(0));
+    }
+
+    @Test
+    void checksTheCurrentLimitsOnAHit() throws CalculatorException {
+        AppConfig config = AppConfig.getInstance();
+        Object before = config.get("calculator.maxOperations");
+        ExpressionCache cache = new ExpressionCache(2);
+        cache.get("1 + 2 + 3");
+        try {
+            config.set("calculator.maxOperations", 1);
+            CalculatorException e = assertThrows(CalculatorException.class, () -> cache.get("1 + 2 + 3"));
+            assertEquals(CalculatorException.ErrorType.OPERATION_LIMIT_EXCEEDED, e.getErrorType());
+        } finally {
+            config.set("calculator.maxOperations", before);
+        }
+        assertEquals(6.0, cache.get("1 + 2 + 3").evaluate());
+    }
+}
@@ -0,0 +1,94 @@
+package com.nayabjalal.calculator.expression;
+
+import com.nayabjalal.calculator.exception.CalculatorException;
+import com.nayabjalal.calculator.expression.ExpressionCompiler.Backend;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ExpressionOptimizerTest {
+
+    private static final String[] LEAVES = {"x", "y", "x", "y", "0", "1", "2", "3", "0.5", "4", "0.1", "10", "1024"};
+    private static final double[] VALUES = {0.0, -0.0, 1.0, -1.0, 2.0, 0.1, -3.75, 1e-310, 1e300, -1e-300,
+            Double.MIN_VALUE, Double.MAX_VALUE, Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, 7.0};
+
+    @Test
+    void rewritesOnlyWhatItCan() throws CalculatorException {
+        assertCode("x^2", "$d*");
+        assertCode("x^1 + x*1 + 1*x + x/1 + x-0", "$$+$+$+$+");
+        assertCode("2*3+x", "#$+");
+        assertCode("x/4", "$#*");
+        assertCode("x^0 + y", "#$+");
+        assertCode("x+0", "$#+");
+        assertCode("x^3", "$#^");
+        assertCode("x/3", "$#/");
+        assertCode("(x/y)^0", "$$/#^");
+        assertCode("x/(1-1)", "$#/");
+        assertCode("x*1^2", "$");
+        assertEquals(0.25, ExpressionCompiler.compile("x/4", "x").getConstant(0));
+    }
+
+    @Test
+    void optimizedProgramsAreBitIdentical() throws CalculatorException {
+        Random random = new Random(18);
+        for (int i = 0; i < 10_000; i++) {
+            String expression = randomExpression(random, 1 + random.nextInt(4));
+            CompiledExpression parsed = ExpressionCompiler.compile(expression, Backend.INTERPRETER, "x", "y").getParsed();
+            CompiledExpression interpreted = ExpressionCompiler.compile(expression, Backend.INTERPRETER, "x", "y");
+            CompiledExpression bytecode = ExpressionCompiler.compile(expression, Backend.BYTECODE, "x", "y");
+
+            double[][] columns = {new double[VALUES.length * VALUES.length], new double[VALUES.length * VALUES.length]};
+            double[] expectedColumn = new double[columns[0].length];
+            boolean columnThrows = false;
+            for (int a = 0; a < VALUES.length; a++) {
+                for (int b = 0; b < VALUES.length; b++) {
+                    int row = a * VALUES.length + b;
+                    columns[0][row] = VALUES[a];
+                    columns[1][row] = VALUES[b];
+                    String input = expression + " at x=" + VALUES[a] + ", y=" + VALUES[b];
+                    Double expected = evaluate(parsed, VALUES[a], VALUES[b]);
+                    assertEquals(expected, evaluate(interpreted, VALUES[a], VALUES[b]), input);
+                    assertEquals(expected, evaluate(bytecode, VALUES[a], VALUES[b]), input);
+                    columnThrows |= expected == null;
+                    expectedColumn[row] = expected == null ? 0 : expected;
+                }
+            }
+            double[] out = new double[expectedColumn.length];
+            if (columnThrows) {
+                assertThrows(CalculatorException.class, () -> interpreted.evaluate(columns, out), expression);
+            } else {
+                interpreted.evaluate(columns, out);
+                for (int row = 0; row < out.length; row++) {
+                    assertEquals(Double.doubleToLongBits(expectedColumn[row]), Double.doubleToLongBits(out[row]), expression);
+                }
+            }
+        }
+    }
+
+    // Boxed so that assertEquals compares bit patterns (Double.equals); null when it throws
+    private static Double evaluate(CompiledExpression program, double x, double y) {
+        try {
+            return program.evaluate(x, y);
+        } catch (CalculatorException e) {
+            return null;
+        }
+    }
+
+    private static String randomExpression(Random random, int depth) {
+        if (depth == 0 || random.nextInt(4) == 0) {
+            return LEAVES[random.nextInt(LEAVES.length)];
+        }
+        char op = "+-*/%^^".charAt(random.nextInt(7));
+        String left = randomExpression(random, depth - 1);
+        String right = op == '^' && random.nextBoolean() ? LEAVES[4 + random.nextInt(4)] : randomExpression(random, depth - 1);
+        return "(" + left + op + right + ")";
+    }
+
+    private static void assertCode(String expression, String code) throws CalculatorException {
+        assertEquals(code, new String(ExpressionCompiler.compile(expression, Backend.INTERPRETER, "x", "y").getCode()),
+                expression);
+    }
+}
@@ -0,0 +1,114 @@
+package com.nayabjalal.calculator.expression;
+
+import com.nayabjalal.calculator.exception.CalculatorException;
+import com.nayabjalal.calculator.util.ExpressionEvaluator;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IncrementalExpressionTest {
+
+    private static final String TYPED = "0123456789.  +-*/%^()";
+    private static final String[] PASTED = {"(1+2)", "0.1", " * 3", "/0", "2^10", "(", ")", "7 % 3", "1e3", "00.5"};
+
+    @Test
+    void matchesEvaluatorAfterRandomEdits() {
+        Random random = new Random(20);
+        IncrementalExpression expression = new IncrementalExpression();
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 200_000; i++) {
+            edit(random, expression, text);
+            String input = text.toString();
+            assertEquals(input, expression.getText());
+            EvaluationResult expected = ExpressionEvaluator.tryEvaluate(input);
+            EvaluationResult actual = expression.evaluate();
+            assertEquals(expected.isSuccess(), actual.isSuccess(), input);
+            if (expected.isSuccess()) {
+                assertEquals(Double.doubleToRawLongBits(expected.getValue()), Double.doubleToRawLongBits(actual.getValue()), input);
+            } else {
+                assertEquals(expected.getMessage(), actual.getMessage(), input);
+            }
+        }
+    }
+
+    @Test
+    void matchesAdaptiveEvaluatorAfterRandomEdits() {
+        Random random = new Random(21);
+        IncrementalExpression expression = new IncrementalExpression(true, 12, EvaluationLimits.NONE);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 50_000; i++) {
+            edit(random, expression, text);
+            String input = text.toString();
+            Double expected;
+            try {
+                expected = AdaptiveEvaluator.evaluate(ExpressionCompiler.compile(input), 12);
+            } catch (CalculatorException e) {
+                expected = null;
+            }
+            EvaluationResult actual = expression.evaluate();
+            assertEquals(expected != null, actual.isSuccess(), input);
+            if (expected != null) {
+                assertEquals(expected, (Double) actual.getValue(), input);
+            }
+        }
+    }
+
+    @Test
+    void editsOnlyTouchWhatChanged() {
+        StringBuilder text = new StringBuilder("0");
+        for (int i = 1; i < 1000; i++) {
+            text.append(" + (").append(i).append(" * 2 - 1)");
+        }
+        IncrementalExpression expression = new IncrementalExpression();
+        expression.setText(text);
+        int tokens = expression.getTokenCount();
+        assertEquals(tokens, expression.getParsedTokenCount());
+
+        // A number that stays a number: no parsing, only the path to the root
+        int middle = text.indexOf("(500 ") + 1;
+        expression.replace(middle, 3, "499");
+        assertEquals(0, expression.getParsedTokenCount());
+        assertEquals(ExpressionEvaluator.tryEvaluate(expression.getText()).getValue(), expression.evaluate().getValue());
+
+        // A new operator inside a group: only that group
+        expression.insert(middle + 3, " ^ 2");
+        assertTrue(expression.getParsedTokenCount() <= 7, "parsed " + expression.getParsedTokenCount());
+        assertEquals(ExpressionEvaluator.tryEvaluate(expression.getText()).getValue(), expression.evaluate().getValue());
+
+        // Typing at the end goes through an incomplete expression
+        expression.insert(expression.length(), " /");
+        assertEquals(ExpressionEvaluator.tryEvaluate(expression.getText()).getMessage(), expression.evaluate().getMessage());
+        expression.insert(expression.length(), " 0");
+        assertEquals(EvaluationError.DIVISION_BY_ZERO, expression.evaluate().getError());
+        expression.remove(expression.length() - 1, 1);
+        assertEquals(tokens + 3, expression.getTokenCount());
+    }
+
+    // Mostly typing and deleting single characters near a cursor, sometimes pasting or
+    // replacing a range, applied to both the model and the reference text
+    private static void edit(Random random, IncrementalExpression expression, StringBuilder text) {
+        if (text.length() > 60) {
+            expression.setText("");
+            text.setLength(0);
+        }
+        int offset = random.nextInt(text.length() + 1);
+        int length = 0;
+        String inserted = "";
+        int kind = random.nextInt(10);
+        if (kind < 5) {
+            inserted = String.valueOf(TYPED.charAt(random.nextInt(TYPED.length())));
+        } else if (kind < 7) {
+            length = Math.min(1, text.length() - offset);
+        } else if (kind < 9) {
+            inserted = PASTED[random.nextInt(PASTED.length)];
+        } else {
+            length = random.nextInt(text.length() - offset + 1);
+            inserted = PASTED[random.nextInt(PASTED.length)];
+        }
+        expression.replace(offset, length, inserted);
+        text.replace(offset, offset + length, inserted);
+    }
+}
@@ -0,0 +1,69 @@
+package com.nayabjalal.calculator.history;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Lives next to CalculationHistory for its package-private constructor, so the history is
+// journaled to a temporary file rather than the application's. The ring is full from the
+// start, so every add also evicts; the journal writes on its own thread.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CalculationHistoryBenchmark {
+
+    @Param({"50", "1000", "100000"})
+    public int size;
+
+    private Path directory;
+    private CalculationHistory history;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("history-benchmark");
+        history = new CalculationHistory(size,
+                new JsonHistoryStore(directory.resolve("history.json"), new ObjectMapper(), 1_000_000));
+        for (int i = 0; i < size; i++) {
+            add();
+        }
+        history.flush();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        history.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public void addCalculation() {
+        add();
+    }
+
+    private void add() {
+        int i = next++;
+        history.addCalculation(i + " * 2", Integer.toString(i * 2));
+    }
+}
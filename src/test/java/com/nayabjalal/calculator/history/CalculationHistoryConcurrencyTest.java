@@ -0,0 +1,141 @@
+package com.nayabjalal.calculator.history;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nayabjalal.calculator.history.CalculationHistory.CalculationEntry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CalculationHistoryConcurrencyTest {
+
+    private static final int CAPACITY = 10_000;
+    private static final int WRITERS = 8;
+    private static final int ADDS_PER_WRITER = 20_000;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void readersSeeConsistentSnapshotsWhileWritersAppend() throws Exception {
+        CalculationHistory history = newHistory("stress", CAPACITY);
+        ExecutorService pool = Executors.newFixedThreadPool(WRITERS + 2);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int w = 0; w < WRITERS; w++) {
+                int writer = w;
+                writers.add(pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < ADDS_PER_WRITER; i++) {
+                        history.addCalculation(writer + "+" + i, String.valueOf(writer + i));
+                    }
+                    return null;
+                }));
+            }
+            List<Future<Integer>> readers = new ArrayList<>();
+            for (int r = 0; r < 2; r++) {
+                boolean recent = r == 1;
+                readers.add(pool.submit(() -> {
+                    start.await();
+                    int snapshots = 0;
+                    while (writing.get()) {
+                        // Past capacity, writers evict entries a recent list covers while it is read
+                        assertConsistent(recent ? history.getRecentHistory(CAPACITY) : history.getHistory());
+                        snapshots++;
+                    }
+                    return snapshots;
+                }));
+            }
+
+            start.countDown();
+            for (Future<?> writer : writers) {
+                writer.get(60, TimeUnit.SECONDS);
+            }
+            writing.set(false);
+            for (Future<Integer> reader : readers) {
+                assertTrue(reader.get(60, TimeUnit.SECONDS) > 0);
+            }
+
+            List<CalculationEntry> entries = history.getHistory();
+            assertConsistent(entries);
+            assertEquals(CAPACITY, entries.size());
+            assertEquals((long) WRITERS * ADDS_PER_WRITER, entries.get(entries.size() - 1).getSequence());
+        } finally {
+            pool.shutdownNow();
+            history.close();
+        }
+    }
+
+    // Throughput under contention is measured by CalculationHistoryContentionBenchmark
+    @Test
+    void keepsEveryAppendFromManyWriters() throws Exception {
+        for (int threads : new int[] {1, 8, 32}) {
+            CalculationHistory history = newHistory("writers-" + threads, 1_000);
+            int perThread = 32_000 / threads;
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            CountDownLatch start = new CountDownLatch(1);
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                for (int t = 0; t < threads; t++) {
+                    int writer = t;
+                    futures.add(pool.submit(() -> {
+                        start.await();
+                        for (int i = 0; i < perThread; i++) {
+                            history.addCalculation(writer + "*" + i, "0");
+                        }
+                        return null;
+                    }));
+                }
+                start.countDown();
+                for (Future<?> future : futures) {
+                    future.get(60, TimeUnit.SECONDS);
+                }
+
+                List<CalculationEntry> entries = history.getHistory();
+                assertEquals(1_000, entries.size());
+                assertEquals(32_000, entries.get(entries.size() - 1).getSequence());
+                for (int i = 1; i < entries.size(); i++) {
+                    assertEquals(entries.get(i - 1).getSequence() + 1, entries.get(i).getSequence());
+                }
+            } finally {
+                pool.shutdown();
+                history.close();
+            }
+        }
+    }
+
+    private CalculationHistory newHistory(String name, int capacity) {
+        return new CalculationHistory(capacity,
+                new JsonHistoryStore(directory.resolve(name + ".json"), new ObjectMapper(), 1_000_000));
+    }
+
+    // Sequences are contiguous and each writer's entries appear in the order it added them
+    private static void assertConsistent(List<CalculationEntry> entries) {
+        int[] lastByWriter = new int[WRITERS];
+        java.util.Arrays.fill(lastByWriter, -1);
+        for (int i = 0; i < entries.size(); i++) {
+            CalculationEntry entry = entries.get(i);
+            if (i > 0) {
+                assertEquals(entries.get(i - 1).getSequence() + 1, entry.getSequence());
+            }
+            String[] parts = entry.getExpression().split("\\+");
+            int writer = Integer.parseInt(parts[0]);
+            int count = Integer.parseInt(parts[1]);
+            assertTrue(count > lastByWriter[writer], "writer " + writer + " out of order");
+            lastByWriter[writer] = count;
+        }
+    }
+}
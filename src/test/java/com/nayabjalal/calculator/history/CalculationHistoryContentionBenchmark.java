@@ -0,0 +1,123 @@
+package com.nayabjalal.calculator.history;
+
+import com.nayabjalal.calculator.history.CalculationHistory.CalculationEntry;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Appends from 1, 8 and 32 threads into one shared history of 100000 entries, so the striped
+// appender and the apply lock are contended. Throughput is summed over all threads. The store
+// discards what the journal hands it: with a real file the writer thread falls behind this many
+// appenders and its queue, not the appender, sets the pace (CalculationHistoryBenchmark covers
+// the journaled cost).
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CalculationHistoryContentionBenchmark {
+
+    private CalculationHistory history;
+
+    @State(Scope.Thread)
+    public static class Writer {
+        private int next;
+    }
+
+    @Setup
+    public void setUp() {
+        history = new CalculationHistory(100_000, new DiscardingStore());
+    }
+
+    // Keeps the journal's queue from carrying one iteration's backlog into the next
+    @TearDown(Level.Iteration)
+    public void drain() throws IOException {
+        history.flush();
+    }
+
+    @TearDown
+    public void tearDown() {
+        history.close();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void oneWriter(Writer writer) {
+        add(writer);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void eightWriters(Writer writer) {
+        add(writer);
+    }
+
+    @Benchmark
+    @Threads(32)
+    public void thirtyTwoWriters(Writer writer) {
+        add(writer);
+    }
+
+    private void add(Writer writer) {
+        int i = writer.next++;
+        history.addCalculation(i + " * 2", Integer.toString(i * 2));
+    }
+
+    private static final class DiscardingStore implements HistoryStore {
+        @Override
+        public List<CalculationEntry> load(int limit) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public void append(List<CalculationEntry> batch) {
+        }
+
+        @Override
+        public boolean needsCompaction() {
+            return false;
+        }
+
+        @Override
+        public void compact(List<CalculationEntry> snapshot) {
+        }
+
+        @Override
+        public void clear() {
+        }
+
+        @Override
+        public long count() {
+            return 0;
+        }
+
+        @Override
+        public List<CalculationEntry> read(long from, int count) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public long byteCount() {
+            return 0;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.nayabjalal.calculator.history;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nayabjalal.calculator.history.CalculationHistory.CalculationEntry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CalculationHistorySearchTest {
+
+    private static final long BASE = 1_700_000_000_000L;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void findsExpressionsBySubstringNewestFirst() throws Exception {
+        CalculationHistory history = newHistory("substring", 100);
+        try {
+            history.addCalculation("1+2", "3");
+            history.addCalculation("12*3", "36");
+            history.addCalculation("sqrt(144)", "12");
+            history.addCalculation("7-1", "6");
+
+            assertEquals(Arrays.asList("7-1", "sqrt(144)", "12*3", "1+2"),
+                    expressions(history.findByExpression("1", 10)));
+            assertEquals(Arrays.asList("12*3"), expressions(history.findByExpression("12", 10)));
+            assertEquals(Arrays.asList("sqrt(144)"), expressions(history.findByExpression("44", 10)));
+            assertEquals(Arrays.asList("sqrt(144)"), expressions(history.findByExpression("144", 10)));
+            assertEquals(Arrays.asList("sqrt(144)"), expressions(history.findByExpression("qrt(1", 10)));
+            assertEquals(Arrays.asList("7-1", "sqrt(144)"), expressions(history.findByExpression("1", 2)));
+            assertEquals(4, history.findByExpression("", 10).size());
+            assertTrue(history.findByExpression("9", 10).isEmpty());
+            assertTrue(history.findByExpression("2+1", 10).isEmpty());
+        } finally {
+            history.close();
+        }
+    }
+
+    @Test
+    void findsExpressionsByPrefix() throws Exception {
+        CalculationHistory history = newHistory("prefix", 100);
+        try {
+            history.addCalculation("sin(0)", "0");
+            history.addCalculation("sqrt(4)", "2");
+            history.addCalculation("sqrt(9)", "3");
+            history.addCalculation("2*sqrt(9)", "6");
+
+            assertEquals(Arrays.asList("sqrt(9)", "sqrt(4)", "sin(0)"),
+                    expressions(history.findByExpressionPrefix("s", 10)));
+            assertEquals(Arrays.asList("sqrt(9)", "sqrt(4)"), expressions(history.findByExpressionPrefix("sq", 10)));
+            assertEquals(Arrays.asList("sqrt(4)"), expressions(history.findByExpressionPrefix("sqrt(4", 10)));
+            assertTrue(history.findByExpressionPrefix("qrt", 10).isEmpty());
+        } finally {
+            history.close();
+        }
+    }
+
+    @Test
+    void findsResultsInRange() throws Exception {
+        CalculationHistory history = newHistory("result", 100);
+        try {
+            history.addCalculation("1+1", "2");
+            history.addCalculation("2*5", "10");
+            history.addCalculation("0-3", "-3");
+            history.addCalculation("1/0", "Error: Division by zero");
+            history.addCalculation("3*3", "9");
+
+            assertEquals(Arrays.asList("-3", "2", "9", "10"), results(history.findByResult(-5, 10, 10)));
+            assertEquals(Arrays.asList("2", "9"), results(history.findByResult(2, 9.5, 10)));
+            assertEquals(Arrays.asList("-3"), results(history.findByResult(-10, 10, 1)));
+            assertTrue(history.findByResult(11, 100, 10).isEmpty());
+            assertTrue(history.findByResult(5, 1, 10).isEmpty());
+        } finally {
+            history.close();
+        }
+    }
+
+    @Test
+    void evictedEntriesLeaveEveryIndex() throws Exception {
+        CalculationHistory history = newHistory("evict", 3);
+        try {
+            history.addCalculation("11+1", "12");
+            history.addCalculation("22+2", "24");
+            history.addCalculation("33+3", "36");
+            history.addCalculation("44+4", "48");
+            history.addCalculation("55+5", "60");
+
+            assertTrue(history.findByExpression("11", 10).isEmpty());
+            assertTrue(history.findByExpression("22+", 10).isEmpty());
+            assertTrue(history.findByExpressionPrefix("1", 10).isEmpty());
+            assertTrue(history.findByResult(0, 30, 10).isEmpty());
+            assertEquals(Arrays.asList("55+5", "44+4", "33+3"), expressions(history.findByExpression("+", 10)));
+            assertEquals(Arrays.asList("36", "48", "60"), results(history.findByResult(0, 100, 10)));
+            assertEquals(3, history.findByTime(0, Long.MAX_VALUE, 10).size());
+        } finally {
+            history.close();
+        }
+    }
+
+    @Test
+    void findsByTimeWhenTimestampsAreOutOfOrder() throws Exception {
+        Path file = directory.resolve("interleaved.json");
+        // As written by two processes whose clocks or commit order interleave
+        JsonHistoryStore store = new JsonHistoryStore(file, new ObjectMapper(), 1_000_000);
+        store.append(Arrays.asList(
+                new CalculationEntry("a", "1", BASE + 5_000, 1),
+                new CalculationEntry("b", "2", BASE + 1_000, 2),
+                new CalculationEntry("c", "3", BASE + 9_000, 3),
+                new CalculationEntry("d", "4", BASE + 3_000, 4),
+                new CalculationEntry("e", "5", BASE + 3_000, 5)));
+        store.close();
+
+        CalculationHistory history = new CalculationHistory(4,
+                new JsonHistoryStore(file, new ObjectMapper(), 1_000_000));
+        try {
+            // "a" was evicted on load; the rest come back in time order
+            assertEquals(Arrays.asList("b", "d", "e"),
+                    expressions(history.findByTime(BASE + 1_000, BASE + 5_000, 10)));
+            assertEquals(Arrays.asList("d", "e"), expressions(history.findByTime(BASE + 2_000, BASE + 4_000, 10)));
+            assertEquals(Arrays.asList("b"), expressions(history.findByTime(BASE, BASE + 9_000, 1)));
+            assertEquals(Arrays.asList("c"), expressions(history.findByTime(BASE + 9_000, BASE + 9_000, 10)));
+            assertTrue(history.findByTime(BASE + 5_000, BASE, 10).isEmpty());
+
+            history.addCalculation("f", "6");
+            history.flush();
+            // Real timestamps are kept, in memory and on disk
+            List<Long> millis = new ArrayList<>();
+            for (CalculationEntry entry : history.getHistory()) {
+                millis.add(entry.getEpochMillis());
+            }
+            assertEquals(Arrays.asList(BASE + 9_000, BASE + 3_000, BASE + 3_000), millis.subList(0, 3));
+        } finally {
+            history.close();
+        }
+
+        JsonHistoryStore reopened = new JsonHistoryStore(file, new ObjectMapper(), 1_000_000);
+        List<CalculationEntry> stored = reopened.load(10);
+        reopened.close();
+        // Closing compacts to the in-memory window: c, d, e and f
+        assertEquals(4, stored.size());
+        assertEquals(BASE + 9_000, stored.get(0).getEpochMillis());
+        assertEquals(BASE + 3_000, stored.get(1).getEpochMillis());
+    }
+
+    private CalculationHistory newHistory(String name, int capacity) {
+        return new CalculationHistory(capacity,
+                new JsonHistoryStore(directory.resolve(name + ".json"), new ObjectMapper(), 1_000_000));
+    }
+
+    private static List<String> expressions(List<CalculationEntry> entries) {
+        List<String> expressions = new ArrayList<>();
+        for (CalculationEntry entry : entries) {
+            expressions.add(entry.getExpression());
+        }
+        return expressions;
+    }
+
+    private static List<String> results(List<CalculationEntry> entries) {
+        List<String> results = new ArrayList<>();
+        for (CalculationEntry entry : entries) {
+            results.add(entry.getResult());
+        }
+        return results;
+    }
+}
@@ -0,0 +1,91 @@
+package com.nayabjalal.calculator.history;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nayabjalal.calculator.config.AppConfig;
+import com.nayabjalal.calculator.exception.CalculatorException;
+import com.nayabjalal.calculator.util.ExpressionEvaluator;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Records with the shipped calculator.jfc and reads the events back. Lives next to
+// CalculationHistory for its package-private constructor, so the history is a temporary one.
+class FlightRecorderEventsTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void emitsCalculatorEvents() throws Exception {
+        Path file = directory.resolve("calculator.jfr");
+        try (Recording recording = new Recording(Configuration.create(Paths.get("src/main/resources/calculator.jfc")))) {
+            recording.start();
+
+            ExpressionEvaluator.tryEvaluate("1 + 2");
+            ExpressionEvaluator.tryEvaluate("1 / 0");
+            ExpressionEvaluator.evaluateExpression("6 * 7");
+            assertThrows(CalculatorException.class, () -> ExpressionEvaluator.evaluateExpression("2 +"));
+
+            CalculationHistory history = new CalculationHistory(10,
+                    new JsonHistoryStore(directory.resolve("history.json"), new ObjectMapper(), 1_000_000));
+            history.addCalculation("6 * 7", "42");
+            history.flush();
+            history.close();
+
+            AppConfig.getInstance().saveConfig();
+
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+                .filter(event -> event.getEventType().getName().startsWith("com.nayabjalal.calculator."))
+                .collect(Collectors.toList());
+
+        List<String> outcomes = events.stream()
+                .filter(event -> event.getEventType().getName().endsWith(".Evaluation"))
+                .map(event -> event.getString("evaluator") + " " + event.getString("outcome") + " " + event.getInt("expressionLength"))
+                .collect(Collectors.toList());
+        assertTrue(outcomes.contains("interpreter SUCCESS 5"), outcomes.toString());
+        assertTrue(outcomes.contains("interpreter DIVISION_BY_ZERO 5"), outcomes.toString());
+        assertTrue(outcomes.stream().anyMatch(outcome -> outcome.endsWith(" SUCCESS 5") && !outcome.startsWith("interpreter")), outcomes.toString());
+        assertTrue(outcomes.stream().anyMatch(outcome -> outcome.endsWith(" EXPRESSION_PARSE_ERROR 3")), outcomes.toString());
+
+        RecordedEvent load = single(events, "HistoryLoad");
+        assertEquals(0, load.getInt("entries"));
+        List<RecordedEvent> saves = events.stream()
+                .filter(event -> event.getEventType().getName().endsWith(".HistorySave"))
+                .collect(Collectors.toList());
+        RecordedEvent append = saves.stream().filter(event -> !event.getBoolean("compaction")).findFirst().orElseThrow();
+        assertEquals(1, append.getInt("entries"));
+        assertTrue(append.getLong("bytes") > 0);
+        assertTrue(saves.stream().anyMatch(event -> event.getBoolean("compaction")), "compaction on close");
+
+        // Creating the config writes the defaults first if the file is missing
+        RecordedEvent save = events.stream()
+                .filter(event -> event.getEventType().getName().endsWith(".ConfigSave"))
+                .reduce((first, second) -> second).orElseThrow();
+        assertTrue(save.getLong("bytes") > 0);
+        assertTrue(save.getString("path").endsWith("calculator-config.json"));
+    }
+
+    private static RecordedEvent single(List<RecordedEvent> events, String name) {
+        List<RecordedEvent> matching = events.stream()
+                .filter(event -> event.getEventType().getName().equals("com.nayabjalal.calculator." + name))
+                .collect(Collectors.toList());
+        assertEquals(1, matching.size(), name);
+        return matching.get(0);
+    }
+}
@@ -0,0 +1,151 @@
+package com.nayabjalal.calculator.history;
+
+import com.nayabjalal.calculator.history.CalculationHistory.CalculationEntry;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static com.nayabjalal.calculator.history.JsonHistoryStoreTest.entries;
+import static com.nayabjalal.calculator.history.JsonHistoryStoreTest.sequences;
+import static com.nayabjalal.calculator.history.JsonHistoryStoreTest.sequencesOf;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HistoryJournalTest {
+
+    @Test
+    void keepsAFailedBatchAndReportsItToFlush() throws Exception {
+        RecordingStore store = new RecordingStore();
+        // A wide group-commit window, so the flush always joins the failing batch
+        HistoryJournal journal = new HistoryJournal(store, Collections::emptyList, 1_000, 100);
+        journal.start();
+        try {
+            store.failures = 1;
+            entries(1, 3).forEach(journal::append);
+            IOException failure = assertThrows(IOException.class, journal::flush);
+            assertSame(store.lastFailure, failure);
+            assertTrue(store.appended.isEmpty());
+
+            // The kept batch goes out ahead of what was appended since
+            entries(4, 2).forEach(journal::append);
+            journal.flush();
+            assertEquals(sequences(1, 5), sequencesOf(store.appended));
+        } finally {
+            journal.shutdown();
+        }
+    }
+
+    @Test
+    void flushGivesUpWhenTheStoreDoesNotAnswer() throws Exception {
+        RecordingStore store = new RecordingStore();
+        store.stalled = new CountDownLatch(1);
+        HistoryJournal journal = new HistoryJournal(store, Collections::emptyList, 10, 100);
+        journal.start();
+        try {
+            entries(1, 1).forEach(journal::append);
+            IOException failure = assertThrows(IOException.class, journal::flush);
+            assertTrue(failure.getMessage().contains("not saved"));
+        } finally {
+            store.stalled.countDown();
+            journal.shutdown();
+        }
+        assertEquals(sequences(1, 1), sequencesOf(store.appended));
+    }
+
+    @Test
+    void dropsEntriesQueuedBeforeAClear() throws Exception {
+        RecordingStore store = new RecordingStore();
+        HistoryJournal journal = new HistoryJournal(store, Collections::emptyList, 10, 100);
+        journal.start();
+        try {
+            store.stalled = new CountDownLatch(1);
+            entries(1, 1).forEach(journal::append);
+            store.writing.await();
+            // Queued behind the stalled write, then cleared before it is written
+            entries(2, 2).forEach(journal::append);
+            journal.clear(4);
+            entries(4, 1).forEach(journal::append);
+            store.stalled.countDown();
+            journal.flush();
+            assertEquals(sequences(1, 1), sequencesOf(store.appended.subList(0, 1)));
+            assertEquals(1, store.clears);
+            assertEquals(sequences(4, 1), sequencesOf(store.appended.subList(1, store.appended.size())));
+        } finally {
+            journal.shutdown();
+        }
+    }
+
+    // Fails the next failures appends, and blocks in append until stalled is counted down
+    private static final class RecordingStore implements HistoryStore {
+        final List<CalculationEntry> appended = Collections.synchronizedList(new ArrayList<>());
+        volatile int failures;
+        volatile CountDownLatch stalled;
+        final CountDownLatch writing = new CountDownLatch(1);
+        volatile IOException lastFailure;
+        volatile int clears;
+
+        @Override
+        public List<CalculationEntry> load(int limit) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public void append(List<CalculationEntry> batch) throws IOException {
+            CountDownLatch latch = stalled;
+            if (latch != null) {
+                writing.countDown();
+                try {
+                    latch.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                stalled = null;
+            }
+            if (failures > 0) {
+                failures--;
+                lastFailure = new IOException("disk full");
+                throw lastFailure;
+            }
+            appended.addAll(batch);
+        }
+
+        @Override
+        public boolean needsCompaction() {
+            return false;
+        }
+
+        @Override
+        public void compact(List<CalculationEntry> snapshot) {
+        }
+
+        @Override
+        public void clear() {
+            clears++;
+        }
+
+        @Override
+        public long count() {
+            return appended.size();
+        }
+
+        @Override
+        public List<CalculationEntry> read(long from, int count) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public long byteCount() {
+            return 0;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
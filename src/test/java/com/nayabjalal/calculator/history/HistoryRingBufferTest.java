@@ -0,0 +1,91 @@
+package com.nayabjalal.calculator.history;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nayabjalal.calculator.history.CalculationHistory.CalculationEntry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.nayabjalal.calculator.history.JsonHistoryStoreTest.sequencesOf;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HistoryRingBufferTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void growsThenEvictsOldestFirst() {
+        // Past the initial 64 slots, so the arrays grow before the ring wraps
+        HistoryRingBuffer ring = new HistoryRingBuffer(100);
+        for (long i = 1; i <= 250; i++) {
+            ring.add("e" + i, String.valueOf(i), 1_000 * i, i);
+        }
+        assertEquals(100, ring.size());
+        assertEquals(100, ring.capacity());
+        for (int index = 0; index < ring.size(); index++) {
+            long sequence = 151 + index;
+            assertEquals(sequence, ring.sequenceAt(index));
+            assertEquals("e" + sequence, ring.expressionAt(index));
+            assertEquals(String.valueOf(sequence), ring.resultAt(index));
+            assertEquals(1_000 * sequence, ring.timestampAt(index));
+            assertEquals("e" + sequence, ring.get(index).getExpression());
+        }
+    }
+
+    @Test
+    void recentIsOldestFirstAfterWrapping() {
+        HistoryRingBuffer ring = new HistoryRingBuffer(5);
+        for (long i = 1; i <= 13; i++) {
+            ring.add("e" + i, "r", i, i);
+        }
+        assertEquals(Arrays.asList(11L, 12L, 13L), sequencesOf(ring.recent(3)));
+        assertEquals(Arrays.asList(9L, 10L, 11L, 12L, 13L), sequencesOf(ring.recent(5)));
+        assertEquals(Arrays.asList(9L, 10L, 11L, 12L, 13L), sequencesOf(ring.recent(50)));
+        assertTrue(ring.recent(0).isEmpty());
+        assertTrue(ring.recent(-1).isEmpty());
+    }
+
+    @Test
+    void startsOverAfterClear() {
+        HistoryRingBuffer ring = new HistoryRingBuffer(3);
+        for (long i = 1; i <= 7; i++) {
+            ring.add("e" + i, "r", i, i);
+        }
+        ring.clear();
+        assertEquals(0, ring.size());
+        assertTrue(ring.recent(3).isEmpty());
+        ring.add("x", "r", 8, 8);
+        ring.add("y", "r", 9, 9);
+        assertEquals(Arrays.asList(8L, 9L), sequencesOf(ring.recent(3)));
+    }
+
+    @Test
+    void historyReturnsTheNewestAfterWrapping() throws Exception {
+        CalculationHistory history = new CalculationHistory(4,
+                new JsonHistoryStore(directory.resolve("history.json"), new ObjectMapper(), 1_000_000));
+        try {
+            for (int i = 1; i <= 10; i++) {
+                history.addCalculation(i + "+0", String.valueOf(i));
+            }
+            assertEquals(Arrays.asList("8", "9", "10"), resultsOf(history.getRecentHistory(3)));
+            assertEquals(Arrays.asList("7", "8", "9", "10"), resultsOf(history.getHistory()));
+            assertEquals(4, history.size());
+        } finally {
+            history.close();
+        }
+    }
+
+    private static List<String> resultsOf(List<CalculationEntry> entries) {
+        List<String> results = new ArrayList<>();
+        for (CalculationEntry entry : entries) {
+            results.add(entry.getResult());
+        }
+        return results;
+    }
+}
@@ -0,0 +1,148 @@
+package com.nayabjalal.calculator.history;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nayabjalal.calculator.history.CalculationHistory.CalculationEntry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JsonHistoryStoreTest {
+
+    private static final long BASE = 1_700_000_000_000L;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void replaysTheJournalAfterTheSnapshot() throws Exception {
+        JsonHistoryStore store = newStore(1_000);
+        store.load(100);
+        store.append(entries(1, 3));
+        store.compact(entries(1, 3));
+        store.append(entries(4, 2));
+        store.close();
+
+        JsonHistoryStore reopened = newStore(1_000);
+        assertEquals(sequences(1, 5), sequencesOf(reopened.load(100)));
+        assertEquals(5, reopened.count());
+        assertEquals(sequences(4, 2), sequencesOf(reopened.load(2)));
+        assertEquals(sequences(2, 3), sequencesOf(reopened.read(1, 3)));
+        reopened.close();
+    }
+
+    @Test
+    void dropsATornFinalLineAndKeepsAppending() throws Exception {
+        JsonHistoryStore store = newStore(1_000);
+        store.load(100);
+        store.append(entries(1, 3));
+        store.close();
+        // A crash in the middle of writing the fourth line
+        Files.write(journal(), "{\"expression\":\"e4\",\"res".getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+
+        JsonHistoryStore reopened = newStore(1_000);
+        assertEquals(sequences(1, 3), sequencesOf(reopened.load(100)));
+        reopened.append(entries(4, 2));
+        reopened.close();
+
+        JsonHistoryStore again = newStore(1_000);
+        List<CalculationEntry> loaded = again.load(100);
+        again.close();
+        assertEquals(sequences(1, 5), sequencesOf(loaded));
+        assertEquals("e4", loaded.get(3).getExpression());
+    }
+
+    @Test
+    void compactsOnceTheJournalReachesTheThreshold() throws Exception {
+        JsonHistoryStore store = newStore(5);
+        store.load(100);
+        store.append(entries(1, 4));
+        assertFalse(store.needsCompaction());
+        store.append(entries(5, 1));
+        assertTrue(store.needsCompaction());
+
+        store.compact(entries(3, 3));
+        assertFalse(store.needsCompaction());
+        assertEquals(0, Files.size(journal()));
+        assertEquals(3, store.count());
+        store.close();
+
+        JsonHistoryStore reopened = newStore(5);
+        assertEquals(sequences(3, 3), sequencesOf(reopened.load(100)));
+        reopened.close();
+    }
+
+    @Test
+    void skipsJournalLinesItAlreadyHas() throws Exception {
+        JsonHistoryStore store = newStore(1_000);
+        store.load(100);
+        store.compact(entries(1, 3));
+        // Written again after a crash between renaming the snapshot and truncating the journal,
+        // and a batch retried after a failed write
+        store.append(entries(2, 3));
+        store.append(entries(4, 2));
+        store.close();
+
+        JsonHistoryStore reopened = newStore(1_000);
+        assertEquals(sequences(1, 5), sequencesOf(reopened.load(100)));
+        reopened.close();
+    }
+
+    @Test
+    void clearsEverything() throws Exception {
+        JsonHistoryStore store = newStore(1_000);
+        store.load(100);
+        store.append(entries(1, 3));
+        store.clear();
+        assertEquals(0, store.count());
+        store.close();
+
+        JsonHistoryStore reopened = newStore(1_000);
+        assertTrue(reopened.load(100).isEmpty());
+        reopened.close();
+    }
+
+    private JsonHistoryStore newStore(int compactionThreshold) {
+        return new JsonHistoryStore(directory.resolve("history.json"), new ObjectMapper(), compactionThreshold);
+    }
+
+    private Path journal() {
+        return directory.resolve("history.json.journal");
+    }
+
+    static List<CalculationEntry> entries(long firstSequence, int count) {
+        List<CalculationEntry> entries = new ArrayList<>(count);
+        for (long sequence = firstSequence; sequence < firstSequence + count; sequence++) {
+            entries.add(new CalculationEntry("e" + sequence, String.valueOf(sequence), BASE + sequence * 1_000,
+                    sequence));
+        }
+        return entries;
+    }
+
+    static List<Long> sequences(long first, int count) {
+        List<Long> sequences = new ArrayList<>(count);
+        for (long sequence = first; sequence < first + count; sequence++) {
+            sequences.add(sequence);
+        }
+        return sequences;
+    }
+
+    static List<Long> sequencesOf(List<CalculationEntry> entries) {
+        List<Long> sequences = new ArrayList<>(entries.size());
+        for (CalculationEntry entry : entries) {
+            sequences.add(entry.getSequence());
+        }
+        return sequences;
+    }
+}
@@ -0,0 +1,204 @@
+package com.nayabjalal.calculator.history;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nayabjalal.calculator.history.CalculationHistory.CalculationEntry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MappedHistoryStoreTest {
+
+    private static final long BASE = 1_700_000_000_000L;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void roundTripsAcrossIndexChunks() throws Exception {
+        Path base = directory.resolve("history");
+        // More than two 4096-record index chunks, in batches that straddle chunk boundaries
+        List<CalculationEntry> written = entries(1, 9_000);
+        try (MappedHistoryStore store = MappedHistoryStore.open(base, Collections::emptyList)) {
+            for (int from = 0; from < written.size(); from += 1_000) {
+                store.append(written.subList(from, Math.min(written.size(), from + 1_000)));
+            }
+            assertSameEntries(written, store.read(0, Integer.MAX_VALUE));
+        }
+        try (MappedHistoryStore store = MappedHistoryStore.open(base, Collections::emptyList)) {
+            assertEquals(9_000, store.count());
+            assertSameEntries(written, store.read(0, Integer.MAX_VALUE));
+            assertSameEntries(written.subList(4_090, 4_100), store.read(4_090, 10));
+        }
+    }
+
+    @Test
+    void heapGrowsOnlyByWhatIsWritten() throws Exception {
+        Path base = directory.resolve("history");
+        try (MappedHistoryStore store = MappedHistoryStore.open(base, Collections::emptyList)) {
+            store.append(Arrays.asList(new CalculationEntry("1+2", "3", BASE, 1),
+                    new CalculationEntry("√16", "4", BASE, 2)));
+            assertEquals(3 + 1 + "√16".getBytes("UTF-8").length + 1, Files.size(directory.resolve("history.heap")));
+        }
+    }
+
+    @Test
+    void migratesOnlyWhenCreated() throws Exception {
+        JsonHistoryStore json = new JsonHistoryStore(directory.resolve("history.json"), new ObjectMapper(), 1_000_000);
+        List<CalculationEntry> legacy = entries(1, 50);
+        json.append(legacy);
+        json.close();
+
+        Path base = directory.resolve("history");
+        AtomicInteger migrations = new AtomicInteger();
+        JsonHistoryStore source = new JsonHistoryStore(directory.resolve("history.json"), new ObjectMapper(), 1_000_000);
+        try (MappedHistoryStore store = MappedHistoryStore.open(base, () -> {
+            migrations.incrementAndGet();
+            return source.load(Integer.MAX_VALUE);
+        })) {
+            assertSameEntries(legacy, store.load(100));
+        }
+        try (MappedHistoryStore store = MappedHistoryStore.open(base, () -> {
+            migrations.incrementAndGet();
+            return source.load(Integer.MAX_VALUE);
+        })) {
+            assertEquals(50, store.count());
+        }
+        source.close();
+        assertEquals(1, migrations.get());
+    }
+
+    @Test
+    void pagesCountsAndClears() throws Exception {
+        List<CalculationEntry> written = entries(1, 100);
+        try (MappedHistoryStore store = MappedHistoryStore.open(directory.resolve("history"), Collections::emptyList)) {
+            store.append(written);
+            assertEquals(100, store.count());
+            assertSameEntries(written.subList(10, 30), store.read(10, 20));
+            assertSameEntries(written.subList(90, 100), store.read(90, 20));
+            assertSameEntries(written.subList(80, 100), store.load(20));
+            assertTrue(store.read(100, 10).isEmpty());
+            assertTrue(store.read(5, 0).isEmpty());
+
+            store.clear();
+            assertEquals(0, store.count());
+            assertTrue(store.load(10).isEmpty());
+            List<CalculationEntry> more = entries(101, 5);
+            store.append(more);
+            assertEquals(5, store.count());
+            assertSameEntries(more, store.read(0, 10));
+        }
+    }
+
+    @Test
+    void ignoresAnUnpublishedBatchAfterACrash() throws Exception {
+        Path base = directory.resolve("history");
+        List<CalculationEntry> written = entries(1, 10);
+        try (MappedHistoryStore store = MappedHistoryStore.open(base, Collections::emptyList)) {
+            store.append(written);
+        }
+        // A writer that died after writing heap bytes and records but before publishing the count
+        Path heapFile = directory.resolve("history.heap");
+        long heapEnd = Files.size(heapFile);
+        try (FileChannel heap = FileChannel.open(heapFile, StandardOpenOption.WRITE);
+             FileChannel index = FileChannel.open(directory.resolve("history.idx"), StandardOpenOption.WRITE)) {
+            heap.write(ByteBuffer.wrap("garbage".getBytes("UTF-8")), heapEnd);
+            index.write(ByteBuffer.wrap(new byte[32]), 64 + 10 * 32);
+        }
+
+        try (MappedHistoryStore store = MappedHistoryStore.open(base, Collections::emptyList)) {
+            assertEquals(10, store.count());
+            assertSameEntries(written, store.read(0, 20));
+            List<CalculationEntry> more = entries(11, 3);
+            store.append(more);
+            List<CalculationEntry> all = new ArrayList<>(written);
+            all.addAll(more);
+            assertSameEntries(all, store.read(0, 20));
+        }
+    }
+
+    @Test
+    void rejectsForeignFiles() throws Exception {
+        Files.write(directory.resolve("history.idx"), new byte[] {1, 2, 3, 4});
+        assertThrows(java.io.IOException.class,
+                () -> MappedHistoryStore.open(directory.resolve("history"), Collections::emptyList));
+    }
+
+    @Test
+    void twoWritersShareTheFile() throws Exception {
+        Path base = directory.resolve("history");
+        int batches = 200;
+        int perBatch = 10;
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try (MappedHistoryStore first = MappedHistoryStore.open(base, Collections::emptyList);
+             MappedHistoryStore second = MappedHistoryStore.open(base, Collections::emptyList)) {
+            List<Future<?>> writers = new ArrayList<>();
+            for (MappedHistoryStore store : Arrays.asList(first, second)) {
+                long firstSequence = store == first ? 1 : 1_000_001;
+                writers.add(pool.submit(() -> {
+                    for (int b = 0; b < batches; b++) {
+                        store.append(entries(firstSequence + (long) b * perBatch, perBatch));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> writer : writers) {
+                writer.get();
+            }
+
+            assertEquals(2 * batches * perBatch, first.count());
+            assertEquals(first.count(), second.count());
+            List<CalculationEntry> stored = second.read(0, Integer.MAX_VALUE);
+            Set<Long> sequences = new HashSet<>();
+            long[] lastByWriter = new long[2];
+            for (CalculationEntry entry : stored) {
+                // Each writer's sequence is kept, in the order it appended, and the text matches it
+                int writer = entry.getSequence() > 1_000_000 ? 1 : 0;
+                assertTrue(entry.getSequence() > lastByWriter[writer]);
+                lastByWriter[writer] = entry.getSequence();
+                assertEquals("e" + entry.getSequence(), entry.getExpression());
+                sequences.add(entry.getSequence());
+            }
+            assertEquals(stored.size(), sequences.size());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static List<CalculationEntry> entries(long firstSequence, int count) {
+        List<CalculationEntry> entries = new ArrayList<>(count);
+        for (long sequence = firstSequence; sequence < firstSequence + count; sequence++) {
+            entries.add(new CalculationEntry("e" + sequence, String.valueOf(sequence * 2), BASE + sequence * 1_000,
+                    sequence));
+        }
+        return entries;
+    }
+
+    private static void assertSameEntries(List<CalculationEntry> expected, List<CalculationEntry> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getExpression(), actual.get(i).getExpression());
+            assertEquals(expected.get(i).getResult(), actual.get(i).getResult());
+            assertEquals(expected.get(i).getEpochMillis(), actual.get(i).getEpochMillis());
+            assertEquals(expected.get(i).getSequence(), actual.get(i).getSequence());
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.nayabjalal.calculator.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.Random;
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MetricsRegistryTest {
+
+    @Test
+    void histogramBucketsStayWithinOneSixteenth() {
+        for (long value = 0; value < 1 << 20; value += 1 + value / 100) {
+            int index = LatencyHistogram.indexOf(value);
+            long upper = LatencyHistogram.upperBound(index);
+            assertTrue(value <= upper && upper - value <= value / 16, value + " -> " + upper);
+            if (index > 0) {
+                assertTrue(LatencyHistogram.upperBound(index - 1) < value, "bucket below " + value);
+            }
+        }
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.upperBound(LatencyHistogram.indexOf(Long.MAX_VALUE)));
+    }
+
+    @Test
+    void percentilesMatchRecordedValues() {
+        LatencyHistogram histogram = new MetricsRegistry().histogram("latency");
+        long[] values = new long[100_000];
+        Random random = new Random(24);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (long) Math.exp(random.nextDouble() * 20);
+            histogram.record(values[i]);
+        }
+        java.util.Arrays.sort(values);
+        for (double percentile : new double[] {50, 90, 99, 100}) {
+            long exact = values[(int) Math.ceil(percentile / 100 * values.length) - 1];
+            long reported = histogram.getValueAtPercentile(percentile);
+            assertTrue(reported >= exact && reported - exact <= exact / 16, percentile + ": " + reported + " vs " + exact);
+        }
+        assertEquals(values[values.length - 1], histogram.getMax());
+        assertEquals(values.length, histogram.getCount());
+    }
+
+    @Test
+    void exposesEveryMetricOverJmx() throws Exception {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("config.get").add(3);
+        registry.histogram("expression.parse").record(1500);
+        registry.gauge("history.size", () -> 42);
+        assertThrows(IllegalArgumentException.class, () -> registry.histogram("config.get"));
+
+        MBeanServer server = MBeanServerFactory.newMBeanServer();
+        ObjectName name = new ObjectName(Metrics.OBJECT_NAME);
+        server.registerMBean(new MetricsMBean(registry), name);
+        Map<String, Long> sample = registry.sample();
+        assertEquals(sample.size(), server.getMBeanInfo(name).getAttributes().length);
+        assertEquals(3L, server.getAttribute(name, "config.get"));
+        assertEquals(42L, server.getAttribute(name, "history.size"));
+        assertEquals(1L, server.getAttribute(name, "expression.parse.count"));
+        assertEquals(1500L, server.getAttribute(name, "expression.parse.max"));
+
+        String dump = registry.format();
+        assertTrue(dump.contains("config.get 3\n"), dump);
+        assertTrue(dump.contains("expression.parse count=1 mean=1.5"), dump);
+    }
+}
@@ -0,0 +1,177 @@
+package com.nayabjalal.calculator.server;
+
+import com.nayabjalal.calculator.config.AppConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EvaluationServerTest {
+
+    private static final int CLIENTS = 8;
+    private static final int REQUESTS_PER_CLIENT = 500;
+
+    private EvaluationServer server;
+    private HttpClient client;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new EvaluationServer(0, 1024, false);
+        server.start();
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    @Test
+    void evaluatesSingleAndBatchRequests() throws Exception {
+        assertEquals("14\n", post("/evaluate", "2+3*4").body());
+        assertEquals(400, post("/evaluate", "1/0").statusCode());
+        assertEquals("3\nError\n0.5\n", post("/batch", "1+2\n2+\n1/2\n").body());
+    }
+
+    @Test
+    void limitsBatchBodiesAndLines() throws Exception {
+        String tooLong = "1" + "+1".repeat(AppConfig.getInstance().snapshot().getEvaluationLimits().getMaxLength());
+        assertEquals("2\nError\n3\n", post("/batch", "1+1\r\n" + tooLong + "\n1+2").body());
+        assertEquals(413, post("/batch", "1+1\n".repeat(300_000)).statusCode());
+        // No Content-Length: sent chunked, so the limit is only found while reading
+        byte[] chunked = "1+1\n".repeat(300_000).getBytes(StandardCharsets.US_ASCII);
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + "/batch"))
+                .POST(HttpRequest.BodyPublishers.ofInputStream(() -> new ByteArrayInputStream(chunked)))
+                .build();
+        assertEquals(413, client.send(request, HttpResponse.BodyHandlers.ofString()).statusCode());
+        assertEquals(405, client.send(HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + "/batch"))
+                .GET().build(), HttpResponse.BodyHandlers.ofString()).statusCode());
+        // Only the batch that was evaluated
+        assertEquals(1, server.getServedCount());
+        assertEquals(2, EvaluationServer.run("not-a-port"));
+    }
+
+    @Test
+    void servesPipelinedRequestsInOrder() throws Exception {
+        String request = "POST /evaluate HTTP/1.1\r\nHost: localhost\r\nContent-Length: 3\r\n\r\n";
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+            OutputStream out = socket.getOutputStream();
+            out.write((request + "1+1" + request + "2*4").getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+            assertEquals("2", readResponseBody(in));
+            assertEquals("8", readResponseBody(in));
+        }
+    }
+
+    @Test
+    void servesConcurrentClients() throws Exception {
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int c = 0; c < CLIENTS; c++) {
+            int seed = c;
+            futures.add(clients.submit(() -> {
+                for (int i = 0; i < REQUESTS_PER_CLIENT; i++) {
+                    HttpResponse<String> response = post("/evaluate", "(" + seed + "+" + i + ")*2");
+                    assertEquals(200, response.statusCode());
+                    assertEquals((seed + i) * 2 + "\n", response.body());
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        clients.shutdown();
+
+        assertEquals(CLIENTS * REQUESTS_PER_CLIENT, server.getServedCount());
+    }
+
+    @Test
+    void shedsLoadWhenQueueIsFull() throws Exception {
+        try (EvaluationServer saturated = new EvaluationServer(0, 0, false)) {
+            saturated.start();
+            HttpResponse<String> response = client.send(HttpRequest.newBuilder(
+                            URI.create("http://localhost:" + saturated.getPort() + "/evaluate?expression=1%2B1"))
+                    .GET().build(), HttpResponse.BodyHandlers.ofString());
+            assertEquals(503, response.statusCode());
+            assertTrue(saturated.getShedCount() > 0);
+        }
+    }
+
+    @Test
+    void shedsLoadOnceTheWorkersAndQueueAreBusy() throws Exception {
+        int maxQueued = 8;
+        List<Socket> stalled = new ArrayList<>();
+        try (EvaluationServer saturated = new EvaluationServer(0, maxQueued, false)) {
+            saturated.start();
+            // Each request promises a body it never finishes sending, so it holds a worker or
+            // waits behind one until its socket is closed
+            for (int i = 0; i < maxQueued; i++) {
+                Socket socket = new Socket(InetAddress.getLoopbackAddress(), saturated.getPort());
+                stalled.add(socket);
+                socket.getOutputStream().write(("POST /batch HTTP/1.1\r\nHost: localhost\r\n"
+                        + "Content-Length: 1000\r\n\r\n1+1\n").getBytes(StandardCharsets.US_ASCII));
+                socket.getOutputStream().flush();
+            }
+            long deadline = System.nanoTime() + 5_000_000_000L;
+            while (saturated.getInFlightCount() < maxQueued && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(maxQueued, saturated.getInFlightCount());
+
+            HttpResponse<String> response = client.send(HttpRequest.newBuilder(
+                            URI.create("http://localhost:" + saturated.getPort() + "/evaluate?expression=1%2B1"))
+                    .GET().build(), HttpResponse.BodyHandlers.ofString());
+            assertEquals(503, response.statusCode());
+            assertEquals(1, saturated.getShedCount());
+        } finally {
+            for (Socket socket : stalled) {
+                socket.close();
+            }
+        }
+    }
+
+    private HttpResponse<String> post(String path, String body) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + path))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static String readResponseBody(BufferedReader in) throws Exception {
+        int contentLength = 0;
+        String line;
+        while (!(line = in.readLine()).isEmpty()) {
+            if (line.toLowerCase().startsWith("content-length:")) {
+                contentLength = Integer.parseInt(line.substring("content-length:".length()).trim());
+            }
+        }
+        char[] body = new char[contentLength];
+        int read = 0;
+        while (read < contentLength) {
+            read += in.read(body, read, contentLength - read);
+        }
+        return new String(body).trim();
+    }
+}
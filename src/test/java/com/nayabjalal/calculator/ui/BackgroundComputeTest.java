@@ -0,0 +1,86 @@
+package com.nayabjalal.calculator.ui;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import javax.swing.JProgressBar;
+import javax.swing.SwingUtilities;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BackgroundComputeTest {
+
+    private final JProgressBar indicator = new JProgressBar();
+    private final BackgroundCompute compute = new BackgroundCompute(2, indicator);
+    private final BlockingQueue<Object> outcomes = new ArrayBlockingQueue<>(4);
+
+    @Test
+    void deliversResultsOnTheEventThread() throws Exception {
+        SwingUtilities.invokeAndWait(() -> compute.submit(() -> 6 * 7, 1000,
+                result -> outcomes.add(SwingUtilities.isEventDispatchThread() ? result : "wrong thread"),
+                outcomes::add));
+        assertEquals(42, outcomes.poll(5, TimeUnit.SECONDS));
+        SwingUtilities.invokeAndWait(() -> assertFalse(indicator.isVisible()));
+    }
+
+    @Test
+    void reportsErrorsAndTimeouts() throws Exception {
+        CountDownLatch interrupted = new CountDownLatch(1);
+        SwingUtilities.invokeAndWait(() -> {
+            compute.submit(() -> {
+                throw new IllegalStateException("failed");
+            }, 1000, outcomes::add, outcomes::add);
+            compute.submit(() -> {
+                try {
+                    Thread.sleep(10_000);
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                }
+                return "late";
+            }, 50, outcomes::add, outcomes::add);
+        });
+        assertTrue(outcomes.poll(5, TimeUnit.SECONDS) instanceof IllegalStateException);
+        assertTrue(outcomes.poll(5, TimeUnit.SECONDS) instanceof TimeoutException);
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        assertNull(outcomes.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void cancelledTasksNeverCallBack() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        BackgroundCompute.Task[] task = new BackgroundCompute.Task[1];
+        SwingUtilities.invokeAndWait(() -> task[0] = compute.submit(() -> {
+            started.countDown();
+            Thread.sleep(200);
+            return "done";
+        }, 0, outcomes::add, outcomes::add));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        SwingUtilities.invokeAndWait(() -> {
+            assertTrue(task[0].cancel());
+            assertFalse(task[0].cancel());
+        });
+        assertNull(outcomes.poll(500, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void watchdogCountsLongDispatches() throws Exception {
+        EdtWatchdog watchdog = EdtWatchdog.install();
+        long before = watchdog.getStallCount();
+        SwingUtilities.invokeAndWait(() -> { });
+        SwingUtilities.invokeAndWait(() -> {
+            long end = System.nanoTime() + (EdtWatchdog.THRESHOLD_MILLIS + 30) * 1_000_000;
+            while (System.nanoTime() < end) {
+                Thread.onSpinWait();
+            }
+        });
+        SwingUtilities.invokeAndWait(() -> { });
+        assertTrue(watchdog.getStallCount() > before);
+    }
+}
@@ -0,0 +1,128 @@
+package com.nayabjalal.calculator.util;
+
+import com.nayabjalal.calculator.exception.CalculatorException;
+import com.nayabjalal.calculator.expression.ExpressionCompiler;
+import com.nayabjalal.calculator.expression.EvaluationError;
+import com.nayabjalal.calculator.expression.EvaluationLimits;
+import com.nayabjalal.calculator.expression.EvaluationResult;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExpressionEvaluatorTest {
+
+    @Test
+    void reportsErrorTypeAndPositionWithoutThrowing() {
+        assertFailure("12 / 0", EvaluationError.DIVISION_BY_ZERO, 3);
+        assertFailure("2 + x", EvaluationError.UNEXPECTED_CHARACTER, 4);
+        assertFailure("(1+2))", EvaluationError.UNMATCHED_CLOSE, 5);
+        assertFailure("3*(1+2", EvaluationError.UNMATCHED_OPEN, 2);
+        assertFailure("1..2", EvaluationError.INVALID_NUMBER, 0);
+        assertFailure("   ", EvaluationError.EMPTY, -1);
+
+        EvaluationResult ok = ExpressionEvaluator.tryEvaluate("2+3*4");
+        assertTrue(ok.isSuccess());
+        assertEquals(14.0, ok.getValue());
+    }
+
+    @Test
+    void primitiveCoreMatchesTheCompiledPath() throws CalculatorException {
+        String[] inputs = {"2+3*4", "(2+3)*4", " 12.5 / ( 4 - 1.5 ) ", "2^3^2", "17 % 5 * 3", ".5+.5",
+                "1 000 + 1", "((((7))))", "10 - 4 - 3", "2 ^ 0.5"};
+        for (String input : inputs) {
+            assertEquals(ExpressionEvaluator.evaluateExpression(input), ExpressionEvaluator.evaluate(input), input);
+        }
+        // Any CharSequence, read in place
+        StringBuilder builder = new StringBuilder("6 * 7");
+        assertEquals(42.0, ExpressionEvaluator.evaluate(builder));
+        builder.setCharAt(0, '8');
+        assertEquals(56.0, ExpressionEvaluator.evaluate(builder));
+    }
+
+    @Test
+    void allocatesNothingInSteadyState() throws CalculatorException {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        StringBuilder input = new StringBuilder(" (12.5 + 3) * 4 - 10 / 4 ^ 2 % 7");
+        double sum = 0;
+        for (int i = 0; i < 20_000; i++) {
+            sum += ExpressionEvaluator.evaluate(input);
+        }
+        long thread = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < 10_000; i++) {
+            sum += ExpressionEvaluator.evaluate(input);
+        }
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+        assertTrue(sum > 0);
+        // Less than a byte per evaluation leaves room for the measurement itself
+        assertTrue(allocated < 10_000, allocated + " bytes allocated");
+    }
+
+    @Test
+    void throwingPathMatchesResultPath() {
+        for (String input : new String[] {"1/0", "2+", "7 $ 2", "(1", "1)", "4..2"}) {
+            EvaluationResult result = ExpressionEvaluator.tryEvaluate(input);
+            CalculatorException e = assertThrows(CalculatorException.class, () -> ExpressionEvaluator.evaluate(input));
+            assertEquals(result.getErrorType(), e.getErrorType());
+            assertEquals(result.getMessage(), e.getMessage());
+            assertEquals(0, e.getStackTrace().length);
+        }
+    }
+
+    @Test
+    void stopsAtTheLimits() {
+        EvaluationLimits limits = new EvaluationLimits(20, 3, 9, 3, 0);
+        assertLimit("1+2+3+4+5+6+7+8+9+10+11", limits, EvaluationError.INPUT_TOO_LONG, 20);
+        assertLimit("((((1))))", limits, EvaluationError.NESTING_TOO_DEEP, 3);
+        assertLimit("(1)+(2)+(3)", limits, EvaluationError.TOO_MANY_TOKENS, 9);
+        assertLimit("1+2+3+4+5", limits, EvaluationError.OPERATION_LIMIT_EXCEEDED, 7);
+        assertEquals(3.0, ExpressionEvaluator.tryEvaluate("(((1+2)))", limits).getValue());
+
+        // Millions of tokens cannot finish in a millisecond
+        StringBuilder sum = new StringBuilder("1");
+        for (int i = 0; i < 2_000_000; i++) {
+            sum.append("+1");
+        }
+        assertEquals(EvaluationError.DEADLINE_EXCEEDED,
+                ExpressionEvaluator.tryEvaluate(sum, new EvaluationLimits(Integer.MAX_VALUE, 1, Integer.MAX_VALUE, Integer.MAX_VALUE, 1)).getError());
+
+        // The configured limits apply to every path, so deep nesting fails instead of overflowing
+        String deep = "(".repeat(5000) + "1" + ")".repeat(5000);
+        assertEquals(EvaluationError.NESTING_TOO_DEEP, ExpressionEvaluator.tryEvaluate(deep).getError());
+        CalculatorException e = assertThrows(CalculatorException.class, () -> ExpressionCompiler.compile(deep));
+        assertEquals(CalculatorException.ErrorType.NESTING_TOO_DEEP, e.getErrorType());
+    }
+
+    @Test
+    void measuresTheDeadlineFromTheStartOfEvaluation() {
+        EvaluationLimits limits = new EvaluationLimits(Integer.MAX_VALUE, 100, Integer.MAX_VALUE, Integer.MAX_VALUE, 1);
+        long started = limits.startClock() - 2_000_000;
+        // Time spent before the first clock check counts, but the clock is only checked on the interval
+        assertTrue(limits.isPastDeadline(EvaluationLimits.DEADLINE_CHECK_INTERVAL, started));
+        assertFalse(limits.isPastDeadline(EvaluationLimits.DEADLINE_CHECK_INTERVAL - 1, started));
+        assertFalse(limits.isPastDeadline(EvaluationLimits.DEADLINE_CHECK_INTERVAL, limits.startClock()));
+
+        EvaluationLimits unlimited = new EvaluationLimits(Integer.MAX_VALUE, 100, Integer.MAX_VALUE, Integer.MAX_VALUE, 0);
+        assertEquals(0, unlimited.startClock());
+        assertFalse(unlimited.isPastDeadline(EvaluationLimits.DEADLINE_CHECK_INTERVAL, Long.MIN_VALUE));
+    }
+
+    private static void assertLimit(String input, EvaluationLimits limits, EvaluationError error, int position) {
+        EvaluationResult result = ExpressionEvaluator.tryEvaluate(input, limits);
+        assertEquals(error, result.getError(), input);
+        assertEquals(position, result.getPosition(), input);
+    }
+
+    private static void assertFailure(String input, EvaluationError error, int position) {
+        EvaluationResult result = ExpressionEvaluator.tryEvaluate(input);
+        assertEquals(error, result.getError(), input);
+        assertEquals(error.getErrorType(), result.getErrorType(), input);
+        assertEquals(position, result.getPosition(), input);
+    }
+}
@@ -0,0 +1,82 @@
+package com.nayabjalal.calculator.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Differential test against the regex validators and String.valueOf formatting they replaced
+class InputValidatorTest {
+
+    private static final Pattern NUMBER = Pattern.compile("-?\\d+(\\.\\d+)?");
+    private static final Pattern ZERO = Pattern.compile("0+(\\.0+)?");
+    private static final Pattern INTEGER = Pattern.compile("-?\\d+");
+
+    @Test
+    void validatorsMatchRegularExpressions() {
+        char[] alphabet = {'0', '1', '9', '-', '.', ' ', '\t', '\u0000', '\u00A0', '\u0660', 'a', 'e', '+'};
+        Random random = new Random(15);
+        for (int i = 0; i < 500_000; i++) {
+            StringBuilder input = new StringBuilder();
+            for (int length = random.nextInt(8); length > 0; length--) {
+                input.append(alphabet[random.nextInt(alphabet.length)]);
+            }
+            String text = input.toString();
+            String trimmed = text.trim();
+            assertEquals(!trimmed.isEmpty() && NUMBER.matcher(trimmed).matches(), InputValidator.isValidNumber(text), text);
+            assertEquals(ZERO.matcher(trimmed).matches(), InputValidator.isZeroOnly(text), text);
+            assertEquals(INTEGER.matcher(trimmed).matches(), InputValidator.isInteger(text), text);
+        }
+    }
+
+    @Test
+    void formatResultMatchesStringValueOf() {
+        double[] edges = {0.0, -0.0, 0.1, 0.1 + 0.2, 1e-3, 9.99e-4, 1e7, 9999999.5, 1e-8, 1e22, 1e23, 5e-324,
+                Double.MIN_NORMAL, Double.MAX_VALUE, 0x1p63, 1e19, 123456789012345.6, 1234567.125, 1.0 / 3,
+                Double.NaN, Double.POSITIVE_INFINITY, Long.MIN_VALUE, Long.MAX_VALUE};
+        for (double value : edges) {
+            assertFormat(value);
+            assertFormat(-value);
+        }
+
+        Random random = new Random(15);
+        for (int i = 0; i < 500_000; i++) {
+            assertFormat(Double.longBitsToDouble(random.nextLong()));
+            assertFormat(random.nextInt(1_000_000) / Math.pow(10, random.nextInt(12)));
+            assertFormat(random.nextDouble() * Math.pow(10, random.nextInt(40) - 20));
+        }
+        for (int exponent = -330; exponent <= 310; exponent++) {
+            for (int digit = 1; digit <= 9; digit++) {
+                double value = Double.parseDouble(digit + "e" + exponent);
+                assertFormat(value);
+                assertFormat(Math.nextUp(value));
+                assertFormat(Math.nextDown(value));
+            }
+        }
+    }
+
+    private static void assertFormat(double value) {
+        String expected = reference(value);
+        assertEquals(expected, InputValidator.formatResult(value));
+
+        StringBuilder builder = new StringBuilder("=");
+        InputValidator.formatResult(value, builder);
+        assertEquals("=" + expected, builder.toString());
+
+        char[] buffer = new char[InputValidator.MAX_RESULT_LENGTH + 2];
+        int length = InputValidator.formatResult(value, buffer, 2);
+        assertEquals(expected, new String(buffer, 2, length));
+    }
+
+    private static String reference(double result) {
+        if (Double.isNaN(result) || Double.isInfinite(result)) {
+            return "Error";
+        }
+        if (result == (long) result) {
+            return String.valueOf((long) result);
+        }
+        return String.valueOf(result);
+    }
+}